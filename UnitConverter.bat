@@ -1,2 +1,7 @@
 @echo off
-java -cp classes com.johnson.UnitConverter.UnitConverterMain
+rem Delete UnitConverter.jsa after rebuilding, the first run then records a new AppCDS archive
+set CDS=-XX:ArchiveClassesAtExit=UnitConverter.jsa
+if exist UnitConverter.jsa set CDS=-XX:SharedArchiveFile=UnitConverter.jsa
+set CATALOG=
+if exist UnitConverter.cat set CATALOG=-Dunitconverter.catalog=UnitConverter.cat
+java %CDS% %CATALOG% -cp UnitConverter.jar;lib\jsoup-1.8.1.jar com.johnson.UnitConverter.UnitConverterMain %*
@@ -1,2 +1,43 @@
 #!/bin/sh
-/usr/bin/java -cp classes com.johnson.UnitConverter.UnitConverterMain $@ &
+#
+# Runs from the jar built by scons. The first command line conversion
+# records the classes it loads in an AppCDS archive, and later runs map
+# them in from there instead of loading them again, until the jar is rebuilt.
+#
+DIR=$(cd "$(dirname "$0")" && pwd)
+JAR="$DIR/UnitConverter.jar"
+CLASSPATH="$JAR:$DIR/lib/jsoup-1.8.1.jar"
+ARCHIVE="$DIR/UnitConverter.jsa"
+MAIN=com.johnson.UnitConverter.UnitConverterMain
+
+# The unit catalog is opened from the file, it is only mapped in once it is large,
+# rather than read out of the jar
+CATALOG="$DIR/UnitConverter.cat"
+if [ -f "$CATALOG" ]; then
+	CATALOG_OPT="-Dunitconverter.catalog=$CATALOG"
+else
+	CATALOG_OPT=
+fi
+
+if [ -f "$ARCHIVE" ] && [ "$ARCHIVE" -nt "$JAR" ]; then
+	CDS="-XX:SharedArchiveFile=$ARCHIVE"
+else
+	CDS=
+fi
+
+# The GUI runs in the background, conversions in the foreground
+# so that scripts get their output and exit status
+if [ $# -eq 0 ]; then
+	/usr/bin/java $CDS $CATALOG_OPT -cp "$CLASSPATH" $MAIN &
+	exit 0
+fi
+
+if [ -n "$CDS" ]; then
+	exec /usr/bin/java $CDS $CATALOG_OPT -cp "$CLASSPATH" $MAIN "$@"
+fi
+
+# Written under another name first, so another run never maps a partly written archive
+/usr/bin/java -XX:ArchiveClassesAtExit="$ARCHIVE.$$" $CATALOG_OPT -cp "$CLASSPATH" $MAIN "$@"
+STATUS=$?
+mv -f "$ARCHIVE.$$" "$ARCHIVE" 2>/dev/null
+exit $STATUS
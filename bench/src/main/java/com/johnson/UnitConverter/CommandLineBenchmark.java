@@ -0,0 +1,55 @@
+package com.johnson.UnitConverter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//
+// Command line dispatch, for flags that were at the start, middle and
+// end of the old flag if chain. In this package to reach parseCommandLine().
+//
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandLineBenchmark
+{
+	@Param({"-cm", "-psi", "-rub"})
+	public String flag;
+
+	private String[] args;
+	private MeasurementCatalog catalog;
+
+	@Setup
+	public void setup()
+	{
+		// Not the interned constants, like real command line args
+		args = new String[] { new String(flag), "12.5" };
+
+		MeasurementFactory factory = MeasurementFactory.instance();
+		factory.load();
+		catalog = factory.getCatalog();
+	}
+
+	@Benchmark
+	public List<UnitConverterMain.Input> parseCommandLine() throws Exception
+	{
+		List<UnitConverterMain.Input> inputs = new ArrayList<UnitConverterMain.Input>(1);
+		UnitConverterMain.parseCommandLine(args, catalog, inputs);
+		return inputs;
+	}
+}
@@ -0,0 +1,29 @@
+package com.johnson.UnitConverter.bench;
+
+import com.johnson.UnitConverter.MeasurementFactory;
+import com.johnson.UnitConverter.units.CurrencyConverter;
+
+// Shared setup for the benchmarks
+final class BenchmarkSupport
+{
+	// Fixed exchange rates, so nothing goes over the network
+	static class StubCurrencyConverter implements CurrencyConverter
+	{
+		public float convert(String currencyFrom, String currencyTo)
+		{
+			return 1.25f;
+		}
+	}
+
+	private BenchmarkSupport()
+	{
+	}
+
+	static MeasurementFactory loadFactory()
+	{
+		MeasurementFactory factory = MeasurementFactory.instance();
+		factory.setCurrencyConverter(new StubCurrencyConverter());
+		factory.load();
+		return factory;
+	}
+}
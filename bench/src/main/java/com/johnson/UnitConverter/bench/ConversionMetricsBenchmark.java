@@ -0,0 +1,100 @@
+package com.johnson.UnitConverter.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.johnson.UnitConverter.Converter;
+import com.johnson.UnitConverter.MeasurementFactory;
+import com.johnson.UnitConverter.MeasurementUnit;
+import com.johnson.UnitConverter.metrics.MetricsSwitch;
+
+//
+// The cost of the conversion metrics: the foot to meter conversion from
+// the Length converter table and the foot unit's own conversion from the
+// reference, as they are by default, and the same again in a JVM started
+// with -Dunitconverter.metrics=true, where every value is counted.
+//
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConversionMetricsBenchmark
+{
+	private static final int BULK_SIZE = 4096;
+	private static final String METRICS_ON = "-D" + MetricsSwitch.ENABLED_PROPERTY + "=true";
+
+	private Converter converter;
+	private MeasurementUnit unit;
+	private double value;
+	private double[] src;
+	private double[] dst;
+
+	@Setup
+	public void setup()
+	{
+		com.johnson.UnitConverter.Measurement length =
+				BenchmarkSupport.loadFactory().getMeasurement(MeasurementFactory.MEASURE_LENGTH);
+		converter = length.converter(MeasurementFactory.UNIT_LENGTH_FOOT, MeasurementFactory.UNIT_LENGTH_METER);
+		unit = length.findUnit(MeasurementFactory.UNIT_LENGTH_FOOT);
+		value = 1234.56789;
+		src = new double[BULK_SIZE];
+		dst = new double[BULK_SIZE];
+		for(int i = 0; i < BULK_SIZE; i++)
+		{
+			src[i] = i * 0.25;
+		}
+	}
+
+	@Benchmark
+	public double scalar()
+	{
+		return converter.convert(value);
+	}
+
+	@Benchmark
+	public double[] bulk()
+	{
+		converter.convert(src, 0, dst, 0, BULK_SIZE);
+		return dst;
+	}
+
+	@Benchmark
+	public double unitScalar()
+	{
+		return unit.convertFromReference(value);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = METRICS_ON)
+	public double scalarCounted()
+	{
+		return converter.convert(value);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = METRICS_ON)
+	public double[] bulkCounted()
+	{
+		converter.convert(src, 0, dst, 0, BULK_SIZE);
+		return dst;
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = METRICS_ON)
+	public double unitScalarCounted()
+	{
+		return unit.convertFromReference(value);
+	}
+}
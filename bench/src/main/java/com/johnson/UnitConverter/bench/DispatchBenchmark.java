@@ -0,0 +1,122 @@
+package com.johnson.UnitConverter.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.johnson.UnitConverter.MeasurementUnit;
+import com.johnson.UnitConverter.units.MeasurementUnitFahrenheit;
+import com.johnson.UnitConverter.units.MeasurementUnitKelvin;
+import com.johnson.UnitConverter.units.MeasurementUnitMileageKPL;
+import com.johnson.UnitConverter.units.MeasurementUnitMileageMPG;
+
+//
+// Compares the scalar conversion call site when the units are
+// described by data (MeasurementUnit) against the old design where
+// each kind of unit was a subclass overriding the conversions.
+// The legacy classes below are copies of the old subclasses.
+//
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatchBenchmark
+{
+	private static final int VALUES = 1024;
+
+	private static class LegacyUnit
+	{
+		protected double referenceFactor;
+		LegacyUnit(double referenceFactor) { this.referenceFactor = referenceFactor; }
+		public double convertToReference(double v) { return v / referenceFactor; }
+		public double convertFromReference(double v) { return v * referenceFactor; }
+	}
+
+	private static class LegacyFahrenheit extends LegacyUnit
+	{
+		LegacyFahrenheit() { super(1.0); }
+		public double convertToReference(double v) { return (v - 32.0)/1.8; }
+		public double convertFromReference(double v) { return (v * 1.8) + 32.0; }
+	}
+
+	private static class LegacyKelvin extends LegacyUnit
+	{
+		LegacyKelvin() { super(1.0); }
+		public double convertToReference(double v) { return (v - 273.15); }
+		public double convertFromReference(double v) { return (v + 273.15); }
+	}
+
+	private static class LegacyKPL extends LegacyUnit
+	{
+		LegacyKPL() { super(100.0); }
+		public double convertToReference(double v) { return referenceFactor / v; }
+		public double convertFromReference(double v) { return referenceFactor / v; }
+	}
+
+	private static class LegacyMPG extends LegacyUnit
+	{
+		LegacyMPG() { super((.0000254*12*5280.0) / (3.7854 * 100.0)); }
+		public double convertToReference(double v) { return 1.0/(v*referenceFactor); }
+		public double convertFromReference(double v) { return 1.0/(v*referenceFactor); }
+	}
+
+	private LegacyUnit[] legacy;
+	private MeasurementUnit[] data;
+	private double[] values;
+
+	@Setup
+	public void setup()
+	{
+		legacy = new LegacyUnit[] {
+				new LegacyUnit(1.0/2.54), new LegacyFahrenheit(), new LegacyKelvin(),
+				new LegacyKPL(), new LegacyMPG() };
+		data = new MeasurementUnit[] {
+				new MeasurementUnit("inch", 1.0/2.54), new MeasurementUnitFahrenheit("fahrenheit"),
+				new MeasurementUnitKelvin("kelvin"), new MeasurementUnitMileageKPL("kpl"),
+				new MeasurementUnitMileageMPG("mpg") };
+
+		values = new double[VALUES];
+		for(int i = 0; i < VALUES; i++)
+		{
+			values[i] = 1.0 + i;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(2 * VALUES)
+	public double subclassDispatch()
+	{
+		double sum = 0.0;
+		for(int i = 0; i < values.length; i++)
+		{
+			LegacyUnit u = legacy[i % legacy.length];
+			sum += u.convertFromReference(u.convertToReference(values[i]));
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(2 * VALUES)
+	public double dataDriven()
+	{
+		double sum = 0.0;
+		for(int i = 0; i < values.length; i++)
+		{
+			MeasurementUnit u = data[i % data.length];
+			sum += u.convertFromReference(u.convertToReference(values[i]));
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,77 @@
+package com.johnson.UnitConverter.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.johnson.UnitConverter.Converter;
+import com.johnson.UnitConverter.expression.UnitExpressionCompiler;
+
+//
+// Converting between compound unit expressions: compiling them every
+// time, against finding the compiled conversion in the plan cache, and
+// against converting with a Converter the caller already holds
+//
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExpressionBenchmark
+{
+	private static final String[][] PAIRS = {
+		{ "kg*m/s^2", "lb*ft/s^2" },
+		{ "L/100km", "gal/mi" },
+		{ "BTU/h", "W" },
+		{ "square foot", "acre" },
+		{ "km/h", "knots" },
+		{ "F", "C" } };
+
+	private UnitExpressionCompiler compiler;
+	private Converter converter;
+	private int next;
+
+	@Setup
+	public void setup()
+	{
+		compiler = new UnitExpressionCompiler(BenchmarkSupport.loadFactory());
+		converter = compiler.converter(PAIRS[0][0], PAIRS[0][1]);
+
+		// BTU is the energy unit, not the -btu power flag, so 1 BTU/h is 0.2931 W
+		double watts = compiler.convert(1.0, "BTU/h", "W");
+		if(Math.abs(watts - 1055.05585 / 3600.0) > 1e-9)
+		{
+			throw new IllegalStateException("1 BTU/h should be 0.2931 W, not " + watts);
+		}
+	}
+
+	@Benchmark
+	public double compileEveryTime()
+	{
+		String[] pair = PAIRS[next++ % PAIRS.length];
+		return compiler.parse(pair[0]).converterTo(compiler.parse(pair[1])).convert(1.5);
+	}
+
+	@Benchmark
+	public double cachedPlan()
+	{
+		String[] pair = PAIRS[next++ % PAIRS.length];
+		return compiler.convert(1.5, pair[0], pair[1]);
+	}
+
+	@Benchmark
+	public double heldConverter()
+	{
+		return converter.convert(1.5);
+	}
+}
@@ -0,0 +1,56 @@
+package com.johnson.UnitConverter.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.johnson.UnitConverter.MeasurementFactory;
+
+//
+// Loading every measurement, with the exchange rates
+// coming from a stub instead of the network, compared with
+// loading only the one measurement a conversion needs
+//
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FactoryLoadBenchmark
+{
+	private MeasurementFactory factory;
+
+	@Setup
+	public void setup()
+	{
+		factory = BenchmarkSupport.loadFactory();
+	}
+
+	@Benchmark
+	public MeasurementFactory load()
+	{
+		factory.load();
+		for(String name : factory.getEntries())
+		{
+			factory.getMeasurement(name);
+		}
+		return factory;
+	}
+
+	@Benchmark
+	public com.johnson.UnitConverter.Measurement loadLength()
+	{
+		factory.load();
+		return factory.getMeasurement(MeasurementFactory.MEASURE_LENGTH);
+	}
+}
@@ -0,0 +1,79 @@
+package com.johnson.UnitConverter.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.johnson.UnitConverter.MeasurementFactory;
+import com.johnson.UnitConverter.MeasurementUnit;
+
+//
+// Formatting and unit lookups on the Length measurement
+//
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MeasurementBenchmark
+{
+	private com.johnson.UnitConverter.Measurement length;
+	private double value;
+	private String unitName;
+	private String missingUnitName;
+	private StringBuilder buf;
+
+	@Setup
+	public void setup()
+	{
+		length = BenchmarkSupport.loadFactory().getMeasurement(MeasurementFactory.MEASURE_LENGTH);
+		value = 1234.56789;
+
+		// Not the interned constants, like a name read from input
+		unitName = new String(MeasurementFactory.UNIT_LENGTH_FOOT);
+		missingUnitName = "furlong";
+		buf = new StringBuilder(64);
+	}
+
+	@Benchmark
+	public String toStringFromReference()
+	{
+		return length.toString(value);
+	}
+
+	@Benchmark
+	public String formatUnitValue()
+	{
+		return length.formatUnitValue(value);
+	}
+
+	// Into a reused buffer, which should not allocate at all
+	@Benchmark
+	public StringBuilder formatUnitValueInto()
+	{
+		buf.setLength(0);
+		return length.formatUnitValue(value, buf);
+	}
+
+	@Benchmark
+	public MeasurementUnit findUnit()
+	{
+		return length.findUnit(unitName);
+	}
+
+	@Benchmark
+	public MeasurementUnit findUnitMissing()
+	{
+		return length.findUnit(missingUnitName);
+	}
+}
@@ -0,0 +1,88 @@
+package com.johnson.UnitConverter.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.johnson.UnitConverter.MeasurementFactory;
+import com.johnson.UnitConverter.expression.UnitQuery;
+
+//
+// Answers a corpus of a million free text queries, like the support tools
+// send: a few dozen shapes with different values and spacing. With the
+// plan cache each shape is resolved once, with a cache of one entry every
+// query is resolved again.
+//
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryBenchmark
+{
+	private static final int CORPUS_SIZE = 1000000;
+
+	private static final String[] SHAPES = {
+		"%s mi in km", "%s km to mi", "%s f to c", "%s c to f", "%s in in cm", "%s cm to in",
+		"%s ft -> m", "%s lb in kg", "%s kg to lb", "%s oz in g", "%s gal to l", "%s cups in ml",
+		"%s mph in knots", "%s km/h to m/s", "%s knots as km/h", "%s mpg in kpl", "%s L/100km to mpg",
+		"%s square feet in acres", "%s acres to m2", "%s hp in W", "%s BTU/h to W", "%s kWh in J",
+		"%s psi to bar", "%s atm in Pa", "%s h to min", "%s days in s", "%s deg to rad",
+		"convert %s kg*m/s^2 to lb*ft/s^2", "%s  mi   in  km", "%s K to F" };
+
+	private String[] corpus;
+	private UnitQuery cached;
+	private UnitQuery uncached;
+
+	@Setup
+	public void setup()
+	{
+		MeasurementFactory factory = BenchmarkSupport.loadFactory();
+		cached = new UnitQuery(factory);
+		uncached = new UnitQuery(factory, 1);
+
+		Random random = new Random(42);
+		corpus = new String[CORPUS_SIZE];
+		for(int i = 0; i < CORPUS_SIZE; i++)
+		{
+			String value = String.valueOf(random.nextInt(100000) / 100.0);
+			corpus[i] = String.format(SHAPES[random.nextInt(SHAPES.length)], value);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CORPUS_SIZE)
+	public double cachedPlans()
+	{
+		return run(cached);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CORPUS_SIZE)
+	public double resolveEveryQuery()
+	{
+		return run(uncached);
+	}
+
+	private double run(final UnitQuery queries)
+	{
+		double sum = 0;
+		for(String query : corpus)
+		{
+			sum += queries.query(query).getResult();
+		}
+		return sum;
+	}
+}
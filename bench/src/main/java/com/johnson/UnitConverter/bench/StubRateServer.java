@@ -0,0 +1,178 @@
+package com.johnson.UnitConverter.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+//
+// A local stand in for the currency converter page, so the exchange
+// rate loading can be tried without a network. It is only in the
+// benchmark jar, not in UnitConverter.jar. For example:
+//   java -cp bench/target/benchmarks.jar com.johnson.UnitConverter.bench.StubRateServer 8089 EUR=0.92 GBP=0.79
+//   java -Dunitconverter.currency.url=http://localhost:8089/finance/converter \
+//        com.johnson.UnitConverter.UnitConverterMain -usd 10
+// Unknown currencies get a 404, and -delay <millis> slows every response.
+// The whole table is also served for UrlExchangeRateProvider, at
+//   -Dunitconverter.rates.url=http://localhost:8089/rates
+//
+public class StubRateServer
+{
+	public static final String PATH = "/finance/converter";
+	public static final String TABLE_PATH = "/rates";
+
+	private final HttpServer server;
+	private final Map<String, String> rates;
+	private volatile long delayMillis;
+
+	public StubRateServer(int port) throws IOException
+	{
+		this.rates = new HashMap<String, String>();
+		this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+		this.server.createContext(PATH, new RateHandler());
+		this.server.createContext(TABLE_PATH, new TableHandler());
+		this.server.setExecutor(Executors.newCachedThreadPool());
+	}
+
+	public synchronized void setRate(final String currency, String rate)
+	{
+		rates.put(currency, rate);
+	}
+
+	private synchronized String getRate(final String currency)
+	{
+		return rates.get(currency);
+	}
+
+	private synchronized String getTable()
+	{
+		StringBuilder buf = new StringBuilder("base=USD\n");
+		buf.append("timestamp=").append(System.currentTimeMillis()).append("\n");
+		for(Map.Entry<String, String> e : rates.entrySet())
+		{
+			buf.append(e.getKey()).append("=").append(e.getValue()).append("\n");
+		}
+		return buf.toString();
+	}
+
+	public void setDelay(long delayMillis)
+	{
+		this.delayMillis = delayMillis;
+	}
+
+	public int getPort()
+	{
+		return server.getAddress().getPort();
+	}
+
+	public String getUrl()
+	{
+		return "http://localhost:" + getPort() + PATH;
+	}
+
+	public void start()
+	{
+		server.start();
+	}
+
+	public void stop()
+	{
+		server.stop(0);
+	}
+
+	private void delay()
+	{
+		if(delayMillis > 0)
+		{
+			try
+			{
+				Thread.sleep(delayMillis);
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static void send(final HttpExchange exchange, int status, String contentType, String body) throws IOException
+	{
+		byte[] bytes = body.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream os = exchange.getResponseBody();
+		os.write(bytes);
+		os.close();
+	}
+
+	private class TableHandler implements HttpHandler
+	{
+		public void handle(HttpExchange exchange) throws IOException
+		{
+			delay();
+			send(exchange, 200, "text/plain; charset=UTF-8", getTable());
+		}
+	}
+
+	private class RateHandler implements HttpHandler
+	{
+		public void handle(HttpExchange exchange) throws IOException
+		{
+			String query = exchange.getRequestURI().getQuery();
+			String to = null;
+			if(query != null)
+			{
+				for(String param : query.split("&"))
+				{
+					if(param.startsWith("to="))
+					{
+						to = param.substring(3);
+					}
+				}
+			}
+
+			delay();
+
+			String rate = (to == null) ? null : getRate(to);
+			int status = (rate == null) ? 404 : 200;
+			String body = (rate == null) ?
+					"<html><body>Unknown currency</body></html>" :
+					"<html><body><div id=currency_converter_result>1 USD = " +
+					"<span class=bld>" + rate + " " + to + "</span></div></body></html>";
+
+			send(exchange, status, "text/html; charset=UTF-8", body);
+		}
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 1)
+		{
+			System.err.println("Usage: StubRateServer <port> [-delay <millis>] [CUR=rate ...]");
+			return;
+		}
+
+		StubRateServer stub = new StubRateServer(Integer.parseInt(args[0]));
+		for(int i = 1; i < args.length; i++)
+		{
+			if("-delay".equals(args[i]) && i + 1 < args.length)
+			{
+				stub.setDelay(Long.parseLong(args[++i]));
+			}
+			else
+			{
+				String[] rate = args[i].split("=");
+				stub.setRate(rate[0], rate[1]);
+			}
+		}
+
+		stub.start();
+		System.out.println("Serving exchange rates on " + stub.getUrl());
+	}
+}
@@ -0,0 +1,77 @@
+package com.johnson.UnitConverter.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.johnson.UnitConverter.MeasurementUnit;
+import com.johnson.UnitConverter.units.MeasurementUnitFahrenheit;
+import com.johnson.UnitConverter.units.MeasurementUnitKelvin;
+import com.johnson.UnitConverter.units.MeasurementUnitMileageKPL;
+import com.johnson.UnitConverter.units.MeasurementUnitMileageMPG;
+
+//
+// Scalar conversions for every type of unit
+//
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UnitConversionBenchmark
+{
+	@Param({"linear", "fahrenheit", "kelvin", "kpl", "mpg"})
+	public String unitType;
+
+	private MeasurementUnit unit;
+	private double value;
+
+	@Setup
+	public void setup()
+	{
+		if("fahrenheit".equals(unitType))
+		{
+			unit = new MeasurementUnitFahrenheit("fahrenheit");
+		}
+		else if("kelvin".equals(unitType))
+		{
+			unit = new MeasurementUnitKelvin("kelvin");
+		}
+		else if("kpl".equals(unitType))
+		{
+			unit = new MeasurementUnitMileageKPL("kilometers per liter");
+		}
+		else if("mpg".equals(unitType))
+		{
+			unit = new MeasurementUnitMileageMPG("miles per gallon");
+		}
+		else
+		{
+			unit = new MeasurementUnit("inch", 1.0/2.54);
+		}
+		value = 42.5;
+	}
+
+	@Benchmark
+	public double convertToReference()
+	{
+		return unit.convertToReference(value);
+	}
+
+	@Benchmark
+	public double convertFromReference()
+	{
+		return unit.convertFromReference(value);
+	}
+}
@@ -0,0 +1,119 @@
+package com.johnson.UnitConverter.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.johnson.UnitConverter.UnitIndex;
+import com.johnson.UnitConverter.UnitName;
+
+//
+// Builds and searches an index of fifty thousand made up unit names, the
+// size of a catalog with the customer supplied units, looking up a
+// thousand of them exactly, in upper case, and by their first letters.
+//
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Thread)
+public class UnitIndexBenchmark
+{
+	private static final int NAMES = 50000;
+	private static final int KEYS = 1000;
+
+	private static final String[] WORDS = {
+		"kilo", "meter", "per", "hour", "square", "foot", "gram", "mega",
+		"watt", "second", "pound", "inch", "cubic", "liter", "nautical", "mile" };
+
+	private List<UnitName> names;
+	private UnitIndex index;
+	private String[] keys;
+	private String[] upperKeys;
+	private String[] prefixes;
+
+	@Setup
+	public void setup()
+	{
+		Random random = new Random(42);
+		names = new ArrayList<UnitName>(NAMES);
+		for(int i = 0; i < NAMES; i++)
+		{
+			StringBuilder name = new StringBuilder();
+			int words = 1 + random.nextInt(3);
+			for(int j = 0; j < words; j++)
+			{
+				name.append(WORDS[random.nextInt(WORDS.length)]).append(j + 1 < words ? " " : "");
+			}
+			name.append(i);
+			names.add(new UnitName(name.toString(), "Measurement " + (i % 50), "unit " + i, i % 3));
+		}
+		index = new UnitIndex(names);
+
+		keys = new String[KEYS];
+		upperKeys = new String[KEYS];
+		prefixes = new String[KEYS];
+		for(int i = 0; i < KEYS; i++)
+		{
+			keys[i] = names.get(random.nextInt(NAMES)).getName();
+			upperKeys[i] = keys[i].toUpperCase();
+			prefixes[i] = keys[i].substring(0, 3);
+		}
+	}
+
+	@Benchmark
+	public UnitIndex build()
+	{
+		return new UnitIndex(names);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public int find()
+	{
+		int found = 0;
+		for(String key : keys)
+		{
+			found += index.find(key).size();
+		}
+		return found;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public int findIgnoreCase()
+	{
+		int found = 0;
+		for(String key : upperKeys)
+		{
+			found += index.findIgnoreCase(key).size();
+		}
+		return found;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public int findPrefix()
+	{
+		int found = 0;
+		for(String prefix : prefixes)
+		{
+			found += index.findPrefix(prefix, 10).size();
+		}
+		return found;
+	}
+}
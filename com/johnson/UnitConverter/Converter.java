@@ -0,0 +1,299 @@
+package com.johnson.UnitConverter;
+
+import java.nio.DoubleBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.johnson.UnitConverter.metrics.LatencyHistogram;
+
+//
+// A direct conversion from one unit to another.
+//   Linear and affine conversions are reduced to one multiply and add,
+//   reciprocal conversions (like the gas mileage units) to one divide.
+//   Anything that cannot be reduced falls back to chaining the steps.
+//   With the conversion metrics on, the converters of a measurement are
+//   counted: they count the values, then convert them with the one inside.
+//
+public final class Converter
+{
+	private static final int LINEAR     = 0; // value * scale
+	private static final int AFFINE     = 1; // value * scale + offset
+	private static final int RECIPROCAL = 2; // scale / value
+	private static final int CHAINED    = 3; // second(first(value))
+	private static final int COUNTED    = 4; // first(value), counted
+
+	private static final Converter IDENTITY = new Converter(LINEAR, 1.0, 0.0, null, null);
+
+	private final int kind;
+	private final double scale;
+	private final double offset;
+	private final Converter first;
+	private final Converter second;
+	private final LongAdder counter;
+	private final LatencyHistogram bulkLatency;
+
+	private Converter(int kind, double scale, double offset, Converter first, Converter second)
+	{
+		this(kind, scale, offset, first, second, null, null);
+	}
+
+	private Converter(int kind, double scale, double offset, Converter first, Converter second,
+			LongAdder counter, LatencyHistogram bulkLatency)
+	{
+		this.kind = kind;
+		this.scale = scale;
+		this.offset = offset;
+		this.first = first;
+		this.second = second;
+		this.counter = counter;
+		this.bulkLatency = bulkLatency;
+	}
+
+	public static Converter identity()
+	{
+		return IDENTITY;
+	}
+
+	public static Converter linear(double scale)
+	{
+		return new Converter(LINEAR, scale, 0.0, null, null);
+	}
+
+	public static Converter affine(double scale, double offset)
+	{
+		if(offset == 0.0)
+		{
+			return linear(scale);
+		}
+		return new Converter(AFFINE, scale, offset, null, null);
+	}
+
+	public static Converter reciprocal(double numerator)
+	{
+		return new Converter(RECIPROCAL, numerator, 0.0, null, null);
+	}
+
+	// Adds each value converted to counter, and how long each bulk
+	// conversion took to bulkLatency, see ConversionMetrics
+	public static Converter counted(final Converter converter, LongAdder counter, LatencyHistogram bulkLatency)
+	{
+		return new Converter(COUNTED, 1.0, 0.0, converter.uncounted(), null, counter, bulkLatency);
+	}
+
+	// Counting is only for the converters of a measurement, the converters
+	// made from them are not counted
+	private Converter uncounted()
+	{
+		return (kind == COUNTED) ? first : this;
+	}
+
+	// Returns the converter that undoes this one
+	public Converter inverse()
+	{
+		switch(kind)
+		{
+		case LINEAR:
+			return linear(1.0 / scale);
+		case AFFINE:
+			return affine(1.0 / scale, -offset / scale);
+		case RECIPROCAL:
+			return this;
+		case COUNTED:
+			return first.inverse();
+		default:
+			return new Converter(CHAINED, 1.0, 0.0, second.inverse(), first.inverse());
+		}
+	}
+
+	// Returns a converter that applies this one, then next,
+	// collapsed into a single step whenever possible
+	public Converter andThen(final Converter next)
+	{
+		if(kind == COUNTED || next.kind == COUNTED)
+		{
+			return uncounted().andThen(next.uncounted());
+		}
+		if(this == IDENTITY)
+		{
+			return next;
+		}
+		if(next == IDENTITY)
+		{
+			return this;
+		}
+
+		final boolean thisAffine = (kind == LINEAR || kind == AFFINE);
+		final boolean nextAffine = (next.kind == LINEAR || next.kind == AFFINE);
+
+		// (x*a + b)*c + d = x*(a*c) + (b*c + d)
+		if(thisAffine && nextAffine)
+		{
+			return affine(scale * next.scale, offset * next.scale + next.offset);
+		}
+		// c * (a/x) = (a*c)/x
+		if(kind == RECIPROCAL && next.kind == LINEAR)
+		{
+			return reciprocal(scale * next.scale);
+		}
+		// c / (x*a) = (c/a)/x
+		if(kind == LINEAR && next.kind == RECIPROCAL)
+		{
+			return reciprocal(next.scale / scale);
+		}
+		// c / (a/x) = x*(c/a)
+		if(kind == RECIPROCAL && next.kind == RECIPROCAL)
+		{
+			return linear(next.scale / scale);
+		}
+
+		return new Converter(CHAINED, 1.0, 0.0, this, next);
+	}
+
+	public double convert(double value)
+	{
+		switch(kind)
+		{
+		case LINEAR:
+			return value * scale;
+		case AFFINE:
+			return value * scale + offset;
+		case RECIPROCAL:
+			return scale / value;
+		case COUNTED:
+			counter.increment();
+			return first.convert(value);
+		default:
+			return second.convert(first.convert(value));
+		}
+	}
+
+	//
+	// Bulk conversions, src and dst may be the same array
+	//
+	public void convert(final double[] src, int srcOffset, double[] dst, int dstOffset, int length)
+	{
+		MeasurementUnit.checkBounds(src.length, srcOffset, length);
+		MeasurementUnit.checkBounds(dst.length, dstOffset, length);
+
+		final double s = scale;
+		final double o = offset;
+		switch(kind)
+		{
+		case LINEAR:
+			for(int i = 0; i < length; i++)
+			{
+				dst[dstOffset + i] = src[srcOffset + i] * s;
+			}
+			break;
+		case AFFINE:
+			for(int i = 0; i < length; i++)
+			{
+				dst[dstOffset + i] = src[srcOffset + i] * s + o;
+			}
+			break;
+		case RECIPROCAL:
+			for(int i = 0; i < length; i++)
+			{
+				dst[dstOffset + i] = s / src[srcOffset + i];
+			}
+			break;
+		case COUNTED:
+			long start = System.nanoTime();
+			first.convert(src, srcOffset, dst, dstOffset, length);
+			bulkLatency.recordSince(start);
+			counter.add(length);
+			break;
+		default:
+			first.convert(src, srcOffset, dst, dstOffset, length);
+			second.convert(dst, dstOffset, dst, dstOffset, length);
+			break;
+		}
+	}
+
+	public void convert(double[] values, int offset, int length)
+	{
+		convert(values, offset, values, offset, length);
+	}
+
+	// Converts the remaining values in src into dst, advancing both positions.
+	// Passing the same buffer for src and dst converts it in place.
+	public void convert(final DoubleBuffer src, DoubleBuffer dst)
+	{
+		final int length = src.remaining();
+		final int srcPos = src.position();
+		final int dstPos = dst.position();
+		if(dst.remaining() < length)
+		{
+			throw new IndexOutOfBoundsException(
+					"Destination has " + dst.remaining() + " values remaining, " + length + " needed");
+		}
+
+		if(src.hasArray() && dst.hasArray() && !dst.isReadOnly())
+		{
+			convert(src.array(), src.arrayOffset() + srcPos, dst.array(), dst.arrayOffset() + dstPos, length);
+		}
+		else
+		{
+			convert(src, srcPos, dst, dstPos, length);
+		}
+
+		src.position(srcPos + length);
+		if(dst != src)
+		{
+			dst.position(dstPos + length);
+		}
+	}
+
+	private void convert(final DoubleBuffer src, int srcIndex, DoubleBuffer dst, int dstIndex, int length)
+	{
+		final double s = scale;
+		final double o = offset;
+		switch(kind)
+		{
+		case LINEAR:
+			for(int i = 0; i < length; i++)
+			{
+				dst.put(dstIndex + i, src.get(srcIndex + i) * s);
+			}
+			break;
+		case AFFINE:
+			for(int i = 0; i < length; i++)
+			{
+				dst.put(dstIndex + i, src.get(srcIndex + i) * s + o);
+			}
+			break;
+		case RECIPROCAL:
+			for(int i = 0; i < length; i++)
+			{
+				dst.put(dstIndex + i, s / src.get(srcIndex + i));
+			}
+			break;
+		case COUNTED:
+			long start = System.nanoTime();
+			first.convert(src, srcIndex, dst, dstIndex, length);
+			bulkLatency.recordSince(start);
+			counter.add(length);
+			break;
+		default:
+			first.convert(src, srcIndex, dst, dstIndex, length);
+			second.convert(dst, dstIndex, dst, dstIndex, length);
+			break;
+		}
+	}
+
+	public String toString()
+	{
+		switch(kind)
+		{
+		case LINEAR:
+			return "x * " + scale;
+		case AFFINE:
+			return "x * " + scale + " + " + offset;
+		case RECIPROCAL:
+			return scale + " / x";
+		case COUNTED:
+			return first.toString();
+		default:
+			return "(" + first + ") then (" + second + ")";
+		}
+	}
+}
@@ -0,0 +1,313 @@
+package com.johnson.UnitConverter;
+
+import java.nio.ByteBuffer;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+//
+// Formats doubles with up to a fixed number of fraction digits, producing
+// exactly the same text as NumberFormat.getNumberInstance() with the same
+// maximum fraction digits and grouping, without allocating.
+//   Values are scaled by 10^digits and rounded to a long, then the digits
+//   are written straight into the caller's buffer. When the rounding is too
+//   close to call in double arithmetic (a value within a hair of a half way
+//   point, where NumberFormat rounds half even on the exact decimal value),
+//   for very large values, more than 15 fraction digits, NaN and infinity,
+//   or a locale that does not use plain ASCII digits, the formatting is
+//   handed to a NumberFormat instead, so the output is always the same.
+//   A formatter is immutable and can be used from any number of threads.
+//
+public final class DecimalFormatter
+{
+	// Largest number of fraction digits for which 10^digits is an exact double
+	// and the scaled values below FAST_LIMIT fit in a long
+	private static final int MAX_FAST_DIGITS = 15;
+
+	// Scaled values below 2^40 have an ulp of at most 2^-12, so their
+	// distance from a half way point is known to within TIE_MARGIN
+	private static final double FAST_LIMIT = (double) (1L << 40);
+	private static final double TIE_MARGIN = 1.0 / 1024;
+
+	private static final long[] POWERS_OF_TEN = {
+		1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L,
+		1000000000L, 10000000000L, 100000000000L, 1000000000000L, 10000000000000L,
+		100000000000000L, 1000000000000000L };
+
+	// Digits in the integer part of the largest double
+	private static final int MAX_INTEGER_DIGITS = 309;
+
+	// Locales known to use ".", "," every 3 digits and "-", so their formatters
+	// are made without loading any locale data, which takes longer than all
+	// the rest of a command line conversion. Unless the locale data is not
+	// the JDK's own, in which case it could be different.
+	private static final Locale[] PLAIN_LOCALES = {
+		Locale.ROOT, Locale.ENGLISH, Locale.US, Locale.UK, Locale.CANADA };
+	private static final String LOCALE_PROVIDERS_PROPERTY = "java.locale.providers";
+
+	private final int fractionDigits;
+	private final boolean fast;
+	private final double scale;
+	private final char decimalSeparator;
+	private final char groupingSeparator;
+	private final int groupingSize;
+	private final String minusPrefix;
+	private final int maxLength;
+
+	// The fallback, which is not thread safe, so one per thread
+	private final ThreadLocal<NumberFormat> numFormatter;
+
+	// Scratch space for the StringBuilder and ByteBuffer versions
+	private final ThreadLocal<char[]> scratch;
+
+	public DecimalFormatter(int fractionDigits)
+	{
+		this(Locale.getDefault(Locale.Category.FORMAT), fractionDigits, true);
+	}
+
+	public DecimalFormatter(int fractionDigits, boolean grouping)
+	{
+		this(Locale.getDefault(Locale.Category.FORMAT), fractionDigits, grouping);
+	}
+
+	public DecimalFormatter(final Locale locale, final int fractionDigits, final boolean grouping)
+	{
+		if(fractionDigits < 0)
+		{
+			throw new IllegalArgumentException("Invalid number of fraction digits: " + fractionDigits);
+		}
+
+		this.fractionDigits = fractionDigits;
+		this.scale = Math.pow(10, Math.min(fractionDigits, MAX_FAST_DIGITS));
+
+		// Only plain patterns with ASCII digits are written directly,
+		// the known plain locales are taken as they are
+		boolean plain = isPlainLocale(locale);
+		char decimal = '.';
+		char group = ',';
+		int size = grouping ? 3 : 0;
+		String minus = "-";
+		NumberFormat nf = plain ? null : newNumberFormat(locale, fractionDigits, grouping);
+		if(nf instanceof DecimalFormat)
+		{
+			DecimalFormat df = (DecimalFormat) nf;
+			DecimalFormatSymbols symbols = df.getDecimalFormatSymbols();
+			decimal = symbols.getDecimalSeparator();
+			group = symbols.getGroupingSeparator();
+			size = df.isGroupingUsed() ? df.getGroupingSize() : 0;
+			minus = df.getNegativePrefix();
+			plain = symbols.getZeroDigit() == '0' &&
+					df.getPositivePrefix().isEmpty() && df.getPositiveSuffix().isEmpty() &&
+					df.getNegativeSuffix().isEmpty() &&
+					df.getMinimumFractionDigits() == 0 && df.getMinimumIntegerDigits() == 1 &&
+					!df.isDecimalSeparatorAlwaysShown() && df.getMultiplier() == 1;
+		}
+
+		this.fast = plain && fractionDigits <= MAX_FAST_DIGITS;
+		this.decimalSeparator = decimal;
+		this.groupingSeparator = group;
+		this.groupingSize = size;
+		this.minusPrefix = minus;
+		this.maxLength = minus.length() + MAX_INTEGER_DIGITS +
+				((size > 0) ? (MAX_INTEGER_DIGITS - 1) / size : 0) + 1 + fractionDigits;
+
+		this.numFormatter = new ThreadLocal<NumberFormat>() {
+			protected NumberFormat initialValue()
+			{
+				return newNumberFormat(locale, fractionDigits, grouping);
+			}
+		};
+		this.scratch = new ThreadLocal<char[]>() {
+			protected char[] initialValue()
+			{
+				return new char[maxLength];
+			}
+		};
+	}
+
+	private static boolean isPlainLocale(final Locale locale)
+	{
+		if(System.getProperty(LOCALE_PROVIDERS_PROPERTY) != null)
+		{
+			return false;
+		}
+
+		// Locale.equals also compares the script, variant and extensions
+		for(Locale plain : PLAIN_LOCALES)
+		{
+			if(plain.equals(locale))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static NumberFormat newNumberFormat(final Locale locale, int fractionDigits, boolean grouping)
+	{
+		NumberFormat nf = NumberFormat.getNumberInstance(locale);
+		nf.setMaximumFractionDigits(fractionDigits);
+		nf.setGroupingUsed(grouping);
+		return nf;
+	}
+
+	public int getFractionDigits()
+	{
+		return fractionDigits;
+	}
+
+	// The most chars format(double, char[], int) will ever write
+	public int getMaxLength()
+	{
+		return maxLength;
+	}
+
+	public String format(double value)
+	{
+		char[] buf = scratch.get();
+		return new String(buf, 0, format(value, buf, 0));
+	}
+
+	public StringBuilder format(double value, final StringBuilder out)
+	{
+		char[] buf = scratch.get();
+		return out.append(buf, 0, format(value, buf, 0));
+	}
+
+	// Writes the value as UTF-8
+	public ByteBuffer format(double value, final ByteBuffer out)
+	{
+		char[] buf = scratch.get();
+		int length = format(value, buf, 0);
+		for(int i = 0; i < length; i++)
+		{
+			char c = buf[i];
+			if(c < 0x80)
+			{
+				out.put((byte) c);
+			}
+			else if(c < 0x800)
+			{
+				out.put((byte) (0xC0 | (c >> 6)));
+				out.put((byte) (0x80 | (c & 0x3F)));
+			}
+			else
+			{
+				// The format symbols are all in the Basic Multilingual Plane
+				out.put((byte) (0xE0 | (c >> 12)));
+				out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				out.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+		return out;
+	}
+
+	//
+	// Writes the value into buf from offset, returning the offset after it.
+	// There must be room for getMaxLength() chars.
+	//
+	public int format(double value, final char[] buf, int offset)
+	{
+		if(!fast || Double.isNaN(value) || Double.isInfinite(value))
+		{
+			return fallback(value, buf, offset);
+		}
+
+		// Like NumberFormat, -0.0 and negative values that round to 0 are "-0"
+		boolean negative = (Double.doubleToRawLongBits(value) < 0);
+		double scaled = Math.abs(value) * scale;
+		if(scaled >= FAST_LIMIT)
+		{
+			return fallback(value, buf, offset);
+		}
+
+		long rounded = (long) scaled;
+		double fraction = scaled - rounded;
+		if(Math.abs(fraction - 0.5) <= TIE_MARGIN)
+		{
+			return fallback(value, buf, offset);
+		}
+		if(fraction > 0.5)
+		{
+			rounded++;
+		}
+
+		long power = POWERS_OF_TEN[fractionDigits];
+		long integerPart = rounded / power;
+		long fractionPart = rounded % power;
+
+		int pos = offset;
+		if(negative)
+		{
+			for(int i = 0; i < minusPrefix.length(); i++)
+			{
+				buf[pos++] = minusPrefix.charAt(i);
+			}
+		}
+
+		pos = writeInteger(integerPart, buf, pos);
+
+		if(fractionPart != 0)
+		{
+			// Drop the trailing zeros, NumberFormat only shows the significant digits
+			int digits = fractionDigits;
+			while(fractionPart % 10 == 0)
+			{
+				fractionPart /= 10;
+				digits--;
+			}
+
+			buf[pos++] = decimalSeparator;
+			for(int i = digits - 1; i >= 0; i--)
+			{
+				buf[pos + i] = (char) ('0' + (fractionPart % 10));
+				fractionPart /= 10;
+			}
+			pos += digits;
+		}
+
+		return pos;
+	}
+
+	private int writeInteger(long value, final char[] buf, int pos)
+	{
+		int numDigits = 1;
+		while(numDigits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[numDigits])
+		{
+			numDigits++;
+		}
+
+		int length = numDigits;
+		if(groupingSize > 0)
+		{
+			length += (numDigits - 1) / groupingSize;
+		}
+
+		// Fill in from the right, adding a separator between each group
+		int end = pos + length;
+		int i = end;
+		int inGroup = 0;
+		do
+		{
+			if(groupingSize > 0 && inGroup == groupingSize)
+			{
+				buf[--i] = groupingSeparator;
+				inGroup = 0;
+			}
+			buf[--i] = (char) ('0' + (value % 10));
+			value /= 10;
+			inGroup++;
+		}
+		while(value != 0);
+
+		return end;
+	}
+
+	private int fallback(double value, final char[] buf, int offset)
+	{
+		String s = numFormatter.get().format(value);
+		s.getChars(0, s.length(), buf, offset);
+		return offset + s.length();
+	}
+}
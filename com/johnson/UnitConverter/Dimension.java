@@ -0,0 +1,255 @@
+package com.johnson.UnitConverter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//
+// What a measurement measures, as the powers of the SI base dimensions.
+//   Speed is L/T, power is M*L^2/T^3 and an angle is dimensionless, 1.
+//   Units with the same dimension can be converted to each other, even
+//   when they are in different measurements, like knots and km/h.
+//   The symbols are L length, M mass, T time, I electric current,
+//   K temperature, N amount of substance and J luminous intensity.
+//   The powers are packed into a long, a byte each, so comparing two
+//   dimensions is comparing two longs. Dimensions are immutable.
+//
+public final class Dimension
+{
+	public static final int LENGTH      = 0;
+	public static final int MASS        = 1;
+	public static final int TIME        = 2;
+	public static final int CURRENT     = 3;
+	public static final int TEMPERATURE = 4;
+	public static final int AMOUNT      = 5;
+	public static final int LUMINOSITY  = 6;
+	public static final int NUM_BASES   = 7;
+
+	private static final String[] SYMBOLS = { "L", "M", "T", "I", "K", "N", "J" };
+
+	// The order the symbols are written in, like M*L^2/T^2
+	private static final int[] WRITE_ORDER = { MASS, LENGTH, TIME, CURRENT, TEMPERATURE, AMOUNT, LUMINOSITY };
+
+	private static final long PACKED_MASK = (1L << (8 * NUM_BASES)) - 1;
+
+	public static final Dimension DIMENSIONLESS = new Dimension(0L);
+
+	private final long powers;
+
+	private Dimension(long powers)
+	{
+		this.powers = powers;
+	}
+
+	public static Dimension of(int base, int power)
+	{
+		checkBase(base);
+		return DIMENSIONLESS.with(base, power);
+	}
+
+	//
+	// Reads a dimension written like M*L^2/T^3, M/(L*T^2) or 1.
+	// A mistake in it is an IllegalArgumentException.
+	//
+	public static Dimension parse(final String text)
+	{
+		String s = text.trim();
+		int slash = s.indexOf('/');
+		Dimension dimension = parseProduct((slash < 0) ? s : s.substring(0, slash), text);
+		if(slash >= 0)
+		{
+			String denominator = s.substring(slash + 1).trim();
+			if(denominator.startsWith("(") && denominator.endsWith(")"))
+			{
+				denominator = denominator.substring(1, denominator.length() - 1);
+			}
+			dimension = dimension.times(parseProduct(denominator, text).pow(-1));
+		}
+		return dimension;
+	}
+
+	private static Dimension parseProduct(final String product, String text)
+	{
+		if(product.trim().equals("1"))
+		{
+			return DIMENSIONLESS;
+		}
+
+		Dimension dimension = DIMENSIONLESS;
+		for(String factor : product.split("\\*"))
+		{
+			factor = factor.trim();
+			int caret = factor.indexOf('^');
+			String symbol = (caret < 0) ? factor : factor.substring(0, caret).trim();
+			int power = 1;
+			if(caret >= 0)
+			{
+				try
+				{
+					power = Integer.parseInt(factor.substring(caret + 1).trim());
+				}
+				catch(NumberFormatException e)
+				{
+					throw new IllegalArgumentException("Invalid power in the dimension: " + text);
+				}
+			}
+
+			int base = findSymbol(symbol);
+			if(base < 0)
+			{
+				throw new IllegalArgumentException("Unknown dimension '" + symbol + "' in: " + text);
+			}
+			dimension = dimension.times(of(base, power));
+		}
+		return dimension;
+	}
+
+	private static int findSymbol(final String symbol)
+	{
+		for(int base = 0; base < NUM_BASES; base++)
+		{
+			if(SYMBOLS[base].equals(symbol))
+			{
+				return base;
+			}
+		}
+		return -1;
+	}
+
+	// The dimension packed by pack()
+	public static Dimension unpack(long packed)
+	{
+		if((packed & ~PACKED_MASK) != 0)
+		{
+			throw new IllegalArgumentException("Not a packed dimension: " + Long.toHexString(packed));
+		}
+		return (packed == 0) ? DIMENSIONLESS : new Dimension(packed);
+	}
+
+	// The powers a byte each, the first base in the lowest byte
+	public long pack()
+	{
+		return powers;
+	}
+
+	public int getPower(int base)
+	{
+		checkBase(base);
+		return (byte) (powers >>> (8 * base));
+	}
+
+	public boolean isDimensionless()
+	{
+		return powers == 0;
+	}
+
+	public Dimension times(final Dimension other)
+	{
+		Dimension product = this;
+		for(int base = 0; base < NUM_BASES; base++)
+		{
+			product = product.with(base, product.getPower(base) + other.getPower(base));
+		}
+		return product;
+	}
+
+	public Dimension pow(int power)
+	{
+		Dimension result = this;
+		for(int base = 0; base < NUM_BASES; base++)
+		{
+			result = result.with(base, getPower(base) * power);
+		}
+		return result;
+	}
+
+	private Dimension with(int base, int power)
+	{
+		if(power < Byte.MIN_VALUE || power > Byte.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("The power of the dimension is too large: " + power);
+		}
+		if(power == getPower(base))
+		{
+			return this;
+		}
+
+		int shift = 8 * base;
+		return new Dimension((powers & ~(0xffL << shift)) | ((power & 0xffL) << shift));
+	}
+
+	private static void checkBase(int base)
+	{
+		if(base < 0 || base >= NUM_BASES)
+		{
+			throw new IllegalArgumentException("Invalid base dimension: " + base);
+		}
+	}
+
+	// The symbols and their powers, like {M=1, L=2, T=-2}, in writing order
+	public Map<String, Integer> getPowers()
+	{
+		Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+		for(int base : WRITE_ORDER)
+		{
+			int power = getPower(base);
+			if(power != 0)
+			{
+				result.put(SYMBOLS[base], power);
+			}
+		}
+		return result;
+	}
+
+	//
+	// Writes powers like {M=1, L=2, T=-2} as M*L^2/T^2, with the
+	// denominator in brackets when it is a product, like M/(L*T^2)
+	//
+	public static String format(final Map<String, Integer> powers)
+	{
+		StringBuilder numerator = new StringBuilder();
+		StringBuilder denominator = new StringBuilder();
+		for(Map.Entry<String, Integer> e : powers.entrySet())
+		{
+			int power = e.getValue();
+			StringBuilder buf = (power > 0) ? numerator : denominator;
+			if(buf.length() > 0)
+			{
+				buf.append('*');
+			}
+			buf.append(e.getKey());
+			if(Math.abs(power) != 1)
+			{
+				buf.append('^').append(Math.abs(power));
+			}
+		}
+
+		if(numerator.length() == 0)
+		{
+			numerator.append('1');
+		}
+		if(denominator.indexOf("*") >= 0)
+		{
+			numerator.append("/(").append(denominator).append(')');
+		}
+		else if(denominator.length() > 0)
+		{
+			numerator.append('/').append(denominator);
+		}
+		return numerator.toString();
+	}
+
+	public boolean equals(final Object other)
+	{
+		return (other instanceof Dimension) && ((Dimension) other).powers == powers;
+	}
+
+	public int hashCode()
+	{
+		return (int) (powers ^ (powers >>> 32));
+	}
+
+	public String toString()
+	{
+		return format(getPowers());
+	}
+}
@@ -1,18 +1,39 @@
 package com.johnson.UnitConverter;
 
-import java.text.NumberFormat;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.Map.Entry;
 
+import com.johnson.UnitConverter.metrics.ConversionMetrics;
+import com.johnson.UnitConverter.metrics.MetricsSwitch;
+
+//
+// A set of units that can be converted between each other.
+//   A measurement is built with addUnit() and then frozen, after which
+//   it can not be changed, so it can be shared between threads freely.
+//   MeasurementFactory freezes every measurement before handing it out.
+//   A measurement may have a dimension, like L/T for speed, and the size
+//   of its reference unit in SI units, which give every linear unit a
+//   canonical factor: its size in SI units, like 0.3048 for a foot.
+//
 public class Measurement
 {
-	private String name;
-	private Map<String, MeasurementUnit> units;
-	private NumberFormat numFormatter;
+	public static final String UNAVAILABLE = "unavailable";
+
+	private final String name;
+	private final Map<String, MeasurementUnit> units;
+	private final Set<String> unitNames;
+	private final Map<String, String> aliases;
+	private Dimension dimension;
+	private double referenceScale;
 	private int decimalPlaces;
+	private DecimalFormatter formatter;
+	private Map<String, Integer> unitIndexes;
+	private Converter[][] converters;
+	private boolean frozen;
 
 	public Measurement()
 	{
@@ -23,8 +44,11 @@ public class Measurement
 	{
 		this.name = name;
 		this.units = new TreeMap<String, MeasurementUnit>();
-		this.numFormatter = NumberFormat.getNumberInstance();
+		this.unitNames = Collections.unmodifiableSet(this.units.keySet());
+		this.aliases = new TreeMap<String, String>();
+		this.referenceScale = 1.0;
 		this.decimalPlaces = 4;
+		this.formatter = new DecimalFormatter(this.decimalPlaces);
 	}
 
 	public String getName()
@@ -32,11 +56,6 @@ public class Measurement
 		return name;
 	}
 
-	public void setName(final String name)
-	{
-		this.name = name;
-	}
-
 	public int getDecimalPlaces()
 	{
 		return decimalPlaces;
@@ -44,32 +63,217 @@ public class Measurement
 
 	public void setDecimalPlaces(int decimalPlaces)
 	{
+		checkNotFrozen();
 		this.decimalPlaces = decimalPlaces;
+		this.formatter = new DecimalFormatter(decimalPlaces);
+	}
+
+	// Null when it is not known, like for currencies
+	public Dimension getDimension()
+	{
+		return dimension;
+	}
+
+	// The size of one reference unit in SI units, like 0.01 for centimeters
+	public double getReferenceScale()
+	{
+		return referenceScale;
+	}
+
+	public void setDimension(final Dimension dimension, double referenceScale)
+	{
+		checkNotFrozen();
+		if(referenceScale == 0.0 || Double.isNaN(referenceScale) || Double.isInfinite(referenceScale))
+		{
+			throw new IllegalArgumentException("Invalid reference scale for " + name + ": " + referenceScale);
+		}
+		this.dimension = dimension;
+		this.referenceScale = referenceScale;
+	}
+
+	//
+	// The size of one of the unit in SI units, like 0.3048 for a foot, or
+	// the size of a degree for the affine temperatures. It is NaN for the
+	// reciprocal units, or when the measurement has no dimension.
+	//
+	public double getCanonicalFactor(final String unitName)
+	{
+		MeasurementUnit unit = findUnit(unitName);
+		if(unit == null)
+		{
+			throw new IllegalArgumentException("The measurement unit does not exist: " + unitName);
+		}
+		if(dimension == null || unit.getKind() == MeasurementUnit.KIND_RECIPROCAL)
+		{
+			return Double.NaN;
+		}
+		return referenceScale / unit.getReferenceFactor();
 	}
 
+	// Finds the unit by its name or one of its aliases
 	public MeasurementUnit findUnit(final String unitName)
 	{
-		return units.get(unitName);
+		MeasurementUnit unit = units.get(unitName);
+		if(unit == null && aliases.containsKey(unitName))
+		{
+			unit = units.get(aliases.get(unitName));
+		}
+		return unit;
 	}
 
 	public void addUnit(final MeasurementUnit unit)
 	{
-		units.put(unit.getName(), unit);
+		addUnit(unit.getName(), unit);
 	}
 
 	public void addUnit(final String unitName, final MeasurementUnit unit)
 	{
+		checkNotFrozen();
 		units.put(unitName, unit);
+		converters = null;
+	}
+
+	//
+	// Another name for a unit, like cm for centimeter. Aliases can be used
+	// anywhere a unit name can, but are not listed with the unit names.
+	//
+	public void addAlias(final String alias, String unitName)
+	{
+		checkNotFrozen();
+		aliases.put(alias, unitName);
+		converters = null;
+	}
+
+	public Map<String, String> getAliases()
+	{
+		return Collections.unmodifiableMap(aliases);
+	}
+
+	//
+	// Builds the converters and stops any further changes.
+	// A frozen measurement is only ever read, so once it has been safely
+	// published, for example through a volatile field, any thread can use it.
+	//
+	public void freeze()
+	{
+		if(!frozen)
+		{
+			buildConverters();
+			frozen = true;
+		}
+	}
+
+	public boolean isFrozen()
+	{
+		return frozen;
+	}
+
+	private void checkNotFrozen()
+	{
+		if(frozen)
+		{
+			throw new IllegalStateException("The measurement is frozen: " + name);
+		}
+	}
+
+	// Returns the direct conversion between 2 units, by name or alias,
+	// or null if either unit does not exist in this measurement
+	public Converter converter(final String fromUnitName, final String toUnitName)
+	{
+		if(converters == null)
+		{
+			buildConverters();
+		}
+
+		Integer from = unitIndexes.get(fromUnitName);
+		Integer to = unitIndexes.get(toUnitName);
+		if(from == null || to == null)
+		{
+			return null;
+		}
+
+		return converters[from][to];
+	}
+
+	//
+	// Precompute the conversion between every pair of units.
+	// This is done automatically when needed, or by freeze().
+	//
+	public void buildConverters()
+	{
+		if(frozen)
+		{
+			return;
+		}
+
+		int numUnits = units.size();
+		Converter[] toReference = new Converter[numUnits];
+		Converter[] fromReference = new Converter[numUnits];
+		String[] names = new String[numUnits];
+		Map<String, Integer> indexes = new TreeMap<String, Integer>();
+
+		int i = 0;
+		for(Entry<String, MeasurementUnit> e : units.entrySet())
+		{
+			indexes.put(e.getKey(), i);
+			names[i] = e.getKey();
+			fromReference[i] = e.getValue().fromReferenceConverter();
+			toReference[i] = fromReference[i].inverse();
+			i++;
+		}
+
+		// An alias has the same index as its unit, unless a unit has that name
+		for(Entry<String, String> e : aliases.entrySet())
+		{
+			Integer index = indexes.get(e.getValue());
+			if(index != null && !units.containsKey(e.getKey()))
+			{
+				indexes.put(e.getKey(), index);
+			}
+		}
+
+		Converter[][] table = new Converter[numUnits][numUnits];
+		for(int from = 0; from < numUnits; from++)
+		{
+			for(int to = 0; to < numUnits; to++)
+			{
+				table[from][to] = (from == to) ?
+						Converter.identity() : toReference[from].andThen(fromReference[to]);
+				if(MetricsSwitch.ENABLED)
+				{
+					table[from][to] = ConversionMetrics.instance().counted(name, names[from], names[to], table[from][to]);
+				}
+			}
+		}
+
+		this.unitIndexes = indexes;
+		this.converters = table;
 	}
 
 	public Set<String> getMeasurementUnitNames()
 	{
-		return units.keySet();
+		return unitNames;
 	}
 
+	// Values that cant be converted, like currencies
+	// without an exchange rate, are NaN
 	public String formatUnitValue(double value)
 	{
-		return numFormatter.format(value);
+		if(Double.isNaN(value))
+		{
+			return UNAVAILABLE;
+		}
+		return formatter.format(value);
+	}
+
+	// Same as formatUnitValue(), appending to buf instead of making a String
+	public StringBuilder formatUnitValue(double value, final StringBuilder buf)
+	{
+		if(Double.isNaN(value))
+		{
+			return buf.append(UNAVAILABLE);
+		}
+		return formatter.format(value, buf);
 	}
 
 	public String toString(double referenceValue)
@@ -77,13 +281,41 @@ public class Measurement
 		StringBuilder buf = new StringBuilder();
 		Set<Map.Entry<String, MeasurementUnit>> unitsSet = units.entrySet();
 		Iterator<Entry<String, MeasurementUnit>> unitsIter = unitsSet.iterator();
-		this.numFormatter.setMaximumFractionDigits(this.decimalPlaces);
 		
 		while(unitsIter.hasNext())
 		{
 			Entry<String, MeasurementUnit> e = unitsIter.next();
 			buf.append(e.getKey()).append("\t");
-			buf.append(numFormatter.format(e.getValue().convertFromReference(referenceValue))).append("\n");
+			formatUnitValue(e.getValue().convertFromReference(referenceValue), buf).append("\n");
+		}
+		buf.append("\n");
+
+		return buf.toString();
+	}
+
+	// Same as toString(double), but starting from a value
+	// of the given unit instead of the reference unit
+	public String toString(final String unitName, double value)
+	{
+		if(converters == null)
+		{
+			buildConverters();
+		}
+
+		Integer from = unitIndexes.get(unitName);
+		if(from == null)
+		{
+			throw new IllegalArgumentException("The measurement unit does not exist: " + unitName);
+		}
+
+		StringBuilder buf = new StringBuilder();
+		Converter[] row = converters[from];
+
+		int i = 0;
+		for(String name : units.keySet())
+		{
+			buf.append(name).append("\t");
+			formatUnitValue(row[i++].convert(value), buf).append("\n");
 		}
 		buf.append("\n");
 
@@ -0,0 +1,173 @@
+package com.johnson.UnitConverter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.johnson.UnitConverter.catalog.UnitCatalog;
+
+//
+// An immutable snapshot of the measurements known to the MeasurementFactory.
+//   It has a provider for every measurement, and the frozen Measurement for
+//   those that have been created so far. Changes are made by building a new
+//   snapshot with one of the with...() methods, which the factory publishes
+//   through a single volatile field, so a reader always sees one complete
+//   snapshot, never a partly updated one, without taking any locks.
+//   The flags of the measurements from a UnitCatalog are not copied in,
+//   they are looked up in the unit catalog itself, however many there are.
+//
+public final class MeasurementCatalog
+{
+	private static final MeasurementCatalog EMPTY = new MeasurementCatalog(
+			new TreeMap<String, MeasurementProvider>(), new HashMap<String, Measurement>(),
+			new HashMap<String, UnitFlag>(), null);
+
+	private final Map<String, MeasurementProvider> providers;
+	private final Map<String, Measurement> measurements;
+	private final Map<String, UnitFlag> flags;
+	private final UnitCatalog units;
+	private final Set<String> names;
+
+	// The maps are owned by the new catalog, the callers make copies
+	private MeasurementCatalog(final Map<String, MeasurementProvider> providers,
+			Map<String, Measurement> measurements, Map<String, UnitFlag> flags, UnitCatalog units)
+	{
+		this.providers = providers;
+		this.measurements = measurements;
+		this.flags = flags;
+		this.units = units;
+		this.names = Collections.unmodifiableSet(providers.keySet());
+	}
+
+	public static MeasurementCatalog empty()
+	{
+		return EMPTY;
+	}
+
+	// All the measurement names, created or not
+	public Set<String> getNames()
+	{
+		return names;
+	}
+
+	public MeasurementProvider getProvider(final String measurementType)
+	{
+		return providers.get(measurementType);
+	}
+
+	// The measurement, or null if it does not exist or has not been created yet
+	public Measurement getMeasurement(final String measurementType)
+	{
+		return measurements.get(measurementType);
+	}
+
+	public boolean isLoaded(final String measurementType)
+	{
+		return measurements.containsKey(measurementType);
+	}
+
+	// Where the flags of the built in measurements are, or null if none were added
+	public UnitCatalog getUnitCatalog()
+	{
+		return units;
+	}
+
+	// The unit for a command line flag like -cm, or null if there is none
+	public UnitFlag getUnitFlag(final String flag)
+	{
+		UnitFlag unitFlag = flags.get(flag);
+		if(unitFlag == null && units != null)
+		{
+			// Unless its measurement has been replaced since
+			unitFlag = units.findUnitFlag(flag);
+			if(unitFlag != null && !units.isProvider(providers.get(unitFlag.getMeasurementType())))
+			{
+				unitFlag = null;
+			}
+		}
+		return unitFlag;
+	}
+
+	// A copy with the provider added, or replacing the one with the same
+	// name, in which case any measurement it already created is dropped.
+	// Its unit flags replace any other units with the same flags.
+	public MeasurementCatalog withProvider(final MeasurementProvider provider)
+	{
+		return withProviders(Collections.singletonList(provider));
+	}
+
+	// Same as withProvider() for each of them in turn, but only copying
+	// the maps once, so a lot of providers can be added in one go
+	public MeasurementCatalog withProviders(final List<MeasurementProvider> added)
+	{
+		return withProviders(added, units);
+	}
+
+	//
+	// A copy with the measurements of the unit catalog added. Their flags
+	// are found in the unit catalog, and any other provider added before or
+	// after takes precedence for the same flag. Only one unit catalog is
+	// used, this one replaces any that was added before.
+	//
+	public MeasurementCatalog withUnitCatalog(final UnitCatalog unitCatalog)
+	{
+		return withProviders(unitCatalog.getProviders(), unitCatalog);
+	}
+
+	private MeasurementCatalog withProviders(final List<MeasurementProvider> added, UnitCatalog newUnits)
+	{
+		Map<String, MeasurementProvider> newProviders = new TreeMap<String, MeasurementProvider>(providers);
+		Map<String, Measurement> newMeasurements = new HashMap<String, Measurement>(measurements);
+		Map<String, UnitFlag> newFlags = new HashMap<String, UnitFlag>(flags);
+
+		for(MeasurementProvider provider : added)
+		{
+			MeasurementProvider replaced = newProviders.put(provider.getName(), provider);
+			newMeasurements.remove(provider.getName());
+
+			// The flags of the one replaced, even ones the new one no longer
+			// has. A provider may list new UnitFlag objects every time, so
+			// they are told apart by their measurement, not compared.
+			if(replaced != null)
+			{
+				Iterator<UnitFlag> flagIter = newFlags.values().iterator();
+				while(flagIter.hasNext())
+				{
+					if(flagIter.next().getMeasurementType().equals(replaced.getName()))
+					{
+						flagIter.remove();
+					}
+				}
+			}
+			if(newUnits == null || !newUnits.isProvider(provider))
+			{
+				for(UnitFlag flag : provider.getUnitFlags())
+				{
+					newFlags.put(flag.getFlag(), flag);
+				}
+			}
+		}
+
+		return new MeasurementCatalog(newProviders, newMeasurements, newFlags, newUnits);
+	}
+
+	// A copy with the measurement added, or replacing the one with the same
+	// name. The measurement is frozen, and must already have a provider.
+	public MeasurementCatalog withMeasurement(final Measurement measurement)
+	{
+		if(!providers.containsKey(measurement.getName()))
+		{
+			throw new IllegalArgumentException("The measurement type does not exist: " + measurement.getName());
+		}
+
+		measurement.freeze();
+		Map<String, Measurement> newMeasurements = new HashMap<String, Measurement>(measurements);
+		newMeasurements.put(measurement.getName(), measurement);
+
+		return new MeasurementCatalog(providers, newMeasurements, flags, units);
+	}
+}
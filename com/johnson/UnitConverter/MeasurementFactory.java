@@ -1,19 +1,24 @@
 package com.johnson.UnitConverter;
 
+import java.util.ServiceLoader;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.johnson.UnitConverter.Measurement;
-import com.johnson.UnitConverter.MeasurementUnit;
-import com.johnson.UnitConverter.units.MeasurementUnitCurrency;
-import com.johnson.UnitConverter.units.MeasurementUnitFahrenheit;
-import com.johnson.UnitConverter.units.MeasurementUnitKelvin;
-import com.johnson.UnitConverter.units.MeasurementUnitMileageKPL;
-import com.johnson.UnitConverter.units.MeasurementUnitMileageMPG;
+import com.johnson.UnitConverter.catalog.UnitCatalog;
+import com.johnson.UnitConverter.metrics.ConversionMetrics;
+import com.johnson.UnitConverter.metrics.MetricsSwitch;
+import com.johnson.UnitConverter.units.CurrencyConverter;
+import com.johnson.UnitConverter.units.CurrencyMeasurementProvider;
+import com.johnson.UnitConverter.units.CurrencyRateLoader;
+import com.johnson.UnitConverter.units.ExchangeRateProvider;
 
 public class MeasurementFactory
 {
+	// The names of the built in measurements and units,
+	// as they are defined in catalog/units.catalog
 	public final static String MEASURE_LENGTH       = "Length";
 	public final static String MEASURE_WEIGHT       = "Weight";
 	public final static String MEASURE_TEMPERATURE  = "Temperature";
@@ -24,6 +29,8 @@ public class MeasurementFactory
 	public final static String MEASURE_PRESSURE		= "Pressure";
 	public final static String MEASURE_SPEED		= "Speed";
 	public final static String MEASURE_ANGLE        = "Angle Measurements";
+	public final static String MEASURE_TIME         = "Time";
+	public final static String MEASURE_ENERGY       = "Energy";
 	public final static String MEASURE_CURRENCY     = "Currency";
 
 	public final static String UNIT_LENGTH_CM       = "centimeter";
@@ -84,6 +91,22 @@ public class MeasurementFactory
 	public final static String UNIT_ANGLE_DEGREES   = "degrees";
 	public final static String UNIT_ANGLE_RADIANS   = "radians";
 	public final static String UNIT_ANGLE_GRADIANS  = "gradians";
+
+	public final static String UNIT_TIME_SECOND      = "second";
+	public final static String UNIT_TIME_MILLISECOND = "millisecond";
+	public final static String UNIT_TIME_MINUTE      = "minute";
+	public final static String UNIT_TIME_HOUR        = "hour";
+	public final static String UNIT_TIME_DAY         = "day";
+	public final static String UNIT_TIME_WEEK        = "week";
+	public final static String UNIT_TIME_YEAR        = "year";
+
+	public final static String UNIT_ENERGY_JOULE         = "joule";
+	public final static String UNIT_ENERGY_KILOJOULE     = "kilojoule";
+	public final static String UNIT_ENERGY_CALORIE       = "calorie";
+	public final static String UNIT_ENERGY_KILOCALORIE   = "kilocalorie";
+	public final static String UNIT_ENERGY_BTU           = "BTU";
+	public final static String UNIT_ENERGY_WATT_HOUR     = "watt hour";
+	public final static String UNIT_ENERGY_KILOWATT_HOUR = "kilowatt hour";
 	
 	public final static String UNIT_CURRENCY_USD = "U.S. Dollars";
 	public final static String UNIT_CURRENCY_EUR = "Euros";
@@ -95,183 +118,278 @@ public class MeasurementFactory
 	public final static String UNIT_CURRENCY_JPY = "Japanese Yen";
 	public final static String UNIT_CURRENCY_CNY = "Chinese Yuan";
 	public final static String UNIT_CURRENCY_RUB = "Russian Ruble";
-	
-	private Map<String, Measurement> measurements;
-	private static MeasurementFactory instance = null;
+
+	//
+	// The current catalog, replaced as a whole on every change.
+	// Readers just read it, writers build a new one and swap it in
+	// while holding the factory lock, so no change is ever lost.
+	//
+	private volatile MeasurementCatalog catalog;
+	private volatile UnitIndex unitIndex;
+	private final Object unitIndexLock;
+	private volatile long loadStartNanos;
+	private final ConcurrentHashMap<String, CompletableFuture<Measurement>> creating;
+	private final ConcurrentHashMap<String, Long> loadNanos;
+	private final ConcurrentHashMap<String, Long> firstConversionNanos;
+	private CurrencyConverter currencyConverter;
+	private ExchangeRateProvider rateProvider;
+	private boolean findRateProvider;
+	private long currencyTimeoutMillis;
+
+	// Created when instance() is first called, the class loader makes it thread safe
+	private static class InstanceHolder
+	{
+		static final MeasurementFactory instance = new MeasurementFactory();
+	}
 
 	private MeasurementFactory()
 	{
-		this.measurements = new TreeMap<String, Measurement>();
+		this.catalog = MeasurementCatalog.empty();
+		this.unitIndexLock = new Object();
+		this.loadStartNanos = System.nanoTime();
+		this.creating = new ConcurrentHashMap<String, CompletableFuture<Measurement>>();
+		this.loadNanos = new ConcurrentHashMap<String, Long>();
+		this.firstConversionNanos = new ConcurrentHashMap<String, Long>();
+		this.findRateProvider = true;
+		this.currencyTimeoutMillis = CurrencyRateLoader.DEFAULT_TIMEOUT_MILLIS;
 	}
 
 	public final static MeasurementFactory instance()
 	{
-		if(instance == null)
-		{
-			instance = new MeasurementFactory();
-		}
+		return InstanceHolder.instance;
+	}
 
-		return instance;
+	// The current snapshot, for a consistent view across several lookups
+	public MeasurementCatalog getCatalog()
+	{
+		return catalog;
 	}
 
+	// All the measurement names, loaded or not
 	public Set<String> getEntries()
 	{
-		return this.measurements.keySet();
+		return catalog.getNames();
 	}
 
+	//
+	// The index of every unit name, alias and flag, built the first time
+	// it is asked for and again whenever the catalog has changed since.
+	// Building it creates the measurements of the unit catalog, but not
+	// the others, like the currencies, see UnitIndex.build().
+	//
+	public UnitIndex getUnitIndex()
+	{
+		UnitIndex index = unitIndex;
+		if(index != null && index.getCatalog() == catalog)
+		{
+			return index;
+		}
+
+		synchronized(unitIndexLock)
+		{
+			index = unitIndex;
+			if(index == null || index.getCatalog() != catalog)
+			{
+				index = UnitIndex.build(this);
+				unitIndex = index;
+			}
+			return index;
+		}
+	}
+
+	// Creates the measurement the first time it is asked for.
+	// After that this is just a lookup in the current catalog.
 	public Measurement getMeasurement(final String measurementType)
 	{
-		return this.measurements.get(measurementType);
+		MeasurementCatalog current = catalog;
+		Measurement m = current.getMeasurement(measurementType);
+		if(m != null)
+		{
+			return m;
+		}
+
+		MeasurementProvider provider = current.getProvider(measurementType);
+		if(provider == null)
+		{
+			return null;
+		}
+
+		return create(provider, false);
+	}
+
+	//
+	// Creates the measurement again, for example to get new exchange rates,
+	// and swaps it in. Until then, readers keep getting the old one.
+	// Returns null if the measurement does not exist.
+	//
+	public Measurement refresh(final String measurementType)
+	{
+		MeasurementProvider provider = catalog.getProvider(measurementType);
+		if(provider == null)
+		{
+			return null;
+		}
+
+		return create(provider, true);
+	}
+
+	// Replaces a measurement with one built elsewhere, it is frozen first
+	public synchronized void update(final Measurement measurement)
+	{
+		catalog = catalog.withMeasurement(measurement);
+	}
+
+	//
+	// Only one thread creates a given measurement, any others asking
+	// for it at the same time wait for that one to finish.
+	//
+	private Measurement create(final MeasurementProvider provider, boolean replace)
+	{
+		final String name = provider.getName();
+		CompletableFuture<Measurement> creation = new CompletableFuture<Measurement>();
+		CompletableFuture<Measurement> running = creating.putIfAbsent(name, creation);
+		if(running != null)
+		{
+			try
+			{
+				return running.join();
+			}
+			catch(CompletionException e)
+			{
+				if(e.getCause() instanceof RuntimeException)
+				{
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+
+		try
+		{
+			Measurement m = catalog.getMeasurement(name);
+			if(m == null || replace)
+			{
+				long start = System.nanoTime();
+				m = provider.createMeasurement();
+				m.freeze();
+				long end = System.nanoTime();
+
+				synchronized(this)
+				{
+					// Unless the provider was replaced in the meantime
+					if(catalog.getProvider(name) == provider)
+					{
+						catalog = catalog.withMeasurement(m);
+					}
+				}
+				loadNanos.put(name, end - start);
+				firstConversionNanos.putIfAbsent(name, end - loadStartNanos);
+				if(MetricsSwitch.ENABLED)
+				{
+					ConversionMetrics.instance().latency(ConversionMetrics.LATENCY_CREATE + name).record(end - start);
+				}
+			}
+
+			creation.complete(m);
+			return m;
+		}
+		catch(RuntimeException e)
+		{
+			creation.completeExceptionally(e);
+			throw e;
+		}
+		finally
+		{
+			creating.remove(name, creation);
+		}
+	}
+
+	public boolean isLoaded(final String measurementType)
+	{
+		return catalog.isLoaded(measurementType);
+	}
+
+	// How long creating the measurement took, or -1 if it is not loaded yet
+	public long getLoadNanos(final String measurementType)
+	{
+		Long nanos = this.loadNanos.get(measurementType);
+		return (nanos == null) ? -1 : nanos;
+	}
+
+	// How long after load() the measurement was ready for its first
+	// conversion, or -1 if it is not loaded yet
+	public long getFirstConversionNanos(final String measurementType)
+	{
+		Long nanos = this.firstConversionNanos.get(measurementType);
+		return (nanos == null) ? -1 : nanos;
+	}
+
+	// Adds a measurement, or replaces one with the same name.
+	// It is not created until it is first asked for.
+	public synchronized void register(final MeasurementProvider provider)
+	{
+		catalog = catalog.withProvider(provider);
+		loadNanos.remove(provider.getName());
+		firstConversionNanos.remove(provider.getName());
+	}
+
+	// Where the currency rates are got from, one pair at a time
+	public synchronized void setCurrencyConverter(final CurrencyConverter currencyConverter)
+	{
+		this.currencyConverter = currencyConverter;
+		this.rateProvider = null;
+		this.findRateProvider = false;
+	}
+
+	// Where the currency rates are got from, all in one request.
+	// By default this is the configured ExchangeRateProvider, if any.
+	public synchronized void setExchangeRateProvider(final ExchangeRateProvider rateProvider)
+	{
+		this.rateProvider = rateProvider;
+		this.findRateProvider = false;
+	}
+
+	// The longest loading the currencies will wait for all the exchange rates
+	public synchronized void setCurrencyTimeout(long timeoutMillis)
+	{
+		this.currencyTimeoutMillis = timeoutMillis;
 	}
 
 	//
-	// Later on, this will use Spring to load everything
+	// Registers the measurements of the unit catalog, the currencies and
+	// any MeasurementProvider listed in META-INF/services. Nothing is
+	// created until it is asked for with getMeasurement(), so converting
+	// a length never loads the currency code or fetches exchange rates.
+	// The new catalog replaces the old one in a single step.
+	// With the conversion metrics on, this registers them over JMX.
 	//
-	public void load()
+	public synchronized void load()
 	{
-		//
-		// Lengths
-		//   The reference will be centimeters: 1 inch = 2.54 cm
-		//
-		Measurement lengthMeasurements = new Measurement(MEASURE_LENGTH);
-		lengthMeasurements.addUnit(new MeasurementUnit(UNIT_LENGTH_CM));
-		lengthMeasurements.addUnit(new MeasurementUnit(UNIT_LENGTH_METER,  0.01));
-		lengthMeasurements.addUnit(new MeasurementUnit(UNIT_LENGTH_KM,     0.00001));
-		lengthMeasurements.addUnit(new MeasurementUnit(UNIT_LENGTH_INCH,   1.0/2.54));
-		lengthMeasurements.addUnit(new MeasurementUnit(UNIT_LENGTH_FOOT,   1.0/(12.0*2.54)));
-		lengthMeasurements.addUnit(new MeasurementUnit(UNIT_LENGTH_MILE,   1.0/(2.54*12*5280.0)));
-
-		//
-		// Weights
-		//   The reference will be grams: 1 kg = 2.2 pounds
-		//
-		Measurement weightMeasurements = new Measurement(MEASURE_WEIGHT);
-		weightMeasurements.addUnit(new MeasurementUnit(UNIT_WEIGHT_GRAM));
-		weightMeasurements.addUnit(new MeasurementUnit(UNIT_WEIGHT_KG,    0.001));
-		weightMeasurements.addUnit(new MeasurementUnit(UNIT_WEIGHT_POUND, 2.2/1000.0));
-		weightMeasurements.addUnit(new MeasurementUnit(UNIT_WEIGHT_OUNCE, (2.2*16.0)/1000.0));
-
-		//
-		// Temperature
-		//   The reference will be celsius: F = (C * 1.8) + 32 
-		//
-		Measurement temperatureMeasurements = new Measurement(MEASURE_TEMPERATURE);
-		temperatureMeasurements.setDecimalPlaces(1);
-		temperatureMeasurements.addUnit(new MeasurementUnit(UNIT_TEMP_CELSIUS));
-		temperatureMeasurements.addUnit(new MeasurementUnitFahrenheit(UNIT_TEMP_FAHRENHEIT));
-		temperatureMeasurements.addUnit(new MeasurementUnitKelvin(UNIT_TEMP_KELVIN));
-
-		//
-		// Volume
-		//   The reference will be liters: 1 gallon = 3.7854 liters
-		//
-		Measurement volumeMeasurements = new Measurement(MEASURE_VOLUME);
-		volumeMeasurements.addUnit(new MeasurementUnit(UNIT_VOLUME_LITER));
-		volumeMeasurements.addUnit(new MeasurementUnit(UNIT_VOLUME_MILILITER, 1000.0));
-		volumeMeasurements.addUnit(new MeasurementUnit(UNIT_VOLUME_GALLON,    1.0/3.7854));
-		volumeMeasurements.addUnit(new MeasurementUnit(UNIT_VOLUME_QUART,     4.0/3.7854)); // 1 gallon = 4 quarts
-		volumeMeasurements.addUnit(new MeasurementUnit(UNIT_VOLUME_PINT,      8.0/3.7854));
-		volumeMeasurements.addUnit(new MeasurementUnit(UNIT_VOLUME_CUP,       16.0/3.7854));
-		volumeMeasurements.addUnit(new MeasurementUnit(UNIT_VOLUME_OUNCE,     128.0/3.7854));
-
-		//
-		// Gas Mileage
-		//   The reference will be liters per 100 Km
-		//
-		Measurement mileageMeasurements = new Measurement(MEASURE_MILEAGE);
-		mileageMeasurements.addUnit(new MeasurementUnit(UNIT_MILEAGE_LPK));
-		mileageMeasurements.addUnit(new MeasurementUnitMileageKPL(UNIT_MILEAGE_KPL));
-		mileageMeasurements.addUnit(new MeasurementUnitMileageMPG(UNIT_MILEAGE_MPG));
-
-		//
-		// Area
-		//   The reference will be square meters
-		//
-		Measurement areaMeasurements = new Measurement(MEASURE_AREA);
-		//areaMeasurements.setDecimalPlaces(6);
-		areaMeasurements.addUnit(new MeasurementUnit(UNIT_AREA_SQ_METER));
-		areaMeasurements.addUnit(new MeasurementUnit(UNIT_AREA_HECTARE, Math.pow(0.01, 2)));
-		areaMeasurements.addUnit(new MeasurementUnit(UNIT_AREA_SQ_KM,   Math.pow(0.001, 2)));
-		areaMeasurements.addUnit(new MeasurementUnit(UNIT_AREA_SQ_INCH, Math.pow((100.0/(2.54)), 2)));
-		areaMeasurements.addUnit(new MeasurementUnit(UNIT_AREA_SQ_FOOT, Math.pow((100.0/(12.0*2.54)), 2)));
-		areaMeasurements.addUnit(new MeasurementUnit(UNIT_AREA_SQ_YARD, Math.pow((100.0/(12.0*3.0*2.54)), 2)));
-		areaMeasurements.addUnit(new MeasurementUnit(UNIT_AREA_SQ_MILE, Math.pow((100.0/(12.0*5280.0*2.54)), 2)));
-		areaMeasurements.addUnit(new MeasurementUnit(UNIT_AREA_ACRE,    Math.pow((100.0/(12.0*5280.0*2.54)), 2)*640.0));
-
-		//
-		// Power
-		//   The reference will be watt
-		//
-		Measurement powerMeasurements = new Measurement(MEASURE_POWER);
-		powerMeasurements.setDecimalPlaces(3);
-		powerMeasurements.addUnit(new MeasurementUnit(UNIT_POWER_WATT));
-		powerMeasurements.addUnit(new MeasurementUnit(UNIT_POWER_HORSEPOWER,          1.0/745.699872));
-		powerMeasurements.addUnit(new MeasurementUnit(UNIT_POWER_CALORIES_PER_SECOND, 0.239005736));
-		powerMeasurements.addUnit(new MeasurementUnit(UNIT_POWER_BTU_PER_SECOND,      0.00094781712));
-		powerMeasurements.addUnit(new MeasurementUnit(UNIT_POWER_KILOWATT,            1.0/1000));
-		powerMeasurements.addUnit(new MeasurementUnit(UNIT_POWER_MEGAWATT,            1.0/1000000));
-		
-		
-		//
-		// Pressure
-		//    The reference will be pascal
-		//
-		Measurement pressureMeasurements = new Measurement(MEASURE_PRESSURE);
-		pressureMeasurements.addUnit(new MeasurementUnit(UNIT_PRESSURE_PASCAL));
-		pressureMeasurements.addUnit(new MeasurementUnit(UNIT_PRESSURE_ATMOSPHERE, 1.0/101325));
-		pressureMeasurements.addUnit(new MeasurementUnit(UNIT_PRESSURE_BAR,        1.0/100000));
-		pressureMeasurements.addUnit(new MeasurementUnit(UNIT_PRESSURE_PSI,        1.0/6894.75729));
-		pressureMeasurements.addUnit(new MeasurementUnit(UNIT_PRESSURE_TORR,       1.0/133.322368));
-		
-		//
-		// Speed
-		//   The reference will be kilometers per hour
-		//
-		Measurement speedMeasurements = new Measurement(MEASURE_SPEED);
-		speedMeasurements.addUnit(new MeasurementUnit(UNIT_SPEED_KM_PER_HOUR));
-		speedMeasurements.addUnit(new MeasurementUnit(UNIT_SPEED_METERS_PER_SECOND, 1.0/3.6));
-		speedMeasurements.addUnit(new MeasurementUnit(UNIT_SPEED_MILES_PER_HOUR,    1.0/1.609344));
-		speedMeasurements.addUnit(new MeasurementUnit(UNIT_SPEED_KNOTS,             1.0*0.539956803));
-		
-		//
-		//Angular Measure
-		//   The reference will be Degrees
-		//
-		Measurement angleMeasurements = new Measurement(MEASURE_ANGLE);
-		angleMeasurements.addUnit(new MeasurementUnit(UNIT_ANGLE_DEGREES));
-		angleMeasurements.addUnit(new MeasurementUnit(UNIT_ANGLE_RADIANS, 1.0/57.2957795));
-		angleMeasurements.addUnit(new MeasurementUnit(UNIT_ANGLE_GRADIANS, 1.0/0.9));
-		
-		//
-		//Currency
-		//	The reference will be U.S. Dollars (USD)
-		//
-		Measurement currencyMeasurements = new Measurement(MEASURE_CURRENCY);
-		MeasurementUnitCurrency rate = new MeasurementUnitCurrency();
-		currencyMeasurements.addUnit(new MeasurementUnit(UNIT_CURRENCY_USD));
-		currencyMeasurements.addUnit(new MeasurementUnit(UNIT_CURRENCY_EUR, rate.getRate("EUR")));
-		currencyMeasurements.addUnit(new MeasurementUnit(UNIT_CURRENCY_GBP, rate.getRate("GBP")));
-		currencyMeasurements.addUnit(new MeasurementUnit(UNIT_CURRENCY_INR, rate.getRate("INR")));
-		currencyMeasurements.addUnit(new MeasurementUnit(UNIT_CURRENCY_AUD, rate.getRate("AUD")));
-		currencyMeasurements.addUnit(new MeasurementUnit(UNIT_CURRENCY_CAD, rate.getRate("CAD")));
-		currencyMeasurements.addUnit(new MeasurementUnit(UNIT_CURRENCY_SGD, rate.getRate("SGD")));
-		currencyMeasurements.addUnit(new MeasurementUnit(UNIT_CURRENCY_JPY, rate.getRate("JPY")));
-		currencyMeasurements.addUnit(new MeasurementUnit(UNIT_CURRENCY_CNY, rate.getRate("CNY")));
-		currencyMeasurements.addUnit(new MeasurementUnit(UNIT_CURRENCY_RUB, rate.getRate("RUB")));
-		
-		//
-		// Populate the map
-		//
-		this.measurements.put(MEASURE_LENGTH,       lengthMeasurements);
-		this.measurements.put(MEASURE_WEIGHT,       weightMeasurements);
-		this.measurements.put(MEASURE_TEMPERATURE,  temperatureMeasurements);
-		this.measurements.put(MEASURE_VOLUME,       volumeMeasurements);
-		this.measurements.put(MEASURE_MILEAGE,      mileageMeasurements);
-		this.measurements.put(MEASURE_AREA,         areaMeasurements);
-		this.measurements.put(MEASURE_POWER, 		powerMeasurements);
-		this.measurements.put(MEASURE_PRESSURE, 	pressureMeasurements);
-		this.measurements.put(MEASURE_SPEED, 	    speedMeasurements);
-		this.measurements.put(MEASURE_ANGLE,        angleMeasurements);
-		this.measurements.put(MEASURE_CURRENCY,     currencyMeasurements);
+		long start = System.nanoTime();
+
+		// Defined in catalog/units.catalog, the compiled catalog is mapped
+		// in and each measurement only read from it when it is created
+		MeasurementCatalog newCatalog = MeasurementCatalog.empty().withUnitCatalog(UnitCatalog.builtIn());
+
+		// The currency code is in its own class, so it is only loaded when used
+		newCatalog = newCatalog.withProvider(new CurrencyMeasurementProvider(
+				currencyConverter, findRateProvider, rateProvider, currencyTimeoutMillis));
+
+		for(MeasurementProvider provider : ServiceLoader.load(MeasurementProvider.class))
+		{
+			newCatalog = newCatalog.withProvider(provider);
+		}
+
+		loadNanos.clear();
+		firstConversionNanos.clear();
+		loadStartNanos = System.nanoTime();
+		catalog = newCatalog;
+
+		if(MetricsSwitch.ENABLED)
+		{
+			ConversionMetrics metrics = ConversionMetrics.instance();
+			metrics.latency(ConversionMetrics.LATENCY_CATALOG_LOAD).recordSince(start);
+			metrics.register();
+		}
 	}
 }
@@ -0,0 +1,24 @@
+package com.johnson.UnitConverter;
+
+import java.util.List;
+
+//
+// Creates a Measurement for the MeasurementFactory.
+//   The factory only calls createMeasurement() the first time the
+//   measurement is asked for, so expensive set up, like fetching data
+//   over the network, is only paid for by the users who need it.
+//   Implementations can be registered with MeasurementFactory.register()
+//   or found with java.util.ServiceLoader, in which case they need a no
+//   argument constructor and an entry in
+//   META-INF/services/com.johnson.UnitConverter.MeasurementProvider
+//
+public interface MeasurementProvider
+{
+	// The measurement name, as listed by MeasurementFactory.getEntries()
+	public String getName();
+
+	// The command line flags of the units, without creating the measurement
+	public List<UnitFlag> getUnitFlags();
+
+	public Measurement createMeasurement();
+}
@@ -1,10 +1,34 @@
 package com.johnson.UnitConverter;
 
+import java.nio.DoubleBuffer;
+
+import com.johnson.UnitConverter.metrics.ConversionMetrics;
+import com.johnson.UnitConverter.metrics.MetricsSwitch;
+
+//
+// A unit is described entirely by its data: the kind of conversion,
+// the reference factor and the reference offset. The conversions
+// themselves are final, so every conversion call site only ever sees
+// this class and can be inlined, no matter how many types of units
+// have been loaded. The unit catalog, or the subclasses in the units
+// package, supply the data for the non-linear units.
+// Units are immutable, so they can be shared between threads freely.
+// With the conversion metrics on, a unit counts the values it converts
+// under its name, see ConversionMetrics. Off, the checks compile away.
+//
 public class MeasurementUnit
 {
-	protected String name;
-	protected double referenceFactor;
-	
+	// The closed set of conversion kinds
+	public static final int KIND_LINEAR     = 0; // unit = reference * factor
+	public static final int KIND_AFFINE     = 1; // unit = reference * factor + offset
+	public static final int KIND_RECIPROCAL = 2; // unit = factor / reference
+
+	protected final String name;
+	protected final double referenceFactor;
+	protected final double referenceOffset;
+	protected final int kind;
+	private final ConversionMetrics.UnitCounts counts;
+
 	public MeasurementUnit()
 	{
 		this("no unit", 1.0);
@@ -18,10 +42,25 @@ public class MeasurementUnit
 	// One reference unit is how many units of this type?
 	// For example, if the reference type is cm and this type is inches,
 	// then the referenceFactor should be 1/2.54
-	public MeasurementUnit(String name, double referenceFactor) 
+	public MeasurementUnit(String name, double referenceFactor)
+	{
+		this(name, KIND_LINEAR, referenceFactor, 0.0);
+	}
+
+	// For the non-linear units, for example fahrenheit with a celsius
+	// reference is KIND_AFFINE with a factor of 1.8 and an offset of 32
+	public MeasurementUnit(String name, int kind, double referenceFactor, double referenceOffset)
 	{
+		if(kind != KIND_LINEAR && kind != KIND_AFFINE && kind != KIND_RECIPROCAL)
+		{
+			throw new IllegalArgumentException("Invalid conversion kind: " + kind);
+		}
+
 		this.name = name;
+		this.kind = kind;
 		this.referenceFactor = referenceFactor;
+		this.referenceOffset = referenceOffset;
+		this.counts = MetricsSwitch.ENABLED ? ConversionMetrics.instance().unitCounts(name) : null;
 	}
 
 	public final String getName()
@@ -29,35 +68,263 @@ public class MeasurementUnit
 		return name;
 	}
 
-	public final void setName(final String name)
+	public final int getKind()
 	{
-		this.name = name;
+		return kind;
 	}
-	
-	
+
 	public double getReferenceFactor()
 	{
 		return referenceFactor;
 	}
 
-	public void setReferenceFactor(double referenceFactor)
+	// The same unit with a new reference factor, for example a new exchange rate
+	public final MeasurementUnit withReferenceFactor(double referenceFactor)
 	{
-		this.referenceFactor = referenceFactor;
+		return new MeasurementUnit(name, kind, referenceFactor, referenceOffset);
+	}
+
+	public final double getReferenceOffset()
+	{
+		return referenceOffset;
 	}
 
 	// Given a measurement of this type, return the reference measurement
 	// For example, if this unit is inches and the reference is centimeters,
 	// passing in 10 inches, should return 25.4 centimeters
-	public double convertToReference(double refValue)
+	public final double convertToReference(double refValue)
 	{
-		return refValue / referenceFactor;
+		if(MetricsSwitch.ENABLED)
+		{
+			counts.toReference(1);
+		}
+		switch(kind)
+		{
+		case KIND_LINEAR:
+			return refValue / referenceFactor;
+		case KIND_AFFINE:
+			return (refValue - referenceOffset) / referenceFactor;
+		default:
+			return referenceFactor / refValue;
+		}
 	}
 
 	// Given a reference measurement, return this type reference
 	// For example, if this unit is inches and the reference is centimeters,
-	// passing in 25.4 centimeters, this will return 10 inches 
-	public double convertFromReference(double refValue)
+	// passing in 25.4 centimeters, this will return 10 inches
+	public final double convertFromReference(double refValue)
+	{
+		if(MetricsSwitch.ENABLED)
+		{
+			counts.fromReference(1);
+		}
+		switch(kind)
+		{
+		case KIND_LINEAR:
+			return refValue * referenceFactor;
+		case KIND_AFFINE:
+			return refValue * referenceFactor + referenceOffset;
+		default:
+			return referenceFactor / refValue;
+		}
+	}
+
+	// The conversion from the reference to this unit, in a form that
+	// Measurement can combine with other units into a single step.
+	public final Converter fromReferenceConverter()
+	{
+		switch(kind)
+		{
+		case KIND_LINEAR:
+			return Converter.linear(referenceFactor);
+		case KIND_AFFINE:
+			return Converter.affine(referenceFactor, referenceOffset);
+		default:
+			return Converter.reciprocal(referenceFactor);
+		}
+	}
+
+	public final Converter toReferenceConverter()
+	{
+		return fromReferenceConverter().inverse();
+	}
+
+	//
+	// Bulk conversions
+	//   These convert "length" values from src[srcOffset] into dst[dstOffset],
+	//   which may be the same array for an in-place conversion. The results
+	//   are identical to calling the scalar methods on each value.
+	//
+	public final void convertToReference(final double[] src, int srcOffset, double[] dst, int dstOffset, int length)
+	{
+		checkBounds(src.length, srcOffset, length);
+		checkBounds(dst.length, dstOffset, length);
+		if(MetricsSwitch.ENABLED)
+		{
+			counts.toReference(length);
+		}
+
+		final double factor = referenceFactor;
+		final double offset = referenceOffset;
+		switch(kind)
+		{
+		case KIND_LINEAR:
+			for(int i = 0; i < length; i++)
+			{
+				dst[dstOffset + i] = src[srcOffset + i] / factor;
+			}
+			break;
+		case KIND_AFFINE:
+			for(int i = 0; i < length; i++)
+			{
+				dst[dstOffset + i] = (src[srcOffset + i] - offset) / factor;
+			}
+			break;
+		default:
+			for(int i = 0; i < length; i++)
+			{
+				dst[dstOffset + i] = factor / src[srcOffset + i];
+			}
+			break;
+		}
+	}
+
+	public final void convertFromReference(final double[] src, int srcOffset, double[] dst, int dstOffset, int length)
+	{
+		checkBounds(src.length, srcOffset, length);
+		checkBounds(dst.length, dstOffset, length);
+		if(MetricsSwitch.ENABLED)
+		{
+			counts.fromReference(length);
+		}
+
+		final double factor = referenceFactor;
+		final double offset = referenceOffset;
+		switch(kind)
+		{
+		case KIND_LINEAR:
+			for(int i = 0; i < length; i++)
+			{
+				dst[dstOffset + i] = src[srcOffset + i] * factor;
+			}
+			break;
+		case KIND_AFFINE:
+			for(int i = 0; i < length; i++)
+			{
+				dst[dstOffset + i] = src[srcOffset + i] * factor + offset;
+			}
+			break;
+		default:
+			for(int i = 0; i < length; i++)
+			{
+				dst[dstOffset + i] = factor / src[srcOffset + i];
+			}
+			break;
+		}
+	}
+
+	// In-place conversions
+	public final void convertToReference(double[] values, int offset, int length)
+	{
+		convertToReference(values, offset, values, offset, length);
+	}
+
+	public final void convertFromReference(double[] values, int offset, int length)
+	{
+		convertFromReference(values, offset, values, offset, length);
+	}
+
+	// Converts the remaining values in src into dst, advancing both positions.
+	// Passing the same buffer for src and dst converts it in place.
+	public final void convertToReference(final DoubleBuffer src, DoubleBuffer dst)
+	{
+		convertBuffer(src, dst, true);
+	}
+
+	public final void convertFromReference(final DoubleBuffer src, DoubleBuffer dst)
+	{
+		convertBuffer(src, dst, false);
+	}
+
+	private void convertBuffer(final DoubleBuffer src, DoubleBuffer dst, boolean toReference)
+	{
+		final int length = src.remaining();
+		final int srcPos = src.position();
+		final int dstPos = dst.position();
+		if(dst.remaining() < length)
+		{
+			throw new IndexOutOfBoundsException(
+					"Destination has " + dst.remaining() + " values remaining, " + length + " needed");
+		}
+
+		// Heap buffers go through the array loops
+		if(src.hasArray() && dst.hasArray() && !dst.isReadOnly())
+		{
+			int srcOffset = src.arrayOffset() + srcPos;
+			int dstOffset = dst.arrayOffset() + dstPos;
+			if(toReference)
+			{
+				convertToReference(src.array(), srcOffset, dst.array(), dstOffset, length);
+			}
+			else
+			{
+				convertFromReference(src.array(), srcOffset, dst.array(), dstOffset, length);
+			}
+		}
+		else
+		{
+			if(MetricsSwitch.ENABLED)
+			{
+				if(toReference)
+				{
+					counts.toReference(length);
+				}
+				else
+				{
+					counts.fromReference(length);
+				}
+			}
+
+			final double factor = referenceFactor;
+			final double offset = referenceOffset;
+			if(kind == KIND_RECIPROCAL)
+			{
+				for(int i = 0; i < length; i++)
+				{
+					dst.put(dstPos + i, factor / src.get(srcPos + i));
+				}
+			}
+			else if(toReference)
+			{
+				for(int i = 0; i < length; i++)
+				{
+					dst.put(dstPos + i, (kind == KIND_LINEAR) ?
+							src.get(srcPos + i) / factor : (src.get(srcPos + i) - offset) / factor);
+				}
+			}
+			else
+			{
+				for(int i = 0; i < length; i++)
+				{
+					dst.put(dstPos + i, (kind == KIND_LINEAR) ?
+							src.get(srcPos + i) * factor : src.get(srcPos + i) * factor + offset);
+				}
+			}
+		}
+
+		src.position(srcPos + length);
+		if(dst != src)
+		{
+			dst.position(dstPos + length);
+		}
+	}
+
+	static void checkBounds(int arrayLength, int offset, int length)
 	{
-		return refValue * referenceFactor;
+		if(offset < 0 || length < 0 || offset > arrayLength - length)
+		{
+			throw new IndexOutOfBoundsException(
+					"offset " + offset + ", length " + length + ", array length " + arrayLength);
+		}
 	}
 }
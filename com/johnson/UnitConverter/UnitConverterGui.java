@@ -1,46 +1,85 @@
 package com.johnson.UnitConverter;
 
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.List;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
+import javax.swing.DefaultCellEditor;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
+import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
 import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.border.Border;
-
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+
+//
+// The window is shown straight away, and a measurement that is not created
+// yet, like the currencies waiting on their exchange rates, is created in
+// the background while a loading indicator is shown in place of its units.
+// All the measurements are created in the background once the window is up,
+// so they are usually ready by the time they are chosen.
+// The units are rows of a table, which only converts the rows in view,
+// so a measurement with hundreds of units shows as fast as one with three.
+// Conversions are made as the value is typed, once the typing pauses.
+// A unit can be found by typing the start of any of its names, aliases or
+// flags, which suggests the units of every measurement that match.
+//
 public class UnitConverterGui extends JFrame
 {
 	private static final long serialVersionUID = 1L;
 	private static final String WINDOW_TITLE = "Unit Converter";
 	private static final String MEASUREMENT_TYPE = "Measurement to convert";
+	private static final String FIND_UNIT = "Find a unit";
 	private static final String BUTTON_TEXT_CONVERT = "Convert";
-	private static final String BUTTON_TEXT_CLEAR = "Clear";	
+	private static final String BUTTON_TEXT_CLEAR = "Clear";
+	private static final String LOADING_TEXT = "Loading ";
+	private static final String INVALID_NUMBER_TEXT = "Not a number: ";
 	private static final int MAIN_WIN_SIZE_X = 800;
 	private static final int MAIN_WIN_SIZE_Y = 1000;
-	private static final int NUM_LABELS_FIELDS = 10;
+	private static final int TABLE_SIZE_X = 400;
+	private static final int TABLE_SIZE_Y = 400;
+	// How long typing has to pause before converting
+	private static final int TYPING_DELAY_MILLIS = 250;
+	private static final int MAX_SUGGESTIONS = 12;
 	//private static final int TEXT_FIELD_WIDTH=5;
 
 	private boolean initFlag;
 	private MeasurementFactory measurementFactory;
 	private JComboBox jcbMeasurementType;
 	private JButton jbtConvert;
-	private JLabel[] jlbLabels;
-	private JTextField[] jtfFields;
-	private JPanel jplLabels;
-	private JPanel jplFields;
+	private JLabel jlbStatus;
+	private JProgressBar jpbLoading;
+	private UnitTableModel unitTableModel;
+	private JTable jtbUnits;
+	// The value column's editor, where the values are typed
+	private JTextField jtfEditor;
+	private Timer typingTimer;
+	private JTextField jtfFind;
+	private JPopupMenu jpmSuggestions;
+	// The unit found, to select once its measurement is shown
+	private UnitName foundUnit;
 
 	private ComboHandler comboHandler;
-	private TextHandler textHandler;
 	private ButtonHandler buttonHandler;
 
 	public UnitConverterGui(MeasurementFactory measurementFactory)
@@ -55,8 +94,20 @@ public class UnitConverterGui extends JFrame
 	{
 	}
 
+	// Can be called from any thread, the window is built on the event dispatch thread
 	public void init()
 	{
+		if(!SwingUtilities.isEventDispatchThread())
+		{
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run()
+				{
+					init();
+				}
+			});
+			return;
+		}
+
 		if(initFlag)
 		{
 			return;
@@ -69,45 +120,80 @@ public class UnitConverterGui extends JFrame
 		this.setResizable(true);
 
 		comboHandler = new ComboHandler();
-		textHandler = new TextHandler();
 		buttonHandler = new ButtonHandler();
 
+		typingTimer = new Timer(TYPING_DELAY_MILLIS, new ActionListener() {
+			public void actionPerformed(ActionEvent e)
+			{
+				// Converts what has been typed so far, without finishing the edit
+				if(jtbUnits.isEditing())
+				{
+					unitTableModel.setSource(jtbUnits.getEditingRow(), jtfEditor.getText());
+				}
+			}
+		});
+		typingTimer.setRepeats(false);
+
 		//
-		// Combo box
+		// Combo box, and the loading indicator under it
 		//
 		jcbMeasurementType = new JComboBox(measurementFactory.getEntries().toArray());
 		jcbMeasurementType.addActionListener(comboHandler);
 
+		jlbStatus = new JLabel(" ");
+		jpbLoading = new JProgressBar();
+		jpbLoading.setIndeterminate(true);
+		jpbLoading.setVisible(false);
+
+		//
+		// Unit finder, suggests units as their names are typed
+		//
+		FindHandler findHandler = new FindHandler();
+		jtfFind = new JTextField();
+		jtfFind.getDocument().addDocumentListener(findHandler);
+		jtfFind.addActionListener(findHandler);
+		jpmSuggestions = new JPopupMenu();
+		jpmSuggestions.setFocusable(false);
+
 		//
 		// Panels and borders
 		//
-		jplLabels = new JPanel();
-		jplFields = new JPanel();
 		JPanel jplMain = new JPanel();
+		JPanel jplFind = new JPanel();
 		JPanel jplCombo = new JPanel();
-		JPanel jplLabelsFields = new JPanel();
 		JPanel jplButtons = new JPanel();
 		Border spacedBorder = BorderFactory.createEmptyBorder(10,10,10,10);
 
 		//
-		// Labels and Fields
+		// Units table, a value typed in any row is converted to the others
 		//
-		jlbLabels = new JLabel[NUM_LABELS_FIELDS];
-		jtfFields = new JTextField[NUM_LABELS_FIELDS];
-		jplLabels.setLayout(new BoxLayout(jplLabels, BoxLayout.Y_AXIS));
-		jplFields.setLayout(new BoxLayout(jplFields, BoxLayout.Y_AXIS));
-		for(int i = 0; i < NUM_LABELS_FIELDS; i++)
-		{
-			jlbLabels[i] = new JLabel();
-			jlbLabels[i].setName("jlbLabel"+i);
+		unitTableModel = new UnitTableModel();
+		unitTableModel.addTableModelListener(new TableHandler());
+		jtfEditor = new JTextField();
+		jtfEditor.getDocument().addDocumentListener(new TypingHandler());
+		DefaultCellEditor editor = new DefaultCellEditor(jtfEditor) {
+			private static final long serialVersionUID = 1L;
+
+			// Typing replaces the value shown, instead of adding to it
+			public Component getTableCellEditorComponent(JTable table, Object value,
+					boolean isSelected, int row, int column)
+			{
+				Component component = super.getTableCellEditorComponent(table, value, isSelected, row, column);
+				jtfEditor.selectAll();
+				return component;
+			}
+		};
+		editor.setClickCountToStart(1);
+
+		jtbUnits = new JTable(unitTableModel);
+		jtbUnits.getColumnModel().getColumn(UnitTableModel.COLUMN_VALUE).setCellEditor(editor);
+		jtbUnits.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		jtbUnits.setSurrendersFocusOnKeystroke(true);
+		jtbUnits.setFillsViewportHeight(true);
+		jtbUnits.setPreferredScrollableViewportSize(new Dimension(TABLE_SIZE_X, TABLE_SIZE_Y));
+		JScrollPane jspUnits = new JScrollPane(jtbUnits);
+		jspUnits.setBorder(spacedBorder);
 
-			jtfFields[i] = new JTextField();
-			jtfFields[i].setName("jtfField"+i);
-			jtfFields[i].addActionListener(textHandler);
-			//jtfFields[i].addCaretListener(myHandler);
-		}
-		setLabelsFields((String) jcbMeasurementType.getSelectedItem());
-		
 		//
 		// Buttons
 		//
@@ -122,15 +208,16 @@ public class UnitConverterGui extends JFrame
 		//
 		// Populate all the panels
 		//
+		jplFind.setLayout(new BoxLayout(jplFind, BoxLayout.Y_AXIS));
+		jplFind.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEmptyBorder(), FIND_UNIT));
+		jplFind.add(jtfFind);
+
 		jplCombo.setLayout(new BoxLayout(jplCombo, BoxLayout.Y_AXIS));
 		jplCombo.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEmptyBorder(), MEASUREMENT_TYPE));
 		jplCombo.add(jcbMeasurementType);
-
-		jplLabelsFields.setLayout(new BoxLayout(jplLabelsFields, BoxLayout.X_AXIS));
-		jplLabelsFields.setBorder(spacedBorder);
-		jplLabelsFields.add(jplLabels);
-		jplLabelsFields.add(Box.createRigidArea(new Dimension(10, 0)));
-		jplLabelsFields.add(jplFields);
+		jplCombo.add(Box.createRigidArea(new Dimension(0, 5)));
+		jplCombo.add(jlbStatus);
+		jplCombo.add(jpbLoading);
 
 		//jplButtons.setAlignmentX(Component.CENTER_ALIGNMENT);
 		jplButtons.setLayout(new BoxLayout(jplButtons, BoxLayout.X_AXIS));
@@ -143,49 +230,101 @@ public class UnitConverterGui extends JFrame
 
 		jplMain.setLayout(new BoxLayout(jplMain, BoxLayout.Y_AXIS));
 		jplMain.setBorder(spacedBorder);
+		jplMain.add(jplFind);
 		jplMain.add(jplCombo);
-		jplMain.add(jplLabelsFields);
+		jplMain.add(jspUnits);
 		jplMain.add(jplButtons);
 
 		this.getContentPane().setLayout(new BoxLayout(this.getContentPane(), BoxLayout.Y_AXIS));
 		this.getContentPane().add(jplMain);
+		setLabelsFields((String) jcbMeasurementType.getSelectedItem());
 		this.pack();
 		this.setVisible(true);
+
+		new Preloader().execute();
 	}
 
+	//
+	// Shows the units of the measurement, straight away if it is already
+	// created, otherwise once it has been created in the background
+	//
 	private void setLabelsFields(final String measureType)
 	{
-		// First remove the labels and fields from their panels
-		jplLabels.removeAll();
-		jplFields.removeAll();
-
-		Measurement meas = measurementFactory.getMeasurement(measureType);
-		Set<String> measUnitNames = meas.getMeasurementUnitNames();
-		Iterator<String> iter = measUnitNames.iterator();
-		int i;
-		for(i = 0; iter.hasNext(); i++)
+		typingTimer.stop();
+		if(measurementFactory.isLoaded(measureType))
 		{
-			jlbLabels[i].setText(iter.next());
-			jplLabels.add(jlbLabels[i]);
-			jplLabels.add(Box.createRigidArea(new Dimension(0, 5)));
+			showMeasurement(measurementFactory.getMeasurement(measureType));
+			return;
+		}
+
+		stopEditing(false);
+		unitTableModel.setMeasurement(null);
+		jbtConvert.setEnabled(false);
+		jlbStatus.setText(LOADING_TEXT + measureType);
+		jpbLoading.setVisible(true);
+
+		new MeasurementLoader(measureType).execute();
+	}
 
-			jtfFields[i].setText("");
-			jtfFields[i].setEditable(true);
-			jplFields.add(jtfFields[i]);
+	private void showMeasurement(final Measurement meas)
+	{
+		stopEditing(false);
+		unitTableModel.setMeasurement(meas);
+		setStatus(null);
+		jbtConvert.setEnabled(true);
+
+		if(foundUnit != null && foundUnit.getMeasurementType().equals(jcbMeasurementType.getSelectedItem()))
+		{
+			int row = unitTableModel.getRow(foundUnit.getUnitName());
+			if(row >= 0)
+			{
+				jtbUnits.setRowSelectionInterval(row, row);
+				jtbUnits.scrollRectToVisible(jtbUnits.getCellRect(row, UnitTableModel.COLUMN_UNIT, true));
+			}
 		}
+		foundUnit = null;
+	}
 
-		this.pack();
+	//
+	// Shows the measurement of the unit found, with the unit's row selected
+	//
+	private void selectUnit(final UnitName unit)
+	{
+		jpmSuggestions.setVisible(false);
+		foundUnit = unit;
+		if(unit.getMeasurementType().equals(jcbMeasurementType.getSelectedItem()) &&
+				unitTableModel.getMeasurement() != null)
+		{
+			showMeasurement(unitTableModel.getMeasurement());
+		}
+		else
+		{
+			// Shows it, now or once it is loaded, through the ComboHandler
+			jcbMeasurementType.setSelectedItem(unit.getMeasurementType());
+		}
+	}
+
+	private void setStatus(final String text)
+	{
+		jpbLoading.setVisible(false);
+		jlbStatus.setText((text == null) ? " " : text);
 	}
 
-	private void clearFields(boolean editable)
+	// Finishes any edit in progress, keeping what was typed or not.
+	// Returns false if the edit could not be finished.
+	private boolean stopEditing(boolean keep)
 	{
-		for(int i = 0; i < NUM_LABELS_FIELDS; i++)
+		typingTimer.stop();
+		if(!jtbUnits.isEditing())
 		{
-			jtfFields[i].setText("");
-			jtfFields[i].setEditable(editable);
+			return true;
 		}
-		
-		jbtConvert.setEnabled(true);
+		if(keep)
+		{
+			return jtbUnits.getCellEditor().stopCellEditing();
+		}
+		jtbUnits.getCellEditor().cancelCellEditing();
+		return true;
 	}
 
 /* Use this to capture mouse selection, etc
@@ -198,101 +337,218 @@ public class UnitConverterGui extends JFrame
 	}
 */
 
-	private class ComboHandler implements ActionListener
+	//
+	// Creates a measurement off the event dispatch thread
+	//
+	private class MeasurementLoader extends SwingWorker<Measurement, Void>
 	{
-		String lastCmbType = null;
+		private final String measureType;
 
-		public void actionPerformed(ActionEvent e)
+		MeasurementLoader(final String measureType)
 		{
-			JComboBox jcmbType = (JComboBox) e.getSource();
-			String cmbType = (String) jcmbType.getSelectedItem();
+			this.measureType = measureType;
+		}
 
-			// Dont do anything if the selection didnt change
-			if(lastCmbType != null)
+		protected Measurement doInBackground()
+		{
+			return measurementFactory.getMeasurement(measureType);
+		}
+
+		protected void done()
+		{
+			// Unless another measurement was chosen in the meantime,
+			// or an earlier loader has already shown this one
+			if(!measureType.equals(jcbMeasurementType.getSelectedItem()) ||
+					unitTableModel.getMeasurement() != null)
 			{
-				if(cmbType.equals(lastCmbType))
+				return;
+			}
+
+			try
+			{
+				showMeasurement(get());
+			}
+			catch(Exception e)
+			{
+				Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+				setStatus("Unable to load " + measureType + ": " + cause.getMessage());
+			}
+		}
+	}
+
+	//
+	// Creates all the measurements in the background, one at a time.
+	// One that is chosen meanwhile is shared with its MeasurementLoader.
+	//
+	private class Preloader extends SwingWorker<Void, Void>
+	{
+		protected Void doInBackground()
+		{
+			for(String measureType : measurementFactory.getEntries())
+			{
+				try
 				{
-					return;
+					measurementFactory.getMeasurement(measureType);
+				}
+				catch(RuntimeException e)
+				{
+					// Reported if and when it is chosen
 				}
 			}
-			lastCmbType = cmbType;
-			setLabelsFields(cmbType);
-			jbtConvert.setEnabled(true);
+			return null;
 		}
 	}
 
-	private class TextHandler implements ActionListener
+	//
+	// Converts once the typing in the value editor pauses
+	//
+	private class TypingHandler implements DocumentListener
 	{
-		public void actionPerformed(ActionEvent e)
+		public void insertUpdate(DocumentEvent e)
+		{
+			typed();
+		}
+
+		public void removeUpdate(DocumentEvent e)
+		{
+			typed();
+		}
+
+		public void changedUpdate(DocumentEvent e)
+		{
+			// Only attributes changed, not the text
+		}
+
+		private void typed()
 		{
-			// Do the same as though the Convert button were pressed
-			ActionEvent event = new ActionEvent(e.getSource(), e.getID(), BUTTON_TEXT_CONVERT);
-			buttonHandler.actionPerformed(event);
+			// Not while the editor is being filled in, before the editing starts
+			if(jtbUnits.isEditing())
+			{
+				typingTimer.restart();
+			}
 		}
 	}
 
-	private class ButtonHandler implements ActionListener
+	//
+	// Suggests the units starting with what is typed in the finder, pressing
+	// enter picks the first of them
+	//
+	private class FindHandler implements DocumentListener, ActionListener
 	{
+		private List<UnitName> suggestions;
+
+		public void insertUpdate(DocumentEvent e)
+		{
+			suggest();
+		}
+
+		public void removeUpdate(DocumentEvent e)
+		{
+			suggest();
+		}
+
+		public void changedUpdate(DocumentEvent e)
+		{
+			// Only attributes changed, not the text
+		}
+
 		public void actionPerformed(ActionEvent e)
 		{
-			if(BUTTON_TEXT_CLEAR.equals(e.getActionCommand()))
+			if(suggestions != null && !suggestions.isEmpty())
 			{
-				clearFields(true);
+				selectUnit(suggestions.get(0));
 			}
-			else if(BUTTON_TEXT_CONVERT.equals(e.getActionCommand()))
+		}
+
+		private void suggest()
+		{
+			String prefix = jtfFind.getText().trim();
+			suggestions = (prefix.length() == 0) ?
+					null : measurementFactory.getUnitIndex().findPrefix(prefix, MAX_SUGGESTIONS);
+
+			jpmSuggestions.setVisible(false);
+			jpmSuggestions.removeAll();
+			if(suggestions == null || suggestions.isEmpty())
 			{
-				String unitName = null;
-				String value = null;
-				
-				jbtConvert.setEnabled(false);
+				return;
+			}
 
-				for(int i = 0; i < NUM_LABELS_FIELDS; i++)
-				{
-					jtfFields[i].setEditable(false);
-					String str = jtfFields[i].getText();
-					if(str != null && value == null)
+			for(final UnitName unit : suggestions)
+			{
+				JMenuItem item = new JMenuItem(unit.toString());
+				item.addActionListener(new ActionListener() {
+					public void actionPerformed(ActionEvent e)
 					{
-						if(str.length() > 0)
-						{
-							value = str;
-							unitName = jlbLabels[i].getText();
-						}
+						selectUnit(unit);
 					}
-				}
+				});
+				jpmSuggestions.add(item);
+			}
+			jpmSuggestions.show(jtfFind, 0, jtfFind.getHeight());
+		}
+	}
 
-				if(unitName == null || value == null)
+	//
+	// Keeps the status line in step with the value entered
+	//
+	private class TableHandler implements TableModelListener
+	{
+		public void tableChanged(TableModelEvent e)
+		{
+			if(unitTableModel.getMeasurement() == null)
+			{
+				return;
+			}
+
+			String invalidText = unitTableModel.getInvalidText();
+			setStatus((invalidText == null) ? null : INVALID_NUMBER_TEXT + invalidText);
+		}
+	}
+
+	private class ComboHandler implements ActionListener
+	{
+		String lastCmbType = null;
+
+		public void actionPerformed(ActionEvent e)
+		{
+			JComboBox jcmbType = (JComboBox) e.getSource();
+			String cmbType = (String) jcmbType.getSelectedItem();
+
+			// Dont do anything if the selection didnt change
+			if(lastCmbType != null)
+			{
+				if(cmbType.equals(lastCmbType))
 				{
-					// Nothing was entered, set all fields editable again
-					clearFields(true);
 					return;
 				}
+			}
+			lastCmbType = cmbType;
+			setLabelsFields(cmbType);
+		}
+	}
 
-				Measurement meas = 
-					measurementFactory.getMeasurement(
-							(String) jcbMeasurementType.getSelectedItem());
-				MeasurementUnit unit = meas.findUnit(unitName);
-				double refValue = 0.0;
-				try {
-					refValue = unit.convertToReference(Double.parseDouble(value));
-				}
-				catch(NumberFormatException ex) {
-					JOptionPane.showMessageDialog(null, "A valid number must be entered: " + ex.getMessage());
-					clearFields(true);
-					return;
-				}
+	private class ButtonHandler implements ActionListener
+	{
+		public void actionPerformed(ActionEvent e)
+		{
+			if(unitTableModel.getMeasurement() == null)
+			{
+				return;
+			}
 
-				// Now Iterate over the MeasurementUnits in 
-				// the Measurement and set the field values
-				Set<String> unitsSet = meas.getMeasurementUnitNames();
-				Iterator<String> unitsIter = unitsSet.iterator();
-				
-				for(int i = 0; unitsIter.hasNext(); i++)
+			if(BUTTON_TEXT_CLEAR.equals(e.getActionCommand()))
+			{
+				stopEditing(false);
+				unitTableModel.clear();
+			}
+			else if(BUTTON_TEXT_CONVERT.equals(e.getActionCommand()))
+			{
+				// The value is converted as it is typed, this just finishes the edit
+				stopEditing(true);
+				String invalidText = unitTableModel.getInvalidText();
+				if(invalidText != null)
 				{
-					MeasurementUnit mu = meas.findUnit(unitsIter.next());
-					jlbLabels[i].setName(mu.getName());
-					jtfFields[i].setText(
-							meas.formatUnitValue(
-									mu.convertFromReference(refValue)));
+					JOptionPane.showMessageDialog(null, "A valid number must be entered: " + invalidText);
 				}
 			}
 		}
@@ -1,81 +1,80 @@
 package com.johnson.UnitConverter;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.johnson.UnitConverter.batch.CsvConverter;
+import com.johnson.UnitConverter.batch.MappedFileConverter;
+import com.johnson.UnitConverter.expression.QueryResult;
+import com.johnson.UnitConverter.expression.UnitQuery;
+import com.johnson.UnitConverter.server.BinaryConversionServer;
+import com.johnson.UnitConverter.server.ConversionServer;
+import com.johnson.UnitConverter.units.CachingCurrencyConverter;
+
 public class UnitConverterMain
 {
-	private static final String ARG_LENGTH_CM     = "-cm";
-	private static final String ARG_LENGTH_METER  = "-m";
-	private static final String ARG_LENGTH_KM     = "-km";
-	private static final String ARG_LENGTH_INCH   = "-in";
-	private static final String ARG_LENGTH_FOOT   = "-ft";
-	private static final String ARG_LENGTH_MILE   = "-mi";
-
-	private static final String ARG_WEIGHT_GRAM   = "-g";
-	private static final String ARG_WEIGHT_KG     = "-kg";
-	private static final String ARG_WEIGHT_POUND  = "-lb";
-	private static final String ARG_WEIGHT_OUNCE  = "-oz";
-
-	private static final String ARG_VOLUME_LITER  = "-l";
-	private static final String ARG_VOLUME_GALLON = "-ga";
-	private static final String ARG_VOLUME_CUP    = "-cp";
-	private static final String ARG_VOLUME_PINT   = "-p";
-	private static final String ARG_VOLUME_QUART  = "-q";
-	private static final String ARG_VOLUME_OUNCE  = "-foz";
-
-	private static final String ARG_TEMP_CELSIUS    = "-c";
-	private static final String ARG_TEMP_FAHRENHEIT = "-f";
-	private static final String ARG_TEMP_KELVIN     = "-k";
-	
-	private static final String ARG_POWER_WATT		          = "-w";
-	private static final String ARG_POWER_HORSEPOWER          = "-hp";
-	private static final String ARG_POWER_CALORIES_PER_SECOND = "-cps";
-	private static final String ARG_POWER_BTU_PER_SECOND      = "-btu";
-	private static final String ARG_POWER_MEGAWATT		      = "-mw";
-	private static final String ARG_POWER_KILOWATT		      = "-kw";
-
-	private static final String ARG_PRESSURE_PASCAL     = "-pa";
-	private static final String ARG_PRESSURE_ATMOSPHERE = "-atm";
-	private static final String ARG_PRESSURE_BAR 	     = "-bar";
-	private static final String ARG_PRESSURE_PSI 	     = "-psi";
-	private static final String ARG_PRESSURE_TORR 	     = "-torr";
-
-	private static final String ARG_MILEAGE_KPL   = "-kpl";
-	private static final String ARG_MILEAGE_MPG   = "-mpg";
-	private static final String ARG_MILEAGE_LPK   = "-lpk";
-
-	private static final String ARG_AREA_SQ_METER = "-m2";
-	private static final String ARG_AREA_SQ_KM    = "-km2";
-	private static final String ARG_AREA_SQ_INCH  = "-in2";
-	private static final String ARG_AREA_SQ_FOOT  = "-ft2";
-	private static final String ARG_AREA_SQ_YARD  = "-yd2";
-	private static final String ARG_AREA_SQ_MILE  = "-mi2";
-	private static final String ARG_AREA_ACRE     = "-ac";
-	private static final String ARG_AREA_HECTARE  = "-ha";
-	
-	private static final String ARG_SPEED_KMH   = "-kmh";
-	private static final String ARG_SPEED_MPH   = "-mph";
-	private static final String ARG_SPEED_MS    = "-ms";
-	private static final String ARG_SPEED_KNOTS = "-kn";
-	
-	private static final String ARG_ANGLE_DEGREES  = "-deg";
-	private static final String ARG_ANGLE_RADIANS  = "-rad";
-	private static final String ARG_ANGLE_GRADIANS = "-grd";
-	
-	private static final String ARG_CURRENCY_USD = "-usd";
-	private static final String ARG_CURRENCY_EUR = "-eur";
-	private static final String ARG_CURRENCY_GBP = "-gbp";
-	private static final String ARG_CURRENCY_INR = "-inr";
-	private static final String ARG_CURRENCY_AUD = "-aud";
-	private static final String ARG_CURRENCY_CAD = "-cad";
-	private static final String ARG_CURRENCY_SGD = "-sgd";
-	private static final String ARG_CURRENCY_JPY = "-jpy";
-	private static final String ARG_CURRENCY_CNY = "-cny";
-	private static final String ARG_CURRENCY_RUB = "-rub";
-
 	private static final String ARG_HELP_H        = "-h";
 	private static final String ARG_HELP          = "-help";
 	private static final String ARG_HELP_QMARK    = "-?";
 
-	private static class Input
+	private static final String ARG_BATCH_CSV       = "-csv";
+	private static final String ARG_BATCH_TSV       = "-tsv";
+	private static final String ARG_BATCH_FROM      = "-from";
+	private static final String ARG_BATCH_TO        = "-to";
+	private static final String ARG_BATCH_COLUMNS   = "-col";
+	private static final String ARG_BATCH_NO_HEADER = "-noheader";
+	private static final String ARG_BATCH_BINARY    = "-bin";
+	private static final String ARG_BATCH_THREADS   = "-threads";
+
+	private static final String ARG_SERVER          = "-server";
+	private static final String ARG_SERVER_PORT     = "-port";
+	private static final String ARG_SERVER_MAX      = "-max";
+	private static final String ARG_SOCKET          = "-socket";
+	private static final String ARG_SOCKET_UNIX     = "-unix";
+
+	private static final String ARG_QUERY           = "-query";
+	private static final String ARG_COMPLETE        = "-complete";
+	private static final String ARG_COMPLETE_MAX    = "-max";
+
+	private static final int DEFAULT_COMPLETIONS = 20;
+
+	// The exit status: a conversion failed, or the command line was wrong
+	private static final int EXIT_ERROR = 1;
+	private static final int EXIT_USAGE = 2;
+
+	private static final int BATCH_OUTPUT_BUFFER_SIZE = 1 << 20;
+
+	// Set to true to print how long the measurement took to load
+	private static final String TIMING_PROPERTY = "unitconverter.timing";
+
+	// Set to true to print the classes loaded, time and memory it took to get to the output
+	private static final String STARTUP_PROPERTY = "unitconverter.startup";
+
+	// How long a run waits on exit for stale exchange rates being refreshed
+	private static final long REFRESH_WAIT_MILLIS = 2000;
+
+	// Loaded by name, so the command line never loads the GUI, and with it Swing
+	private static final String GUI_CLASS = "com.johnson.UnitConverter.UnitConverterGui";
+
+	private static final String PROC_STATUS_FILE = "/proc/self/status";
+	private static final String PROC_STATUS_RSS = "VmRSS:";
+
+	static class Input
 	{
 		public String measurementType;
 		public String measurementUnit;
@@ -84,516 +83,693 @@ public class UnitConverterMain
 
 	//
 	//	 Simple Command line parser
+	//     Any number of unit flag and value pairs, like: -cm 10 -lb 2.5
 	//
-	private static boolean parseCommandLine(final String[] args, Input input) throws Exception
+	static boolean parseCommandLine(final String[] args, MeasurementCatalog catalog, List<Input> inputs) throws Exception
 	{
 		if(args.length == 1)
 		{
 			if(ARG_HELP.equals(args[0]) || ARG_HELP_H.equals(args[0]) || ARG_HELP_QMARK.equals(args[0]))
 		    {
-		      printUsage();
+		      printUsage(catalog);
 		      return false;
 		    }
-			else
-			{
-				throw new Exception("Invalid command line argument: " + args[0] );
-			}
 		}
 
-		if(args.length > 2)
+		if(args.length == 0 || args.length % 2 != 0)
 		{
-			throw new Exception("Invalid number of command line arguments: " + args.length );
+			throw new Exception("Each unit needs a value, invalid number of command line arguments: " + args.length );
 		}
 
-		for(int i = 0; i < args.length; i++)
+		for(int i = 0; i < args.length; i += 2)
 		{
-			String argv = args[i];
-			input.value = Double.parseDouble(args[++i]);
-
-			//
-			// Lengths
-			//
-
-			if(ARG_LENGTH_CM.equals(argv))
+			Input input = new Input();
+			parseUnitArg(args[i], catalog, input);
+			try
 			{
-				input.measurementType = MeasurementFactory.MEASURE_LENGTH;
-				input.measurementUnit = MeasurementFactory.UNIT_LENGTH_CM;
+				input.value = Double.parseDouble(args[i + 1]);
 			}
-			else if(ARG_LENGTH_METER.equals(argv))
+			catch(NumberFormatException e)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_LENGTH;
-				input.measurementUnit = MeasurementFactory.UNIT_LENGTH_METER;
-			}
-			else if(ARG_LENGTH_KM.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_LENGTH;
-				input.measurementUnit = MeasurementFactory.UNIT_LENGTH_KM;
-			}
-			else if(ARG_LENGTH_INCH.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_LENGTH;
-				input.measurementUnit = MeasurementFactory.UNIT_LENGTH_INCH;
-			}
-			else if(ARG_LENGTH_FOOT.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_LENGTH;
-				input.measurementUnit = MeasurementFactory.UNIT_LENGTH_FOOT;
-			}
-			else if(ARG_LENGTH_MILE.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_LENGTH;
-				input.measurementUnit = MeasurementFactory.UNIT_LENGTH_MILE;
+				throw new Exception("Invalid value for " + args[i] + ": " + args[i + 1]);
 			}
+			inputs.add(input);
+		}
+		
+		return true;
+	}
 
-			//
-			// Weights
-			//
-			else if(ARG_WEIGHT_GRAM.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_WEIGHT;
-				input.measurementUnit = MeasurementFactory.UNIT_WEIGHT_GRAM;
-			}
-			else if(ARG_WEIGHT_KG.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_WEIGHT;
-				input.measurementUnit = MeasurementFactory.UNIT_WEIGHT_KG;
-			}
-			else if(ARG_WEIGHT_POUND.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_WEIGHT;
-				input.measurementUnit = MeasurementFactory.UNIT_WEIGHT_POUND;
-			}
-			else if(ARG_WEIGHT_OUNCE.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_WEIGHT;
-				input.measurementUnit = MeasurementFactory.UNIT_WEIGHT_OUNCE;
-			}
+	//
+	// Sets the measurement type and unit for a unit argument like -cm
+	//
+	private static void parseUnitArg(final String argv, MeasurementCatalog catalog, Input input) throws Exception
+	{
+		UnitFlag flag = catalog.getUnitFlag(argv);
+		if(flag == null)
+		{
+			throw new Exception("Invalid command line argument: " + argv );
+		}
 
-			//
-			// Volumes
-			//
-			else if(ARG_VOLUME_LITER.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_VOLUME;
-				input.measurementUnit = MeasurementFactory.UNIT_VOLUME_LITER;
-			}
-			else if(ARG_VOLUME_GALLON.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_VOLUME;
-				input.measurementUnit = MeasurementFactory.UNIT_VOLUME_GALLON;
-			}
-			else if(ARG_VOLUME_CUP.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_VOLUME;
-				input.measurementUnit = MeasurementFactory.UNIT_VOLUME_CUP;
-			}
-			else if(ARG_VOLUME_OUNCE.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_VOLUME;
-				input.measurementUnit = MeasurementFactory.UNIT_VOLUME_OUNCE;
-			}
-			else if(ARG_VOLUME_PINT.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_VOLUME;
-				input.measurementUnit = MeasurementFactory.UNIT_VOLUME_PINT;
-			}
-			else if(ARG_VOLUME_QUART.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_VOLUME;
-				input.measurementUnit = MeasurementFactory.UNIT_VOLUME_QUART;
-			}
+		input.measurementType = flag.getMeasurementType();
+		input.measurementUnit = flag.getUnitName();
+	}
 
-			//
-			// Temperatures
-			//
-			else if(ARG_TEMP_CELSIUS.equals(argv))
-			{
-				input.measurementType = MeasurementFactory.MEASURE_TEMPERATURE;
-				input.measurementUnit = MeasurementFactory.UNIT_TEMP_CELSIUS;
-			}
-			else if(ARG_TEMP_FAHRENHEIT.equals(argv))
+	//
+	// Batch conversion of CSV or TSV input, for example:
+	//   -csv -from ft -to m,cm -col height readings.csv
+	//
+	private static void runBatch(final String[] args, MeasurementFactory factory) throws Exception
+	{
+		String from = null;
+		String to = null;
+		String columns = null;
+		String fileName = null;
+		boolean header = true;
+
+		for(int i = 1; i < args.length; i++)
+		{
+			if(ARG_BATCH_FROM.equals(args[i]) && i + 1 < args.length)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_TEMPERATURE;
-				input.measurementUnit = MeasurementFactory.UNIT_TEMP_FAHRENHEIT;
+				from = args[++i];
 			}
-			else if(ARG_TEMP_KELVIN.equals(argv))
+			else if(ARG_BATCH_TO.equals(args[i]) && i + 1 < args.length)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_TEMPERATURE;
-				input.measurementUnit = MeasurementFactory.UNIT_TEMP_KELVIN;
+				to = args[++i];
 			}
-			
-			//
-			// Power
-			//
-			else if(ARG_POWER_WATT.equals(argv))
+			else if(ARG_BATCH_COLUMNS.equals(args[i]) && i + 1 < args.length)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_POWER;
-				input.measurementUnit = MeasurementFactory.UNIT_POWER_WATT;
+				columns = args[++i];
 			}
-			else if(ARG_POWER_HORSEPOWER.equals(argv))
+			else if(ARG_BATCH_NO_HEADER.equals(args[i]))
 			{
-				input.measurementType = MeasurementFactory.MEASURE_POWER;
-				input.measurementUnit = MeasurementFactory.UNIT_POWER_HORSEPOWER;
+				header = false;
 			}
-			else if(ARG_POWER_CALORIES_PER_SECOND.equals(argv))
+			else if(fileName == null && !args[i].startsWith("-"))
 			{
-				input.measurementType = MeasurementFactory.MEASURE_POWER;
-				input.measurementUnit = MeasurementFactory.UNIT_POWER_CALORIES_PER_SECOND;
+				fileName = args[i];
 			}
-			else if(ARG_POWER_BTU_PER_SECOND.equals(argv))
+			else
 			{
-				input.measurementType = MeasurementFactory.MEASURE_POWER;
-				input.measurementUnit = MeasurementFactory.UNIT_POWER_BTU_PER_SECOND;
+				throw new Exception("Invalid batch argument: " + args[i]);
 			}
-			else if(ARG_POWER_MEGAWATT.equals(argv))
+		}
+
+		if(from == null || to == null || columns == null)
+		{
+			throw new Exception("Batch conversion needs " +
+					ARG_BATCH_FROM + ", " + ARG_BATCH_TO + " and " + ARG_BATCH_COLUMNS);
+		}
+
+		// The units are given as their command line args, with or without the dash
+		Input fromInput = new Input();
+		parseUnitArg(from.startsWith("-") ? from : "-" + from, factory.getCatalog(), fromInput);
+		Measurement m = factory.getMeasurement(fromInput.measurementType);
+
+		CsvConverter csv = new CsvConverter(ARG_BATCH_TSV.equals(args[0]) ? '\t' : ',', header);
+		for(String column : columns.split(","))
+		{
+			for(String target : to.split(","))
 			{
-				input.measurementType = MeasurementFactory.MEASURE_POWER;
-				input.measurementUnit = MeasurementFactory.UNIT_POWER_MEGAWATT;
+				Input toInput = new Input();
+				parseUnitArg(target.startsWith("-") ? target : "-" + target, factory.getCatalog(), toInput);
+				if(!fromInput.measurementType.equals(toInput.measurementType))
+				{
+					throw new Exception("Cannot convert " + fromInput.measurementUnit + " to " + toInput.measurementUnit);
+				}
+
+				csv.addColumn(column, column + " [" + toInput.measurementUnit + "]",
+						m.converter(fromInput.measurementUnit, toInput.measurementUnit));
 			}
-			else if(ARG_POWER_KILOWATT.equals(argv))
+		}
+
+		InputStream is = (fileName == null) ? System.in : new FileInputStream(fileName);
+		try
+		{
+			Reader in = new InputStreamReader(is, StandardCharsets.UTF_8);
+			Writer out = new BufferedWriter(
+					new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BATCH_OUTPUT_BUFFER_SIZE);
+			csv.convert(in, out);
+		}
+		finally
+		{
+			if(is != System.in)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_POWER;
-				input.measurementUnit = MeasurementFactory.UNIT_POWER_KILOWATT;
+				is.close();
 			}
-			
-			//
-			// Pressure
-			//
-			else if(ARG_PRESSURE_PASCAL.equals(argv))
+		}
+	}
+
+	//
+	// Conversion of raw little endian float64 files, for example:
+	//   -bin -from psi -to bar pressure.f64 pressure-bar.f64
+	//
+	private static void runBinary(final String[] args, MeasurementFactory factory) throws Exception
+	{
+		String from = null;
+		String to = null;
+		String inFile = null;
+		String outFile = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		for(int i = 1; i < args.length; i++)
+		{
+			if(ARG_BATCH_FROM.equals(args[i]) && i + 1 < args.length)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_PRESSURE;
-				input.measurementUnit = MeasurementFactory.UNIT_PRESSURE_PASCAL;
+				from = args[++i];
 			}
-			else if(ARG_PRESSURE_ATMOSPHERE.equals(argv))
+			else if(ARG_BATCH_TO.equals(args[i]) && i + 1 < args.length)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_PRESSURE;
-				input.measurementUnit = MeasurementFactory.UNIT_PRESSURE_ATMOSPHERE;
+				to = args[++i];
 			}
-			else if(ARG_PRESSURE_BAR.equals(argv))
+			else if(ARG_BATCH_THREADS.equals(args[i]) && i + 1 < args.length)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_PRESSURE;
-				input.measurementUnit = MeasurementFactory.UNIT_PRESSURE_BAR;
+				threads = Integer.parseInt(args[++i]);
 			}
-			else if(ARG_PRESSURE_PSI.equals(argv))
+			else if(inFile == null && !args[i].startsWith("-"))
 			{
-				input.measurementType = MeasurementFactory.MEASURE_PRESSURE;
-				input.measurementUnit = MeasurementFactory.UNIT_PRESSURE_PSI;
+				inFile = args[i];
 			}
-			else if(ARG_PRESSURE_TORR.equals(argv))
+			else if(outFile == null && !args[i].startsWith("-"))
 			{
-				input.measurementType = MeasurementFactory.MEASURE_PRESSURE;
-				input.measurementUnit = MeasurementFactory.UNIT_PRESSURE_TORR;
+				outFile = args[i];
 			}
-			
-			//
-			// Mileage
-			//
-			else if(ARG_MILEAGE_KPL.equals(argv))
+			else
 			{
-				input.measurementType = MeasurementFactory.MEASURE_MILEAGE;
-				input.measurementUnit = MeasurementFactory.UNIT_MILEAGE_KPL;
+				throw new Exception("Invalid binary conversion argument: " + args[i]);
 			}
-			else if(ARG_MILEAGE_LPK.equals(argv))
+		}
+
+		if(from == null || to == null || inFile == null || outFile == null)
+		{
+			throw new Exception("Binary conversion needs " +
+					ARG_BATCH_FROM + ", " + ARG_BATCH_TO + ", an input file and an output file");
+		}
+
+		Input fromInput = new Input();
+		Input toInput = new Input();
+		parseUnitArg(from.startsWith("-") ? from : "-" + from, factory.getCatalog(), fromInput);
+		parseUnitArg(to.startsWith("-") ? to : "-" + to, factory.getCatalog(), toInput);
+		if(!fromInput.measurementType.equals(toInput.measurementType))
+		{
+			throw new Exception("Cannot convert " + fromInput.measurementUnit + " to " + toInput.measurementUnit);
+		}
+
+		Converter converter = factory.getMeasurement(fromInput.measurementType)
+				.converter(fromInput.measurementUnit, toInput.measurementUnit);
+		MappedFileConverter files = new MappedFileConverter(MappedFileConverter.DEFAULT_WINDOW_SIZE, threads);
+		files.convert(new File(inFile), new File(outFile), converter);
+	}
+
+	//
+	// Answers free text queries, for example:
+	//   -query "12.5 mi in km" "98.6 f to c"
+	// or one query per line from stdin when none are given. A query that
+	// can not be answered is reported and the rest carry on. Returns false
+	// if any could not be answered.
+	//
+	private static boolean runQueries(final String[] args, MeasurementFactory factory) throws IOException
+	{
+		UnitQuery queries = new UnitQuery(factory);
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+		long start = System.nanoTime();
+		int count = 0;
+		boolean answered = true;
+
+		if(args.length > 1)
+		{
+			for(int i = 1; i < args.length; i++)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_MILEAGE;
-				input.measurementUnit = MeasurementFactory.UNIT_MILEAGE_LPK;
+				answered &= query(queries, args[i], out);
+				count++;
 			}
-			else if(ARG_MILEAGE_MPG.equals(argv))
+		}
+		else
+		{
+			BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+			String line;
+			while((line = in.readLine()) != null)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_MILEAGE;
-				input.measurementUnit = MeasurementFactory.UNIT_MILEAGE_MPG;
+				if(line.trim().length() > 0)
+				{
+					answered &= query(queries, line, out);
+					count++;
+				}
 			}
+		}
+		out.flush();
 
-			//
-			// Area
-			//
-			else if(ARG_AREA_SQ_METER.equals(argv))
+		if(Boolean.getBoolean(TIMING_PROPERTY))
+		{
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.err.printf("%d queries in %.3f s, %.0f queries/s%n", count, seconds, count / seconds);
+		}
+		return answered;
+	}
+
+	private static boolean query(final UnitQuery queries, String query, Writer out) throws IOException
+	{
+		QueryResult result;
+		try
+		{
+			result = queries.query(query);
+		}
+		catch(IllegalArgumentException e)
+		{
+			out.flush();
+			System.err.println("Error in query: " + e.getMessage());
+			return false;
+		}
+		out.write(result.toString());
+		out.write('\n');
+		return true;
+	}
+
+	//
+	// Lists the units with a name, alias or flag starting with the prefix,
+	// in any case, one per line for shell and editor completion, like:
+	//   -complete kilo -max 5
+	//
+	private static void runComplete(final String[] args, MeasurementFactory factory)
+	{
+		String prefix = null;
+		int max = DEFAULT_COMPLETIONS;
+		for(int i = 1; i < args.length; i++)
+		{
+			if(ARG_COMPLETE_MAX.equals(args[i]) && i + 1 < args.length)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_AREA;
-				input.measurementUnit = MeasurementFactory.UNIT_AREA_SQ_METER;
+				max = Integer.parseInt(args[++i]);
 			}
-			else if(ARG_AREA_SQ_KM.equals(argv))
+			else
 			{
-				input.measurementType = MeasurementFactory.MEASURE_AREA;
-				input.measurementUnit = MeasurementFactory.UNIT_AREA_SQ_KM;
+				prefix = args[i];
 			}
-			else if(ARG_AREA_SQ_INCH.equals(argv))
+		}
+		if(prefix == null)
+		{
+			throw new IllegalArgumentException("Missing the prefix to complete");
+		}
+
+		StringBuilder out = new StringBuilder();
+		for(UnitName name : factory.getUnitIndex().findPrefix(prefix, max))
+		{
+			out.append(name).append('\n');
+		}
+		System.out.print(out);
+	}
+
+	//
+	// Serves conversions over HTTP until the JVM is stopped, for example:
+	//   -server -port 8080 -max 256
+	//
+	private static void runServer(final String[] args, MeasurementFactory factory) throws Exception
+	{
+		int port = ConversionServer.DEFAULT_PORT;
+		int maxConcurrent = ConversionServer.DEFAULT_MAX_CONCURRENT;
+
+		for(int i = 1; i < args.length; i++)
+		{
+			if(ARG_SERVER_PORT.equals(args[i]) && i + 1 < args.length)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_AREA;
-				input.measurementUnit = MeasurementFactory.UNIT_AREA_SQ_INCH;
+				port = Integer.parseInt(args[++i]);
 			}
-			else if(ARG_AREA_SQ_FOOT.equals(argv))
+			else if(ARG_SERVER_MAX.equals(args[i]) && i + 1 < args.length)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_AREA;
-				input.measurementUnit = MeasurementFactory.UNIT_AREA_SQ_FOOT;
+				maxConcurrent = Integer.parseInt(args[++i]);
 			}
-			else if(ARG_AREA_SQ_YARD.equals(argv))
+			else
 			{
-				input.measurementType = MeasurementFactory.MEASURE_AREA;
-				input.measurementUnit = MeasurementFactory.UNIT_AREA_SQ_YARD;
+				throw new Exception("Invalid server argument: " + args[i]);
 			}
-			else if(ARG_AREA_SQ_MILE.equals(argv))
+		}
+
+		// Create every measurement up front, so no request waits for one to load
+		for(String measurementType : factory.getEntries())
+		{
+			factory.getMeasurement(measurementType);
+		}
+
+		ConversionServer server = new ConversionServer(factory, port, maxConcurrent);
+		server.start();
+		System.out.println("Serving conversions on port " + server.getPort() +
+				", at most " + maxConcurrent + " at once");
+	}
+
+	//
+	// Serves the binary protocol until the JVM is stopped, on TCP, a Unix
+	// domain socket, or both, for example:
+	//   -socket -port 8081 -unix /tmp/unitconverter.sock
+	//
+	private static void runSocketServer(final String[] args, MeasurementFactory factory) throws Exception
+	{
+		int port = -1;
+		String unixPath = null;
+
+		for(int i = 1; i < args.length; i++)
+		{
+			if(ARG_SERVER_PORT.equals(args[i]) && i + 1 < args.length)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_AREA;
-				input.measurementUnit = MeasurementFactory.UNIT_AREA_SQ_MILE;
+				port = Integer.parseInt(args[++i]);
 			}
-			else if(ARG_AREA_ACRE.equals(argv))
+			else if(ARG_SOCKET_UNIX.equals(args[i]) && i + 1 < args.length)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_AREA;
-				input.measurementUnit = MeasurementFactory.UNIT_AREA_ACRE;
+				unixPath = args[++i];
 			}
-			else if(ARG_AREA_HECTARE.equals(argv))
+			else
 			{
-				input.measurementType = MeasurementFactory.MEASURE_AREA;
-				input.measurementUnit = MeasurementFactory.UNIT_AREA_HECTARE;
+				throw new Exception("Invalid server argument: " + args[i]);
 			}
-			
-			//
-			// Speed
-			//
-			else if(ARG_SPEED_KMH.equals(argv))
+		}
+
+		if(port < 0 && unixPath == null)
+		{
+			port = BinaryConversionServer.DEFAULT_PORT;
+		}
+
+		for(String measurementType : factory.getEntries())
+		{
+			factory.getMeasurement(measurementType);
+		}
+
+		BinaryConversionServer server = new BinaryConversionServer(factory);
+		if(port >= 0)
+		{
+			server.listen(port);
+			System.out.println("Serving binary conversions on port " + server.getPort());
+		}
+		if(unixPath != null)
+		{
+			server.listen(Paths.get(unixPath));
+			System.out.println("Serving binary conversions on " + unixPath);
+		}
+		server.start();
+	}
+
+	//
+	// The unit flags are listed from the catalog, so they always match
+	//
+	private static void printUsage(final MeasurementCatalog catalog)
+	{
+	  StringBuilder units = new StringBuilder();
+	  for(String measurementType : catalog.getNames())
+	  {
+		  units.append("\n").append(measurementType).append(":\n");
+		  for(UnitFlag flag : catalog.getProvider(measurementType).getUnitFlags())
+		  {
+			  units.append("\t").append(flag.getFlag()).append("\t ").append(flag.getDescription()).append("\n");
+		  }
+	  }
+
+	  System.out.println(
+		   "\nUsage:\n" +
+		   "\t If started with no arguments, the GUI will be launched\n" +
+	       "Specify one or more of the following, each followed by a value, and the rest\n" +
+	       "of the units of that measurement will be displayed, for example: -cm 10 -lb 2.5\n" +
+	       units +
+
+	       "\nBatch conversion, reads from stdin if no file is given:\n\t" +
+	       ARG_BATCH_CSV + " " + ARG_BATCH_FROM + " <unit> " + ARG_BATCH_TO + " <unit,...> " +
+	           ARG_BATCH_COLUMNS + " <column,...> [" + ARG_BATCH_NO_HEADER + "] [file]\n\t" +
+	       "\t Appends the converted columns to each row, units are given as above without the dash\n\t" +
+	       ARG_BATCH_TSV + "\t Same as " + ARG_BATCH_CSV + " for tab separated values\n\t" +
+	       ARG_BATCH_BINARY + " " + ARG_BATCH_FROM + " <unit> " + ARG_BATCH_TO + " <unit> [" +
+	           ARG_BATCH_THREADS + " <n>] <in file> <out file>\n\t" +
+	       "\t Converts a file of raw little endian float64 values\n" +
+
+	       "\nQueries, reads one per line from stdin if none are given:\n\t" +
+	       ARG_QUERY + " [\"12.5 mi in km\" ...]\n\t" +
+	       "\t Converts between any units or unit expressions that measure the same thing,\n\t" +
+	       "\t like \"98.6 f to c\", \"60 mph in knots\" or \"8 L/100km in mpg\"\n\t" +
+	       ARG_COMPLETE + " <prefix> [" + ARG_COMPLETE_MAX + " <n>]\n\t" +
+	       "\t Lists the units with a name, alias or flag starting with the prefix\n" +
+
+	       "\nConversion server:\n\t" +
+	       ARG_SERVER + " [" + ARG_SERVER_PORT + " <port>] [" + ARG_SERVER_MAX + " <concurrent requests>]\n\t" +
+	       "\t GET " + ConversionServer.CONVERT_PATH + "?from=ft&to=in&value=3, leave out to for every unit\n\t" +
+	       "\t POST " + ConversionServer.BATCH_PATH + " [{\"from\":\"ft\",\"to\":\"in\",\"value\":3},...]\n\t" +
+	       "\t GET " + ConversionServer.QUERY_PATH + "?q=12.5+mi+in+km\n\t" +
+	       ARG_SOCKET + " [" + ARG_SERVER_PORT + " <port>] [" + ARG_SOCKET_UNIX + " <socket file>]\n\t" +
+	       "\t Length prefixed binary float64 frames over TCP and Unix domain sockets\n" +
+
+	       "\nOther Commands:\n\t" +
+	       ARG_HELP_H + "\t Display this message, same as: " + ARG_HELP + " and " + ARG_HELP_QMARK + "\n");
+	}
+
+	private static void launchGui(final MeasurementFactory factory) throws Throwable
+	{
+		try
+		{
+			Class<?> guiClass = Class.forName(GUI_CLASS);
+			Object gui = guiClass.getConstructor(MeasurementFactory.class).newInstance(factory);
+			guiClass.getMethod("init").invoke(gui);
+		}
+		catch(InvocationTargetException e)
+		{
+			throw e.getCause();
+		}
+	}
+
+	//
+	// Reports to stderr how many classes were loaded, how long it took from the
+	// JVM starting to the output, and the resident memory, which is only known
+	// on Linux. The class count includes the classes java.lang.management loads
+	// to take it, about 190 on JDK 17, so it is best compared between runs.
+	//
+	private static void printStartupReport(long mainMillis, long outputMillis)
+	{
+		int classes = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+		long startMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+		System.err.printf("Startup: %d classes loaded, first output after %d ms (%d ms in main), RSS %s%n",
+				classes, outputMillis - startMillis, outputMillis - mainMillis, residentMemory());
+	}
+
+	private static String residentMemory()
+	{
+		try
+		{
+			BufferedReader in = new BufferedReader(new FileReader(PROC_STATUS_FILE));
+			try
 			{
-				input.measurementType = MeasurementFactory.MEASURE_SPEED;
-				input.measurementUnit = MeasurementFactory.UNIT_SPEED_KM_PER_HOUR;
+				String line;
+				while((line = in.readLine()) != null)
+				{
+					// VmRSS:     38520 kB
+					if(line.startsWith(PROC_STATUS_RSS))
+					{
+						String[] fields = line.trim().split("\\s+");
+						return String.format("%.1f MB", Long.parseLong(fields[1]) / 1024.0);
+					}
+				}
 			}
-			else if(ARG_SPEED_MPH.equals(argv))
+			finally
 			{
-				input.measurementType = MeasurementFactory.MEASURE_SPEED;
-				input.measurementUnit = MeasurementFactory.UNIT_SPEED_MILES_PER_HOUR;
+				in.close();
 			}
-			else if(ARG_SPEED_MS.equals(argv))
+		}
+		catch(Exception e)
+		{
+			// Not Linux
+		}
+		return "unknown";
+	}
+
+	public static void main(String[] args) 
+	{
+		int status = run(args);
+
+		// A stale exchange rate is refreshed in the background, on threads
+		// that do not keep the JVM running, so give the refresh a moment to
+		// update the cache before a one shot conversion exits
+		if(MeasurementFactory.instance().isLoaded(MeasurementFactory.MEASURE_CURRENCY))
+		{
+			CachingCurrencyConverter.awaitRefreshes(REFRESH_WAIT_MILLIS);
+		}
+
+		// Only on failure, a successful run may still be showing the GUI or serving
+		if(status != 0)
+		{
+			System.exit(status);
+		}
+	}
+
+	// Runs what the command line asks for, returning the exit status
+	private static int run(String[] args)
+	{
+		long mainMillis = System.currentTimeMillis();
+		MeasurementFactory factory = MeasurementFactory.instance();
+		factory.load();
+
+		// Launch the gui if no args set
+		if(args.length == 0)
+		{
+			try
 			{
-				input.measurementType = MeasurementFactory.MEASURE_SPEED;
-				input.measurementUnit = MeasurementFactory.UNIT_SPEED_METERS_PER_SECOND;
+				launchGui(factory);
 			}
-			else if(ARG_SPEED_KNOTS.equals(argv))
+			catch(Throwable e)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_SPEED;
-				input.measurementUnit = MeasurementFactory.UNIT_SPEED_KNOTS;
+				System.err.println("Error starting the GUI: " + e);
+				return EXIT_ERROR;
 			}
-			
-			//
-			// Angular Measure
-			//
-			else if(ARG_ANGLE_DEGREES.equals(argv))
+			return 0;
+		}
+
+		// Batch conversions
+		if(ARG_BATCH_CSV.equals(args[0]) || ARG_BATCH_TSV.equals(args[0]))
+		{
+			try
 			{
-				input.measurementType = MeasurementFactory.MEASURE_ANGLE;
-				input.measurementUnit = MeasurementFactory.UNIT_ANGLE_DEGREES;
+				runBatch(args, factory);
 			}
-			else if(ARG_ANGLE_RADIANS.equals(argv))
+			catch(Exception e)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_ANGLE;
-				input.measurementUnit = MeasurementFactory.UNIT_ANGLE_RADIANS;
+				System.err.println("Error in batch conversion: " + e.getMessage());
+				return EXIT_ERROR;
 			}
-			else if(ARG_ANGLE_GRADIANS.equals(argv))
+			return 0;
+		}
+
+		if(ARG_BATCH_BINARY.equals(args[0]))
+		{
+			try
 			{
-				input.measurementType = MeasurementFactory.MEASURE_ANGLE;
-				input.measurementUnit = MeasurementFactory.UNIT_ANGLE_GRADIANS;
+				runBinary(args, factory);
 			}
-			
-			//
-			// Currency
-			//
-			else if(ARG_CURRENCY_USD.equals(argv))
+			catch(Exception e)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_CURRENCY;
-				input.measurementUnit = MeasurementFactory.UNIT_CURRENCY_USD;
+				System.err.println("Error in binary conversion: " + e.getMessage());
+				return EXIT_ERROR;
 			}
-			else if(ARG_CURRENCY_EUR.equals(argv))
+			return 0;
+		}
+
+		if(ARG_QUERY.equals(args[0]))
+		{
+			try
 			{
-				input.measurementType = MeasurementFactory.MEASURE_CURRENCY;
-				input.measurementUnit = MeasurementFactory.UNIT_CURRENCY_USD;
+				return runQueries(args, factory) ? 0 : EXIT_ERROR;
 			}
-			else if(ARG_CURRENCY_GBP.equals(argv))
+			catch(IOException e)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_CURRENCY;
-				input.measurementUnit = MeasurementFactory.UNIT_CURRENCY_USD;
+				System.err.println("Error in queries: " + e.getMessage());
+				return EXIT_ERROR;
 			}
-			else if(ARG_CURRENCY_INR.equals(argv))
+		}
+
+		if(ARG_COMPLETE.equals(args[0]))
+		{
+			try
 			{
-				input.measurementType = MeasurementFactory.MEASURE_CURRENCY;
-				input.measurementUnit = MeasurementFactory.UNIT_CURRENCY_USD;
+				runComplete(args, factory);
 			}
-			else if(ARG_CURRENCY_AUD.equals(argv))
+			catch(IllegalArgumentException e)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_CURRENCY;
-				input.measurementUnit = MeasurementFactory.UNIT_CURRENCY_USD;
+				System.err.println("Error in completion: " + e.getMessage());
+				return EXIT_USAGE;
 			}
-			else if(ARG_CURRENCY_CAD.equals(argv))
+			return 0;
+		}
+
+		if(ARG_SERVER.equals(args[0]))
+		{
+			try
 			{
-				input.measurementType = MeasurementFactory.MEASURE_CURRENCY;
-				input.measurementUnit = MeasurementFactory.UNIT_CURRENCY_USD;
+				runServer(args, factory);
 			}
-			else if(ARG_CURRENCY_SGD.equals(argv))
+			catch(Exception e)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_CURRENCY;
-				input.measurementUnit = MeasurementFactory.UNIT_CURRENCY_USD;
+				System.err.println("Error starting the server: " + e.getMessage());
+				return EXIT_ERROR;
 			}
-			else if(ARG_CURRENCY_JPY.equals(argv))
+			return 0;
+		}
+
+		if(ARG_SOCKET.equals(args[0]))
+		{
+			try
 			{
-				input.measurementType = MeasurementFactory.MEASURE_CURRENCY;
-				input.measurementUnit = MeasurementFactory.UNIT_CURRENCY_USD;
+				runSocketServer(args, factory);
 			}
-			else if(ARG_CURRENCY_CNY.equals(argv))
+			catch(Exception e)
 			{
-				input.measurementType = MeasurementFactory.MEASURE_CURRENCY;
-				input.measurementUnit = MeasurementFactory.UNIT_CURRENCY_USD;
+				System.err.println("Error starting the server: " + e.getMessage());
+				return EXIT_ERROR;
 			}
-			else if(ARG_CURRENCY_RUB.equals(argv))
+			return 0;
+		}
+
+		// otherwise parse the command line args
+		MeasurementCatalog catalog = factory.getCatalog();
+		List<Input> inputs = new ArrayList<Input>();
+		try
+		{
+			if(!parseCommandLine(args, catalog, inputs))
 			{
-				input.measurementType = MeasurementFactory.MEASURE_CURRENCY;
-				input.measurementUnit = MeasurementFactory.UNIT_CURRENCY_USD;
+				return 0;
 			}
-			
-		
-
-			//
-			// Other args
-			//
-		    else
-		    {
-		      throw new Exception("Invalid command line argument: " + argv );
-		    }
 		}
-		
-		return true;
-	}
-
-	private static void printUsage()
-	{
-	  System.out.println(
-		   "\nUsage:\n" +
-		   "\t If started with no arguments, the GUI will be launched\n" +
-	       "Specify one of the following and the rest of the units of that measurement will be displayed\n" +
-
-	       "\nLengths:\n\t" +
-	       ARG_LENGTH_CM     + "\t centimeters\n\t" +
-	       ARG_LENGTH_METER  + "\t meters\n\t" +
-	       ARG_LENGTH_KM     + "\t kilometers\n\t" +
-	       ARG_LENGTH_INCH   + "\t inches\n\t" +
-	       ARG_LENGTH_FOOT   + "\t feet\n\t" +
-	       ARG_LENGTH_MILE   + "\t miles\n" +
-
-	       "\nWeights:\n\t" +
-	       ARG_WEIGHT_GRAM   + "\t grams\n\t" +
-	       ARG_WEIGHT_KG     + "\t kilograms\n\t" +
-	       ARG_WEIGHT_POUND  + "\t pounds\n\t" +
-	       ARG_WEIGHT_OUNCE  + "\t ounces\n" +
-
-	       "\nVolumes:\n\t" +
-	       ARG_VOLUME_LITER  + "\t liters\n\t" +
-	       ARG_VOLUME_GALLON + "\t gallons\n\t" +
-	       ARG_VOLUME_OUNCE  + "\t fluid ounces\n\t" +
-	       ARG_VOLUME_PINT   + "\t pints\n\t" +
-	       ARG_VOLUME_QUART  + "\t quarts\n\t" +
-	       ARG_VOLUME_CUP    + "\t cups\n" +
-
-	       "\nTemperatures:\n\t" +
-	       ARG_TEMP_CELSIUS     + "\t degrees celsius\n\t" +
-	       ARG_TEMP_FAHRENHEIT  + "\t degrees fahrenheit\n\t" +
-	       ARG_TEMP_KELVIN      + "\t degrees kelvin\n\t" +
-	       
-	       "\nPower:\n\t" +
-	       ARG_POWER_WATT                + "\t watts\n\t" +
-	       ARG_POWER_HORSEPOWER          + "\t horsepower\n\t" +
-	       ARG_POWER_CALORIES_PER_SECOND + "\t calories per second\n\t" +
-	       ARG_POWER_BTU_PER_SECOND      + "\t BTU per second\n\t" +
-	       ARG_POWER_KILOWATT            + "\t kilowatts\n\t" +
-	       ARG_POWER_MEGAWATT            + "\t megawatts\n\t" +
-	       
-           "\nPressure:\n\t" +
-           ARG_PRESSURE_PASCAL     + "\t pascal\n\t" +
-           ARG_PRESSURE_ATMOSPHERE + "\t atosphere\n\t" +
-           ARG_PRESSURE_BAR        + "\t bar\n\t" +
-           ARG_PRESSURE_PSI        + "\t psi\n\t" +
-           ARG_PRESSURE_TORR       + "\t torr\n\t" +
-           
-	       
-	       "\nGas Mileage:\n\t" +
-	       ARG_MILEAGE_MPG + "\t miles per gallon\n\t" +
-	       ARG_MILEAGE_LPK + "\t liters per 100 km\n" +
-
-	       "\nArea:\n\t" +
-	       ARG_AREA_SQ_METER + "\t square meters\n\t" +
-	       ARG_AREA_HECTARE  + "\t hectares\n\t" +
-	       ARG_AREA_SQ_KM    + "\t square kilo meters\n\t" +
-	       ARG_AREA_SQ_INCH  + "\t square inches\n\t" +
-	       ARG_AREA_SQ_FOOT  + "\t square feet\n\t" +
-	       ARG_AREA_SQ_YARD  + "\t square yards\n\t" +
-	       ARG_AREA_SQ_MILE  + "\t square miles\n\t" +
-	       ARG_AREA_ACRE     + "\t acres\n" +
-	       
-	       "\nSpeed:\n\t" +
-	       ARG_SPEED_KMH   + "\t kilometers per hour\n\t" +
-	       ARG_SPEED_MPH   + "\t miles per hour\n\t" +
-	       ARG_SPEED_MS    + "\t meters per second\n\t" +
-	       ARG_SPEED_KNOTS + "\t knots (nautical miles)\n\t" +
-	       
-		   "\nAngular Measure:\n\t" +
-		   ARG_ANGLE_DEGREES    + "\t degrees\n\t" +
-		   ARG_ANGLE_RADIANS    + "\t radians\n\t" +
-		   ARG_ANGLE_GRADIANS   + "\t gradians\n\t" +
-	       
-	       "\nCurrency:\n\t" +
-	       ARG_CURRENCY_USD   + "\t U.S. Dollars\n\t" +
-	       ARG_CURRENCY_EUR   + "\t Euros\n\t" +
-	       ARG_CURRENCY_GBP   + "\t British Pounds\n\t" +
-	       ARG_CURRENCY_INR   + "\t Indian Rupee\t" +
-	       ARG_CURRENCY_AUD   + "\t Australian Dollars\n\t" +
-	       ARG_CURRENCY_CAD   + "\t Canadian Dollars\n\t" +
-	       ARG_CURRENCY_SGD   + "\t Singapore Dollars\n\t" +
-	       ARG_CURRENCY_JPY   + "\t Japanese Yen\n\t" +
-	       ARG_CURRENCY_CNY   + "\t Chinese Yuan\n\t" +
-	       ARG_CURRENCY_RUB   + "\t Russian Ruble\n\t" +
-
-	       "\nOther Commands:\n\t" +
-	       ARG_HELP_H + "\t Display this message, same as: " + ARG_HELP + " and " + ARG_HELP_QMARK + "\n");
-	}
-
-	public static void main(String[] args) 
-	{
-		MeasurementFactory factory = MeasurementFactory.instance();
-		factory.load();
-
-		// Launch the gui if no args set
-		if(args.length == 0)
+		catch(Exception e)
 		{
-			UnitConverterGui gui = new UnitConverterGui(factory);
-			gui.init();
-			return;
+			System.err.println("Error parsing command line: " + e.getMessage());
+			printUsage(catalog);
+			return EXIT_USAGE;
 		}
 
-		// otherwise parse the command line args
-		Input input = new Input();
+		int status = 0;
+
 		try
 		{
-			if(!parseCommandLine(args, input))
+			Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+			for(Input input : inputs)
 			{
-				return;
+				if(!convert(input, factory, out))
+				{
+					status = EXIT_ERROR;
+					break;
+				}
+			}
+			out.flush();
+
+			if(Boolean.getBoolean(STARTUP_PROPERTY))
+			{
+				printStartupReport(mainMillis, System.currentTimeMillis());
 			}
 		}
-		catch(Exception e)
+		catch(IOException e)
 		{
-			System.err.println("Error parsing command line: " + e.getMessage());
-			printUsage();
-			return;
+			System.err.println("Error writing the conversions: " + e.getMessage());
+			return EXIT_ERROR;
 		}
+		return status;
+	}
 
+	private static boolean convert(final Input input, MeasurementFactory factory, Writer out) throws IOException
+	{
 		Measurement m = factory.getMeasurement(input.measurementType);
 		if(m == null)
 		{
 			System.err.println("The measurement type does not exist: " + input.measurementType);
-			return;
+			return false;
 		}
 
 		MeasurementUnit mu = m.findUnit(input.measurementUnit);
 		if(mu == null)
 		{
 			System.err.println("The measurement unit does not exist: " + input.measurementUnit);
-			return;
+			return false;
+		}
+
+		out.write("Converting: " + input.measurementType + "[" + input.measurementUnit + "] " + input.value + "\n");
+		out.write(m.toString(input.measurementUnit, input.value) + "\n");
+
+		if(Boolean.getBoolean(TIMING_PROPERTY))
+		{
+			System.err.printf("%s loaded in %.3f ms, first conversion %.3f ms after loading the factory%n",
+					input.measurementType,
+					factory.getLoadNanos(input.measurementType) / 1e6,
+					factory.getFirstConversionNanos(input.measurementType) / 1e6);
 		}
 
-		System.out.println("Converting: " + input.measurementType + "[" + input.measurementUnit + "] " + input.value);
-		System.out.println(m.toString(mu.convertToReference(input.value)));
+		return true;
 	}
 }
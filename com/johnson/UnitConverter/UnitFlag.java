@@ -0,0 +1,44 @@
+package com.johnson.UnitConverter;
+
+//
+// A command line flag for a unit, like -cm for centimeters.
+//   Each MeasurementProvider lists the flags of its units, and the
+//   MeasurementCatalog indexes them, so the flags are known without
+//   creating the measurements.
+//
+public final class UnitFlag
+{
+	private final String flag;
+	private final String measurementType;
+	private final String unitName;
+	private final String description;
+
+	// The description is the plural used in the usage text, like "centimeters"
+	public UnitFlag(final String flag, String measurementType, String unitName, String description)
+	{
+		this.flag = flag;
+		this.measurementType = measurementType;
+		this.unitName = unitName;
+		this.description = description;
+	}
+
+	public String getFlag()
+	{
+		return flag;
+	}
+
+	public String getMeasurementType()
+	{
+		return measurementType;
+	}
+
+	public String getUnitName()
+	{
+		return unitName;
+	}
+
+	public String getDescription()
+	{
+		return description;
+	}
+}
@@ -0,0 +1,432 @@
+package com.johnson.UnitConverter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.johnson.UnitConverter.catalog.UnitCatalog;
+
+//
+// Finds units by any of their names, aliases or command line flags,
+// across every measurement, exactly, ignoring case, or by a prefix as
+// they are typed.
+//   The names are kept in a compact trie: a radix tree over the case
+//   folded names, where each edge is a run of characters, so there are
+//   at most two nodes for each name. The names are sorted, and a node's
+//   names, and then all the names below it, are a range of them, so a
+//   lookup walks the key once, binary searching the children of each
+//   node by their first character, and a prefix lookup just returns the
+//   range of the node it ends in. The nodes are records in one int array
+//   and the edges refer to the characters of the sorted names, kept in one
+//   char array, so the index is a few arrays however many names there are.
+//   An index is immutable, MeasurementFactory builds a new one when its
+//   catalog changes.
+//
+public final class UnitIndex
+{
+	private static final int INITIAL_NODES = 64;
+
+	// Sorts by the case folded name, then the name, kind and measurement
+	private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+		public int compare(final Entry a, Entry b)
+		{
+			int cmp = a.folded.compareTo(b.folded);
+			if(cmp == 0)
+			{
+				cmp = a.name.getName().compareTo(b.name.getName());
+			}
+			if(cmp == 0)
+			{
+				cmp = a.name.getKind() - b.name.getKind();
+			}
+			if(cmp == 0)
+			{
+				cmp = a.name.getMeasurementType().compareTo(b.name.getMeasurementType());
+			}
+			return cmp;
+		}
+	};
+
+	// A name with its folded name, to fold each name once to sort them
+	private static final class Entry
+	{
+		final UnitName name;
+		final String folded;
+
+		Entry(final UnitName name)
+		{
+			this.name = name;
+			this.folded = fold(name.getName());
+		}
+	}
+
+	private final MeasurementCatalog catalog;
+	private final UnitName[] names;
+	private final int maxWords;
+
+	// The case folded names, one after another, name i from offsets[i]
+	private final char[] text;
+	private final int[] offsets;
+
+	// The nodes, node 0 is the root, are records of NODE_SIZE ints side by
+	// side, so a node is in one or two cache lines. The edge into a node is
+	// the LABEL_LENGTH characters of text from LABEL_START, the first of
+	// which is LABEL_CHAR. The node's own names are FIRST to OWN_END, then
+	// those below it to LAST.
+	private static final int LABEL_START = 0;
+	private static final int LABEL_LENGTH = 1;
+	private static final int LABEL_CHAR = 2;
+	private static final int FIRST_CHILD = 3;
+	private static final int CHILD_COUNT = 4;
+	private static final int FIRST = 5;
+	private static final int OWN_END = 6;
+	private static final int LAST = 7;
+	private static final int NODE_SIZE = 8;
+
+	private int numNodes;
+	private int[] nodes;
+
+	// An index of the given names, which may be in any order
+	public UnitIndex(final List<UnitName> names)
+	{
+		this(null, names);
+	}
+
+	private UnitIndex(final MeasurementCatalog catalog, List<UnitName> names)
+	{
+		this.catalog = catalog;
+
+		Entry[] entries = new Entry[names.size()];
+		int length = 0;
+		for(int i = 0; i < entries.length; i++)
+		{
+			entries[i] = new Entry(names.get(i));
+			length += entries[i].folded.length();
+		}
+		Arrays.sort(entries, ORDER);
+
+		this.names = new UnitName[entries.length];
+		this.text = new char[length];
+		this.offsets = new int[entries.length + 1];
+		int words = 1;
+		for(int i = 0; i < entries.length; i++)
+		{
+			String folded = entries[i].folded;
+			this.names[i] = entries[i].name;
+			folded.getChars(0, folded.length(), text, offsets[i]);
+			offsets[i + 1] = offsets[i] + folded.length();
+			words = Math.max(words, countWords(folded));
+		}
+		this.maxWords = words;
+
+		nodes = new int[Math.max(INITIAL_NODES, this.names.length + 1) * NODE_SIZE];
+		numNodes = 1;
+		fill(0, 0, this.names.length, 0);
+		nodes = Arrays.copyOf(nodes, numNodes * NODE_SIZE);
+	}
+
+	//
+	// Indexes the units of every measurement of the factory. Those in the
+	// unit catalog, and any already loaded, are created to index their
+	// names and aliases. The others, like the currencies that fetch
+	// exchange rates, only have the unit names from their flags indexed.
+	// Every flag is indexed, with its dash.
+	//
+	public static UnitIndex build(final MeasurementFactory factory)
+	{
+		MeasurementCatalog catalog = factory.getCatalog();
+		UnitCatalog units = catalog.getUnitCatalog();
+		List<UnitName> names = new ArrayList<UnitName>();
+
+		for(String measurementType : catalog.getNames())
+		{
+			MeasurementProvider provider = catalog.getProvider(measurementType);
+			List<UnitFlag> flags = provider.getUnitFlags();
+			for(UnitFlag flag : flags)
+			{
+				names.add(new UnitName(flag.getFlag(), measurementType, flag.getUnitName(), UnitName.KIND_FLAG));
+			}
+
+			Measurement m = null;
+			if(catalog.isLoaded(measurementType) || (units != null && units.isProvider(provider)))
+			{
+				m = factory.getMeasurement(measurementType);
+			}
+			if(m != null)
+			{
+				for(String unitName : m.getMeasurementUnitNames())
+				{
+					names.add(new UnitName(unitName, measurementType, unitName, UnitName.KIND_NAME));
+				}
+				for(Map.Entry<String, String> alias : m.getAliases().entrySet())
+				{
+					names.add(new UnitName(alias.getKey(), measurementType, alias.getValue(), UnitName.KIND_ALIAS));
+				}
+			}
+			else
+			{
+				for(UnitFlag flag : flags)
+				{
+					names.add(new UnitName(flag.getUnitName(), measurementType, flag.getUnitName(), UnitName.KIND_NAME));
+				}
+			}
+		}
+
+		// Creating the measurements replaced the catalog, this is the one they are in
+		return new UnitIndex(factory.getCatalog(), names);
+	}
+
+	// The catalog it was built from, or null if it was given the names
+	public MeasurementCatalog getCatalog()
+	{
+		return catalog;
+	}
+
+	public int size()
+	{
+		return names.length;
+	}
+
+	// The most words in a name, like 3 for "miles per hour"
+	public int getMaxWords()
+	{
+		return maxWords;
+	}
+
+	// The names written exactly like the key
+	public List<UnitName> find(final String key)
+	{
+		int node = findNode(key, false);
+		if(node < 0)
+		{
+			return Collections.emptyList();
+		}
+
+		// The names written the same way are side by side in the node's own names
+		int end = nodes[node + OWN_END];
+		int from = nodes[node + FIRST];
+		while(from < end && !names[from].getName().equals(key))
+		{
+			from++;
+		}
+		int to = from;
+		while(to < end && names[to].getName().equals(key))
+		{
+			to++;
+		}
+		return range(from, to);
+	}
+
+	// The names that are the key in any case, like KM, Km and km
+	public List<UnitName> findIgnoreCase(final String key)
+	{
+		int node = findNode(key, false);
+		if(node < 0)
+		{
+			return Collections.emptyList();
+		}
+		return range(nodes[node + FIRST], nodes[node + OWN_END]);
+	}
+
+	//
+	// Up to max of the names that start with the prefix in any case,
+	// sorted by their case folded names, so shorter names come first
+	//
+	public List<UnitName> findPrefix(final String prefix, int max)
+	{
+		int node = findNode(prefix, true);
+		if(node < 0)
+		{
+			return Collections.emptyList();
+		}
+		return range(nodes[node + FIRST], (int) Math.min((long) nodes[node + FIRST] + max, nodes[node + LAST]));
+	}
+
+	private List<UnitName> range(int from, int to)
+	{
+		return Collections.unmodifiableList(Arrays.asList(names).subList(from, to));
+	}
+
+	//
+	// The node the key ends at, or -1. For a prefix that ends part way
+	// along an edge, the node the edge goes to, as all its names start
+	// with the prefix.
+	//
+	private int findNode(final String key, boolean prefix)
+	{
+		int node = 0;
+		int pos = 0;
+		int length = key.length();
+		while(pos < length)
+		{
+			int child = findChild(node, fold(key.charAt(pos)));
+			if(child < 0)
+			{
+				return -1;
+			}
+
+			int start = nodes[child + LABEL_START];
+			int end = start + nodes[child + LABEL_LENGTH];
+			for(int i = start; i < end; i++, pos++)
+			{
+				if(pos == length)
+				{
+					return prefix ? child : -1;
+				}
+				if(fold(key.charAt(pos)) != text[i])
+				{
+					return -1;
+				}
+			}
+			node = child;
+		}
+		return node;
+	}
+
+	// The children of a node are sorted by the first character of their edge
+	private int findChild(int node, char c)
+	{
+		int low = nodes[node + FIRST_CHILD];
+		int high = low + (nodes[node + CHILD_COUNT] - 1) * NODE_SIZE;
+		while(low <= high)
+		{
+			int mid = low + ((high - low) / NODE_SIZE >>> 1) * NODE_SIZE;
+			int midChar = nodes[mid + LABEL_CHAR];
+			if(midChar < c)
+			{
+				low = mid + NODE_SIZE;
+			}
+			else if(midChar > c)
+			{
+				high = mid - NODE_SIZE;
+			}
+			else
+			{
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	//
+	// Fills in the node for the sorted names from lo to hi, which all share
+	// their first depth folded characters. Its children are given the next
+	// free nodes side by side, then each is filled in turn.
+	//
+	private void fill(int node, int lo, int hi, int depth)
+	{
+		int own = lo;
+		while(own < hi && length(own) == depth)
+		{
+			own++;
+		}
+		nodes[node + FIRST] = lo;
+		nodes[node + OWN_END] = own;
+		nodes[node + LAST] = hi;
+
+		int children = 0;
+		for(int i = own; i < hi; i++)
+		{
+			if(i == own || charAt(i, depth) != charAt(i - 1, depth))
+			{
+				children++;
+			}
+		}
+
+		int child = allocate(children);
+		nodes[node + FIRST_CHILD] = child;
+		nodes[node + CHILD_COUNT] = children;
+
+		int start = own;
+		while(start < hi)
+		{
+			char c = charAt(start, depth);
+			int end = start + 1;
+			while(end < hi && charAt(end, depth) == c)
+			{
+				end++;
+			}
+
+			// The names are sorted, so the first and last share the most
+			int shared = commonLength(start, end - 1, depth + 1);
+			nodes[child + LABEL_START] = offsets[start] + depth;
+			nodes[child + LABEL_LENGTH] = shared - depth;
+			nodes[child + LABEL_CHAR] = c;
+			fill(child, start, end, shared);
+
+			child += NODE_SIZE;
+			start = end;
+		}
+	}
+
+	// The index of the first of count new nodes
+	private int allocate(int count)
+	{
+		int needed = (numNodes + count) * NODE_SIZE;
+		if(needed > nodes.length)
+		{
+			nodes = Arrays.copyOf(nodes, Math.max(needed, nodes.length * 2));
+		}
+
+		int node = numNodes * NODE_SIZE;
+		numNodes += count;
+		return node;
+	}
+
+	private int length(int name)
+	{
+		return offsets[name + 1] - offsets[name];
+	}
+
+	private char charAt(int name, int i)
+	{
+		return text[offsets[name] + i];
+	}
+
+	private int commonLength(int a, int b, int from)
+	{
+		int n = Math.min(length(a), length(b));
+		int i = from;
+		while(i < n && charAt(a, i) == charAt(b, i))
+		{
+			i++;
+		}
+		return i;
+	}
+
+	// Folds a character at a time, so a name folds to the same length
+	static char fold(char c)
+	{
+		if(c < 128)
+		{
+			return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+		}
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	static String fold(final String s)
+	{
+		char[] chars = new char[s.length()];
+		for(int i = 0; i < chars.length; i++)
+		{
+			chars[i] = fold(s.charAt(i));
+		}
+		return new String(chars);
+	}
+
+	private static int countWords(final String name)
+	{
+		int words = 1;
+		for(int i = 0; i < name.length(); i++)
+		{
+			if(name.charAt(i) == ' ')
+			{
+				words++;
+			}
+		}
+		return words;
+	}
+}
@@ -0,0 +1,58 @@
+package com.johnson.UnitConverter;
+
+//
+// A name a unit can be found by in the UnitIndex: the unit's own name,
+// like "kilometer", one of its aliases, like "km", or its command line
+// flag, like "-km".
+//
+public final class UnitName
+{
+	public static final int KIND_NAME  = 0;
+	public static final int KIND_ALIAS = 1;
+	public static final int KIND_FLAG  = 2;
+
+	private final String name;
+	private final String measurementType;
+	private final String unitName;
+	private final int kind;
+
+	public UnitName(final String name, String measurementType, String unitName, int kind)
+	{
+		if(kind != KIND_NAME && kind != KIND_ALIAS && kind != KIND_FLAG)
+		{
+			throw new IllegalArgumentException("Invalid unit name kind: " + kind);
+		}
+
+		this.name = name;
+		this.measurementType = measurementType;
+		this.unitName = unitName;
+		this.kind = kind;
+	}
+
+	// As it is written, like "km" or "-km"
+	public String getName()
+	{
+		return name;
+	}
+
+	public String getMeasurementType()
+	{
+		return measurementType;
+	}
+
+	// The name of the unit it finds, like "kilometer"
+	public String getUnitName()
+	{
+		return unitName;
+	}
+
+	public int getKind()
+	{
+		return kind;
+	}
+
+	public String toString()
+	{
+		return name + " (" + measurementType + ": " + unitName + ")";
+	}
+}
@@ -0,0 +1,178 @@
+package com.johnson.UnitConverter;
+
+import javax.swing.table.AbstractTableModel;
+
+//
+// The units of a measurement as table rows, with the value entered in one
+// row converted to all the others.
+//   Nothing is stored per row except the unit name: a converted value is
+//   only worked out when its row is painted, so however many units there
+//   are, only the rows scrolled into view are ever converted, and setting
+//   a new value or measurement costs the same.
+//
+public class UnitTableModel extends AbstractTableModel
+{
+	private static final long serialVersionUID = 1L;
+
+	public static final int COLUMN_UNIT = 0;
+	public static final int COLUMN_VALUE = 1;
+	private static final String[] COLUMN_NAMES = { "Unit", "Value" };
+	private static final String[] NO_UNITS = new String[0];
+
+	private Measurement measurement;
+	private String[] unitNames;
+
+	// The row the value was entered in and its text, which is shown as typed
+	private int sourceRow;
+	private String sourceText;
+	private double sourceValue;
+	private boolean hasValue;
+
+	public UnitTableModel()
+	{
+		this.unitNames = NO_UNITS;
+		this.sourceRow = -1;
+		this.sourceText = "";
+	}
+
+	// Shows the units of the measurement, or no rows if it is null
+	public void setMeasurement(final Measurement measurement)
+	{
+		this.measurement = measurement;
+		this.unitNames = (measurement == null) ?
+				NO_UNITS : measurement.getMeasurementUnitNames().toArray(NO_UNITS);
+		clearValue();
+		fireTableDataChanged();
+	}
+
+	public Measurement getMeasurement()
+	{
+		return measurement;
+	}
+
+	public String getUnitName(int row)
+	{
+		return unitNames[row];
+	}
+
+	// The row of the unit, or -1 if it is not shown
+	public int getRow(final String unitName)
+	{
+		for(int row = 0; row < unitNames.length; row++)
+		{
+			if(unitNames[row].equals(unitName))
+			{
+				return row;
+			}
+		}
+		return -1;
+	}
+
+	//
+	// Converts the text entered in the row to all the other rows.
+	// Returns false if it is not a number, in which case the other rows
+	// are left empty. Empty text just empties them.
+	//
+	public boolean setSource(int row, String text)
+	{
+		sourceRow = row;
+		sourceText = (text == null) ? "" : text;
+		hasValue = false;
+
+		boolean valid = true;
+		String value = sourceText.trim();
+		if(value.length() > 0)
+		{
+			try
+			{
+				sourceValue = Double.parseDouble(value);
+				hasValue = true;
+			}
+			catch(NumberFormatException e)
+			{
+				valid = false;
+			}
+		}
+
+		fireRowsUpdated();
+		return valid;
+	}
+
+	// The text entered, if it is not a number, otherwise null
+	public String getInvalidText()
+	{
+		if(sourceRow < 0 || hasValue || sourceText.trim().length() == 0)
+		{
+			return null;
+		}
+		return sourceText;
+	}
+
+	public void clear()
+	{
+		clearValue();
+		fireRowsUpdated();
+	}
+
+	private void clearValue()
+	{
+		sourceRow = -1;
+		sourceText = "";
+		hasValue = false;
+	}
+
+	// Only the rows in view are repainted, and so converted
+	private void fireRowsUpdated()
+	{
+		if(unitNames.length > 0)
+		{
+			fireTableRowsUpdated(0, unitNames.length - 1);
+		}
+	}
+
+	public int getRowCount()
+	{
+		return unitNames.length;
+	}
+
+	public int getColumnCount()
+	{
+		return COLUMN_NAMES.length;
+	}
+
+	public String getColumnName(int column)
+	{
+		return COLUMN_NAMES[column];
+	}
+
+	public boolean isCellEditable(int row, int column)
+	{
+		return column == COLUMN_VALUE;
+	}
+
+	public Object getValueAt(int row, int column)
+	{
+		if(column == COLUMN_UNIT)
+		{
+			return unitNames[row];
+		}
+		if(row == sourceRow)
+		{
+			return sourceText;
+		}
+		if(!hasValue)
+		{
+			return "";
+		}
+		return measurement.formatUnitValue(
+				measurement.converter(unitNames[sourceRow], unitNames[row]).convert(sourceValue));
+	}
+
+	public void setValueAt(Object value, int row, int column)
+	{
+		if(column == COLUMN_VALUE)
+		{
+			setSource(row, (String) value);
+		}
+	}
+}
@@ -0,0 +1,378 @@
+package com.johnson.UnitConverter.batch;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.johnson.UnitConverter.Converter;
+
+//
+// Streams CSV or TSV rows from a Reader to a Writer, appending
+// converted columns to every row. Rows are processed one at a time
+// in reusable buffers, so memory use only depends on the longest row,
+// not on the size of the input.
+//
+public class CsvConverter
+{
+	private static final int READ_BUFFER_SIZE = 1 << 16;
+
+	// Exact powers of ten, used by the fast number parser
+	private static final double[] POWERS_OF_TEN = {
+		1e0,  1e1,  1e2,  1e3,  1e4,  1e5,  1e6,  1e7,  1e8,  1e9,  1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private static class OutputColumn
+	{
+		String column;
+		String title;
+		Converter converter;
+		int fieldIndex;
+	}
+
+	private final char delimiter;
+	private final boolean header;
+	private final List<OutputColumn> outputColumns;
+
+	// Input buffer
+	private final char[] readBuf;
+	private int readPos;
+	private int readLen;
+
+	// The current row and its field boundaries
+	private char[] line;
+	private int lineLen;
+	private int[] fieldStarts;
+	private int[] fieldEnds;
+	private int numFields;
+
+	// Scratch space for formatting the converted values
+	private final StringBuilder numBuf;
+	private char[] numChars;
+
+	public CsvConverter(char delimiter, boolean header)
+	{
+		this.delimiter = delimiter;
+		this.header = header;
+		this.outputColumns = new ArrayList<OutputColumn>();
+		this.readBuf = new char[READ_BUFFER_SIZE];
+		this.line = new char[1024];
+		this.fieldStarts = new int[16];
+		this.fieldEnds = new int[16];
+		this.numBuf = new StringBuilder(32);
+		this.numChars = new char[32];
+	}
+
+	//
+	// Adds an output column with the values of the input column converted.
+	//   The column is a header name, or a 1 based column number if
+	//   there is no header. The title is used in the output header.
+	//
+	public void addColumn(final String column, final String title, final Converter converter)
+	{
+		OutputColumn oc = new OutputColumn();
+		oc.column = column;
+		oc.title = title;
+		oc.converter = converter;
+		oc.fieldIndex = -1;
+		outputColumns.add(oc);
+	}
+
+	// Returns the number of data rows converted
+	public long convert(final Reader in, Writer out) throws IOException
+	{
+		readPos = 0;
+		readLen = 0;
+		long rows = 0;
+
+		if(header)
+		{
+			if(!readLine(in))
+			{
+				return 0;
+			}
+			resolveHeader();
+			out.write(line, 0, lineLen);
+			for(OutputColumn oc : outputColumns)
+			{
+				out.write(delimiter);
+				out.write(oc.title);
+			}
+			out.write('\n');
+		}
+		else
+		{
+			resolveNumbers();
+		}
+
+		while(readLine(in))
+		{
+			out.write(line, 0, lineLen);
+			for(int i = 0; i < outputColumns.size(); i++)
+			{
+				OutputColumn oc = outputColumns.get(i);
+				out.write(delimiter);
+				if(oc.fieldIndex >= numFields)
+				{
+					continue;
+				}
+
+				double value = parseDouble(line, fieldStarts[oc.fieldIndex], fieldEnds[oc.fieldIndex]);
+				if(!Double.isNaN(value))
+				{
+					writeNumber(out, oc.converter.convert(value));
+				}
+			}
+			out.write('\n');
+			rows++;
+		}
+
+		out.flush();
+		return rows;
+	}
+
+	private void resolveHeader() throws IOException
+	{
+		for(OutputColumn oc : outputColumns)
+		{
+			for(int i = 0; i < numFields && oc.fieldIndex < 0; i++)
+			{
+				if(fieldEquals(i, oc.column))
+				{
+					oc.fieldIndex = i;
+				}
+			}
+
+			if(oc.fieldIndex < 0)
+			{
+				throw new IOException("Column not found in header: " + oc.column);
+			}
+		}
+	}
+
+	private void resolveNumbers() throws IOException
+	{
+		for(OutputColumn oc : outputColumns)
+		{
+			try
+			{
+				oc.fieldIndex = Integer.parseInt(oc.column) - 1;
+			}
+			catch(NumberFormatException e)
+			{
+				oc.fieldIndex = -1;
+			}
+
+			if(oc.fieldIndex < 0)
+			{
+				throw new IOException("Invalid column number, there is no header: " + oc.column);
+			}
+		}
+	}
+
+	private boolean fieldEquals(int field, final String name)
+	{
+		int start = fieldStarts[field];
+		int end = fieldEnds[field];
+
+		// Ignore surrounding white space and quotes
+		while(start < end && line[start] == ' ')
+		{
+			start++;
+		}
+		while(end > start && line[end - 1] == ' ')
+		{
+			end--;
+		}
+		if(end - start >= 2 && line[start] == '"' && line[end - 1] == '"')
+		{
+			start++;
+			end--;
+		}
+
+		if(end - start != name.length())
+		{
+			return false;
+		}
+		for(int i = 0; i < name.length(); i++)
+		{
+			if(line[start + i] != name.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	//
+	// Reads the next row into line, recording where each field starts and ends.
+	// Delimiters and new lines inside quoted CSV fields are part of the field.
+	//
+	private boolean readLine(final Reader in) throws IOException
+	{
+		final boolean quoting = (delimiter == ',');
+		boolean inQuotes = false;
+		boolean gotData = false;
+		lineLen = 0;
+		numFields = 0;
+		int fieldStart = 0;
+
+		while(true)
+		{
+			if(readPos == readLen)
+			{
+				readLen = in.read(readBuf, 0, readBuf.length);
+				readPos = 0;
+				if(readLen <= 0)
+				{
+					readLen = 0;
+					break;
+				}
+			}
+
+			char c = readBuf[readPos++];
+			gotData = true;
+			if(c == '\n' && !inQuotes)
+			{
+				break;
+			}
+
+			if(quoting && c == '"')
+			{
+				inQuotes = !inQuotes;
+			}
+			else if(c == delimiter && !inQuotes)
+			{
+				addField(fieldStart, lineLen);
+				fieldStart = lineLen + 1;
+			}
+
+			if(lineLen == line.length)
+			{
+				char[] bigger = new char[line.length * 2];
+				System.arraycopy(line, 0, bigger, 0, lineLen);
+				line = bigger;
+			}
+			line[lineLen++] = c;
+		}
+
+		if(!gotData)
+		{
+			return false;
+		}
+
+		// Windows line endings
+		if(lineLen > 0 && line[lineLen - 1] == '\r')
+		{
+			lineLen--;
+		}
+		addField(fieldStart, Math.max(fieldStart, lineLen));
+
+		return true;
+	}
+
+	private void addField(int start, int end)
+	{
+		if(numFields == fieldStarts.length)
+		{
+			int[] biggerStarts = new int[numFields * 2];
+			int[] biggerEnds = new int[numFields * 2];
+			System.arraycopy(fieldStarts, 0, biggerStarts, 0, numFields);
+			System.arraycopy(fieldEnds, 0, biggerEnds, 0, numFields);
+			fieldStarts = biggerStarts;
+			fieldEnds = biggerEnds;
+		}
+		fieldStarts[numFields] = start;
+		fieldEnds[numFields] = end;
+		numFields++;
+	}
+
+	private void writeNumber(final Writer out, double value) throws IOException
+	{
+		numBuf.setLength(0);
+		numBuf.append(value);
+		int len = numBuf.length();
+		if(len > numChars.length)
+		{
+			numChars = new char[len];
+		}
+		numBuf.getChars(0, len, numChars, 0);
+		out.write(numChars, 0, len);
+	}
+
+	//
+	// Parses a number from buf[start, end), returning NaN if it is not one.
+	//   Plain decimals of up to 15 digits are parsed directly: both the
+	//   digits and the power of ten are exact doubles, so the single divide
+	//   is correctly rounded, the same as Double.parseDouble(). Anything
+	//   else goes through Double.parseDouble().
+	//
+	static double parseDouble(final char[] buf, int start, int end)
+	{
+		while(start < end && (buf[start] == ' ' || buf[start] == '"'))
+		{
+			start++;
+		}
+		while(end > start && (buf[end - 1] == ' ' || buf[end - 1] == '"'))
+		{
+			end--;
+		}
+		if(start == end)
+		{
+			return Double.NaN;
+		}
+
+		int pos = start;
+		boolean negative = false;
+		if(buf[pos] == '-' || buf[pos] == '+')
+		{
+			negative = (buf[pos] == '-');
+			pos++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+		for(; pos < end; pos++)
+		{
+			char c = buf[pos];
+			if(c >= '0' && c <= '9')
+			{
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+				if(fractionDigits >= 0)
+				{
+					fractionDigits++;
+				}
+			}
+			else if(c == '.' && fractionDigits < 0)
+			{
+				fractionDigits = 0;
+			}
+			else
+			{
+				break;
+			}
+		}
+
+		if(pos == end && digits > 0 && digits <= 15)
+		{
+			double value = (double) mantissa;
+			if(fractionDigits > 0)
+			{
+				value = value / POWERS_OF_TEN[fractionDigits];
+			}
+			return negative ? -value : value;
+		}
+
+		try
+		{
+			return Double.parseDouble(new String(buf, start, end - start));
+		}
+		catch(NumberFormatException e)
+		{
+			return Double.NaN;
+		}
+	}
+}
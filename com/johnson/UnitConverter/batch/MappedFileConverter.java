@@ -0,0 +1,139 @@
+package com.johnson.UnitConverter.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.johnson.UnitConverter.Converter;
+
+//
+// Converts files of raw little endian float64 values.
+//   Both files are memory mapped in fixed size windows and each window
+//   is converted by a worker thread directly from the input mapping
+//   into the output mapping, so the values never pass through the heap.
+//   The input and output may be the same file to convert it in place.
+//
+public class MappedFileConverter
+{
+	public static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+	private static final int VALUE_SIZE = 8;
+
+	private final int windowSize;
+	private final int numThreads;
+
+	public MappedFileConverter()
+	{
+		this(DEFAULT_WINDOW_SIZE, Runtime.getRuntime().availableProcessors());
+	}
+
+	// The window size is in bytes, and is rounded down to a whole number of values
+	public MappedFileConverter(int windowSize, int numThreads)
+	{
+		if(windowSize < VALUE_SIZE || numThreads < 1)
+		{
+			throw new IllegalArgumentException("Invalid window size or thread count: " + windowSize + ", " + numThreads);
+		}
+
+		this.windowSize = windowSize - (windowSize % VALUE_SIZE);
+		this.numThreads = numThreads;
+	}
+
+	// Returns the number of values converted
+	public long convert(final File inFile, File outFile, final Converter converter) throws IOException
+	{
+		final boolean inPlace = inFile.getCanonicalFile().equals(outFile.getCanonicalFile());
+		RandomAccessFile in = new RandomAccessFile(inFile, inPlace ? "rw" : "r");
+		RandomAccessFile out = null;
+		ExecutorService pool = null;
+
+		try
+		{
+			final long size = in.length();
+			if(size % VALUE_SIZE != 0)
+			{
+				throw new IOException("Not a float64 file, the size is not a multiple of " + VALUE_SIZE + ": " + inFile);
+			}
+
+			final FileChannel inChannel = in.getChannel();
+			final FileChannel outChannel;
+			if(inPlace)
+			{
+				outChannel = inChannel;
+			}
+			else
+			{
+				out = new RandomAccessFile(outFile, "rw");
+				out.setLength(size);
+				outChannel = out.getChannel();
+			}
+
+			pool = Executors.newFixedThreadPool(numThreads);
+			List<Future<Object>> windows = new ArrayList<Future<Object>>();
+			for(long position = 0; position < size; position += windowSize)
+			{
+				final long windowStart = position;
+				final int windowLength = (int) Math.min(windowSize, size - position);
+				windows.add(pool.submit(new Callable<Object>() {
+					public Object call() throws IOException
+					{
+						convertWindow(inChannel, outChannel, inPlace, windowStart, windowLength, converter);
+						return null;
+					}
+				}));
+			}
+
+			for(Future<Object> window : windows)
+			{
+				window.get();
+			}
+
+			return size / VALUE_SIZE;
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted converting " + inFile);
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof IOException)
+			{
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Error converting " + inFile + ": " + e.getCause(), e.getCause());
+		}
+		finally
+		{
+			if(pool != null)
+			{
+				pool.shutdownNow();
+			}
+			in.close();
+			if(out != null)
+			{
+				out.close();
+			}
+		}
+	}
+
+	private static void convertWindow(final FileChannel inChannel, FileChannel outChannel, boolean inPlace,
+			long position, int length, Converter converter) throws IOException
+	{
+		DoubleBuffer dst = outChannel.map(FileChannel.MapMode.READ_WRITE, position, length)
+				.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+		DoubleBuffer src = inPlace ? dst : inChannel.map(FileChannel.MapMode.READ_ONLY, position, length)
+				.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+
+		converter.convert(src, dst);
+	}
+}
@@ -0,0 +1,112 @@
+package com.johnson.UnitConverter.batch;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.johnson.UnitConverter.Converter;
+
+//
+// Converts large arrays on a ForkJoinPool.
+//   The array is split in halves until the pieces are no bigger than the
+//   sequential threshold, and each piece is converted with the same bulk
+//   loop as Converter.convert(), so the results are bit for bit the same
+//   as converting the whole array sequentially.
+//
+public class ParallelConverter
+{
+	// 32K values is 256 KB per piece, which fits in a typical L2 cache
+	public static final int DEFAULT_THRESHOLD = 1 << 15;
+
+	private final ForkJoinPool pool;
+	private final int threshold;
+
+	public ParallelConverter()
+	{
+		this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+	}
+
+	public ParallelConverter(final ForkJoinPool pool, int threshold)
+	{
+		if(threshold < 1)
+		{
+			throw new IllegalArgumentException("Invalid threshold: " + threshold);
+		}
+
+		this.pool = pool;
+		this.threshold = threshold;
+	}
+
+	public ForkJoinPool getPool()
+	{
+		return pool;
+	}
+
+	public int getThreshold()
+	{
+		return threshold;
+	}
+
+	// src and dst may be the same array for an in-place conversion
+	public void convert(final Converter converter, double[] src, int srcOffset, double[] dst, int dstOffset, int length)
+	{
+		if(srcOffset < 0 || dstOffset < 0 || length < 0 ||
+		   srcOffset > src.length - length || dstOffset > dst.length - length)
+		{
+			throw new IndexOutOfBoundsException(
+					"offsets " + srcOffset + ", " + dstOffset + ", length " + length);
+		}
+
+		if(length <= threshold)
+		{
+			converter.convert(src, srcOffset, dst, dstOffset, length);
+			return;
+		}
+
+		pool.invoke(new ConvertTask(converter, src, srcOffset, dst, dstOffset, length, threshold));
+	}
+
+	public void convert(final Converter converter, double[] values)
+	{
+		convert(converter, values, 0, values, 0, values.length);
+	}
+
+	private static class ConvertTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Converter converter;
+		private final double[] src;
+		private final int srcOffset;
+		private final double[] dst;
+		private final int dstOffset;
+		private final int length;
+		private final int threshold;
+
+		ConvertTask(final Converter converter, double[] src, int srcOffset,
+				double[] dst, int dstOffset, int length, int threshold)
+		{
+			this.converter = converter;
+			this.src = src;
+			this.srcOffset = srcOffset;
+			this.dst = dst;
+			this.dstOffset = dstOffset;
+			this.length = length;
+			this.threshold = threshold;
+		}
+
+		protected void compute()
+		{
+			if(length <= threshold)
+			{
+				converter.convert(src, srcOffset, dst, dstOffset, length);
+				return;
+			}
+
+			int half = length / 2;
+
+			invokeAll(
+				new ConvertTask(converter, src, srcOffset, dst, dstOffset, half, threshold),
+				new ConvertTask(converter, src, srcOffset + half, dst, dstOffset + half, length - half, threshold));
+		}
+	}
+}
@@ -0,0 +1,720 @@
+package com.johnson.UnitConverter.catalog;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.johnson.UnitConverter.Dimension;
+import com.johnson.UnitConverter.MeasurementUnit;
+
+//
+// Compiles a unit definition file, like units.catalog, into the binary
+// catalog read by UnitCatalog:
+//   java com.johnson.UnitConverter.catalog.CatalogCompiler <definition file> <catalog file>
+// The build runs it, so the definitions are checked and their factors
+// worked out once, not every time the program starts.
+//
+public final class CatalogCompiler
+{
+	private static final String COMMENT = "#";
+	private static final String COLUMN_SEPARATOR = "\\|";
+	private static final String ALIAS_SEPARATOR = ",";
+	private static final String SETTING_DECIMALS = "decimals";
+	private static final String SETTING_DIMENSION = "dimension";
+	private static final String SETTING_REFERENCE = "reference";
+
+	private static final String[] KIND_NAMES = { "linear", "affine", "reciprocal" };
+	private static final int[] KINDS = {
+		MeasurementUnit.KIND_LINEAR, MeasurementUnit.KIND_AFFINE, MeasurementUnit.KIND_RECIPROCAL };
+
+	private static final int MAX_STRING_LENGTH = 0xffff;
+
+	private static class UnitDefinition
+	{
+		int line;
+		String name;
+		String flag;
+		String description;
+		int kind;
+		double factor;
+		double offset;
+		List<String> aliases = new ArrayList<String>();
+	}
+
+	private static class MeasurementDefinition
+	{
+		String name;
+		int decimals = UnitCatalog.DEFAULT_DECIMALS;
+		Dimension dimension;
+		double reference = 1.0;
+		List<UnitDefinition> units = new ArrayList<UnitDefinition>();
+		Set<String> unitNames = new HashSet<String>();
+	}
+
+	private CatalogCompiler()
+	{
+	}
+
+	public static void main(String[] args)
+	{
+		if(args.length != 2)
+		{
+			System.err.println("Usage: CatalogCompiler <definition file> <catalog file>");
+			System.exit(1);
+		}
+
+		try
+		{
+			Path definition = Paths.get(args[0]);
+			Reader reader = new InputStreamReader(Files.newInputStream(definition), StandardCharsets.UTF_8);
+			ByteBuffer catalog;
+			try
+			{
+				catalog = compile(reader);
+			}
+			finally
+			{
+				reader.close();
+			}
+
+			Files.write(Paths.get(args[1]), catalog.array());
+		}
+		catch(IllegalArgumentException e)
+		{
+			System.err.println(args[0] + ": " + e.getMessage());
+			System.exit(1);
+		}
+		catch(IOException e)
+		{
+			System.err.println("Error compiling the unit catalog: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	//
+	// Returns the binary catalog for the definition, from position 0 to
+	// its limit, in a buffer backed by an array. A mistake in the
+	// definition is an IllegalArgumentException giving its line.
+	//
+	public static ByteBuffer compile(final Reader definition) throws IOException
+	{
+		return write(parse(new BufferedReader(definition)));
+	}
+
+	private static List<MeasurementDefinition> parse(final BufferedReader reader) throws IOException
+	{
+		List<MeasurementDefinition> measurements = new ArrayList<MeasurementDefinition>();
+		Set<String> measurementNames = new HashSet<String>();
+		Set<String> flags = new HashSet<String>();
+		Map<String, Double> sizes = new HashMap<String, Double>();
+		MeasurementDefinition measurement = null;
+
+		String line;
+		int lineNumber = 0;
+		while((line = reader.readLine()) != null)
+		{
+			lineNumber++;
+			line = line.trim();
+			if(line.length() == 0 || line.startsWith(COMMENT))
+			{
+				continue;
+			}
+
+			try
+			{
+				if(line.startsWith("[") && line.endsWith("]"))
+				{
+					measurement = new MeasurementDefinition();
+					measurement.name = line.substring(1, line.length() - 1).trim();
+					if(measurement.name.length() == 0 || !measurementNames.add(measurement.name))
+					{
+						throw new IllegalArgumentException("Empty or repeated measurement name: " + line);
+					}
+					measurements.add(measurement);
+				}
+				else if(measurement == null)
+				{
+					throw new IllegalArgumentException("Expected a [measurement] before: " + line);
+				}
+				else if(line.indexOf('|') >= 0)
+				{
+					UnitDefinition unit = parseUnit(line, measurement, flags, sizes);
+					unit.line = lineNumber;
+					measurement.units.add(unit);
+					addSize(sizes, measurement, unit);
+				}
+				else
+				{
+					parseSetting(line, measurement, sizes);
+				}
+			}
+			catch(IllegalArgumentException e)
+			{
+				throw new IllegalArgumentException("line " + lineNumber + ": " + e.getMessage(), e);
+			}
+		}
+
+		checkFlags(measurements);
+		return measurements;
+	}
+
+	//
+	// A unit expression finds a unit by its names and aliases as written
+	// before its flag without the dash, so a name or alias written exactly
+	// like the flag of another unit would hide it. Ones that only differ
+	// in case are fine, BTU is the energy and btu the -btu power unit.
+	//
+	private static void checkFlags(final List<MeasurementDefinition> measurements)
+	{
+		Map<String, UnitDefinition> flagUnits = new HashMap<String, UnitDefinition>();
+		for(MeasurementDefinition measurement : measurements)
+		{
+			for(UnitDefinition unit : measurement.units)
+			{
+				if(unit.flag != null)
+				{
+					flagUnits.put(unit.flag.substring(1), unit);
+				}
+			}
+		}
+
+		for(MeasurementDefinition measurement : measurements)
+		{
+			for(UnitDefinition unit : measurement.units)
+			{
+				List<String> names = new ArrayList<String>(unit.aliases);
+				names.add(0, unit.name);
+				for(String name : names)
+				{
+					UnitDefinition flagUnit = flagUnits.get(name);
+					if(flagUnit != null && flagUnit != unit)
+					{
+						throw new IllegalArgumentException("line " + unit.line + ": The unit name or alias '" + name +
+								"' is the flag " + flagUnit.flag + " of " + flagUnit.name);
+					}
+				}
+			}
+		}
+	}
+
+	private static void parseSetting(final String line, MeasurementDefinition measurement, Map<String, Double> sizes)
+	{
+		int equals = line.indexOf('=');
+		String key = (equals < 0) ? line : line.substring(0, equals).trim();
+		String value = (equals < 0) ? "" : line.substring(equals + 1).trim();
+		if(equals >= 0 && key.equals(SETTING_DECIMALS))
+		{
+			measurement.decimals = parseDecimals(value);
+			return;
+		}
+		if(equals < 0 || !(key.equals(SETTING_DIMENSION) || key.equals(SETTING_REFERENCE)))
+		{
+			throw new IllegalArgumentException("Unknown setting: " + line);
+		}
+
+		// The sizes of the units are worked out from these as they are read
+		if(!measurement.units.isEmpty())
+		{
+			throw new IllegalArgumentException("The " + key + " must be given before the units: " + line);
+		}
+		if(key.equals(SETTING_DIMENSION))
+		{
+			measurement.dimension = Dimension.parse(value);
+		}
+		else if(measurement.dimension == null)
+		{
+			throw new IllegalArgumentException("The reference needs a dimension before it: " + line);
+		}
+		else
+		{
+			measurement.reference = Expression.evaluate(value, sizes);
+			checkFactor(measurement.reference, value);
+		}
+	}
+
+	private static int parseDecimals(final String value)
+	{
+		int decimals;
+		try
+		{
+			decimals = Integer.parseInt(value);
+		}
+		catch(NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid decimal places: " + value);
+		}
+		if(decimals < 0)
+		{
+			throw new IllegalArgumentException("Invalid decimal places: " + value);
+		}
+		return decimals;
+	}
+
+	private static void checkFactor(double factor, String text)
+	{
+		if(factor == 0.0 || Double.isNaN(factor) || Double.isInfinite(factor))
+		{
+			throw new IllegalArgumentException("The factor must be a non zero number: " + text);
+		}
+	}
+
+	//
+	// The size of the unit in SI units, under its name and aliases, for
+	// the {unit} of the factors after it. Only the units of measurements
+	// with a dimension have one, and not the reciprocal units. A name in
+	// more than one measurement is null, so it can not be used.
+	//
+	private static void addSize(final Map<String, Double> sizes, MeasurementDefinition measurement,
+			UnitDefinition unit)
+	{
+		if(measurement.dimension == null || unit.kind == MeasurementUnit.KIND_RECIPROCAL)
+		{
+			return;
+		}
+
+		Double size = measurement.reference / unit.factor;
+		List<String> names = new ArrayList<String>(unit.aliases);
+		names.add(unit.name);
+		for(String name : names)
+		{
+			sizes.put(name, sizes.containsKey(name) ? null : size);
+		}
+	}
+
+	// name | flag | description | kind | factor [| offset [| aliases]]
+	private static UnitDefinition parseUnit(final String line, MeasurementDefinition measurement,
+			Set<String> flags, Map<String, Double> sizes)
+	{
+		String[] columns = line.split(COLUMN_SEPARATOR, -1);
+		if(columns.length < 5 || columns.length > 7)
+		{
+			throw new IllegalArgumentException("Expected 5 to 7 columns: " + line);
+		}
+		for(int i = 0; i < columns.length; i++)
+		{
+			columns[i] = columns[i].trim();
+		}
+
+		UnitDefinition unit = new UnitDefinition();
+		unit.name = columns[0];
+		if(unit.name.length() == 0)
+		{
+			throw new IllegalArgumentException("The unit has no name: " + line);
+		}
+		addUnitName(measurement, unit.name);
+
+		if(columns[1].length() > 0)
+		{
+			if(!columns[1].startsWith("-") || !flags.add(columns[1]))
+			{
+				throw new IllegalArgumentException("Flags must start with - and not be repeated: " + columns[1]);
+			}
+			unit.flag = columns[1];
+			unit.description = (columns[2].length() > 0) ? columns[2] : unit.name;
+		}
+
+		unit.kind = parseKind(columns[3]);
+		unit.factor = Expression.evaluate(columns[4], sizes);
+		checkFactor(unit.factor, columns[4]);
+
+		String offset = (columns.length > 5) ? columns[5] : "";
+		if(unit.kind == MeasurementUnit.KIND_AFFINE)
+		{
+			unit.offset = Expression.evaluate(offset, sizes);
+		}
+		else if(offset.length() > 0)
+		{
+			throw new IllegalArgumentException("Only affine units have an offset: " + offset);
+		}
+
+		if(columns.length > 6 && columns[6].length() > 0)
+		{
+			for(String alias : columns[6].split(ALIAS_SEPARATOR))
+			{
+				alias = alias.trim();
+				addUnitName(measurement, alias);
+				unit.aliases.add(alias);
+			}
+		}
+
+		return unit;
+	}
+
+	// Unit names and aliases must be unique within their measurement
+	private static void addUnitName(final MeasurementDefinition measurement, String name)
+	{
+		if(name.length() == 0 || !measurement.unitNames.add(name))
+		{
+			throw new IllegalArgumentException("Empty or repeated unit name or alias: '" + name + "'");
+		}
+	}
+
+	private static int parseKind(final String kind)
+	{
+		for(int i = 0; i < KIND_NAMES.length; i++)
+		{
+			if(KIND_NAMES[i].equals(kind))
+			{
+				return KINDS[i];
+			}
+		}
+
+		throw new IllegalArgumentException("Unknown kind, expected linear, affine or reciprocal: " + kind);
+	}
+
+	//
+	// Lays out the catalog as described in UnitCatalog
+	//
+	private static ByteBuffer write(final List<MeasurementDefinition> measurements)
+	{
+		int numUnits = 0;
+		int numAliases = 0;
+		List<FlagEntry> flags = new ArrayList<FlagEntry>();
+		for(int m = 0; m < measurements.size(); m++)
+		{
+			for(UnitDefinition unit : measurements.get(m).units)
+			{
+				if(unit.flag != null)
+				{
+					flags.add(new FlagEntry(unit.flag, numUnits, m));
+				}
+				numAliases += unit.aliases.size();
+				numUnits++;
+			}
+		}
+		Collections.sort(flags);
+
+		StringPool strings = new StringPool();
+		int measurementsOffset = UnitCatalog.HEADER_SIZE;
+		int unitsOffset = measurementsOffset + measurements.size() * UnitCatalog.MEASUREMENT_SIZE;
+		int aliasesOffset = unitsOffset + numUnits * UnitCatalog.UNIT_SIZE;
+		int flagsOffset = aliasesOffset + numAliases * UnitCatalog.ALIAS_SIZE;
+		int stringsOffset = flagsOffset + flags.size() * UnitCatalog.FLAG_SIZE;
+
+		ByteBuffer tables = ByteBuffer.allocate(stringsOffset);
+		tables.putInt(UnitCatalog.MAGIC);
+		tables.putInt(UnitCatalog.VERSION);
+		tables.putInt(measurements.size());
+		tables.putInt(numUnits);
+		tables.putInt(numAliases);
+		tables.putInt(flags.size());
+		tables.putInt(measurementsOffset);
+		tables.putInt(unitsOffset);
+		tables.putInt(aliasesOffset);
+		tables.putInt(flagsOffset);
+		tables.putInt(stringsOffset);
+		tables.putInt(0); // the strings length, once they are all known
+
+		int unitIndex = 0;
+		int aliasIndex = 0;
+		for(MeasurementDefinition measurement : measurements)
+		{
+			tables.putInt(strings.add(measurement.name));
+			tables.putInt(measurement.decimals);
+			tables.putInt(unitIndex);
+			tables.putInt(measurement.units.size());
+			tables.putLong((measurement.dimension == null) ? UnitCatalog.NO_DIMENSION : measurement.dimension.pack());
+			tables.putDouble(measurement.reference);
+			unitIndex += measurement.units.size();
+		}
+
+		for(MeasurementDefinition measurement : measurements)
+		{
+			for(UnitDefinition unit : measurement.units)
+			{
+				tables.putInt(strings.add(unit.name));
+				tables.putInt(strings.add(unit.flag));
+				tables.putInt(strings.add(unit.description));
+				tables.putInt(unit.kind);
+				tables.putDouble(unit.factor);
+				tables.putDouble(unit.offset);
+				tables.putInt(aliasIndex);
+				tables.putInt(unit.aliases.size());
+				aliasIndex += unit.aliases.size();
+			}
+		}
+
+		for(MeasurementDefinition measurement : measurements)
+		{
+			for(UnitDefinition unit : measurement.units)
+			{
+				for(String alias : unit.aliases)
+				{
+					tables.putInt(strings.add(alias));
+				}
+			}
+		}
+
+		for(FlagEntry flag : flags)
+		{
+			tables.putInt(flag.unit);
+			tables.putInt(flag.measurement);
+		}
+
+		byte[] stringBytes = strings.toByteArray();
+		tables.putInt(UnitCatalog.HEADER_SIZE - 4, stringBytes.length);
+
+		ByteBuffer catalog = ByteBuffer.allocate(stringsOffset + stringBytes.length);
+		catalog.put(tables.array()).put(stringBytes);
+		catalog.flip();
+		return catalog;
+	}
+
+	//
+	// An entry of the flag index, which is sorted by the unsigned bytes
+	// of the flags so that UnitCatalog can search it without decoding them
+	//
+	private static class FlagEntry implements Comparable<FlagEntry>
+	{
+		final byte[] flag;
+		final int unit;
+		final int measurement;
+
+		FlagEntry(final String flag, int unit, int measurement)
+		{
+			this.flag = flag.getBytes(StandardCharsets.UTF_8);
+			this.unit = unit;
+			this.measurement = measurement;
+		}
+
+		public int compareTo(final FlagEntry other)
+		{
+			int n = Math.min(flag.length, other.flag.length);
+			for(int i = 0; i < n; i++)
+			{
+				int cmp = (flag[i] & 0xff) - (other.flag[i] & 0xff);
+				if(cmp != 0)
+				{
+					return cmp;
+				}
+			}
+			return flag.length - other.flag.length;
+		}
+	}
+
+	//
+	// The strings of the catalog, each one only stored once
+	//
+	private static class StringPool
+	{
+		private final Map<String, Integer> offsets = new HashMap<String, Integer>();
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		int add(final String s)
+		{
+			if(s == null)
+			{
+				return UnitCatalog.NO_STRING;
+			}
+
+			Integer offset = offsets.get(s);
+			if(offset == null)
+			{
+				byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+				if(utf8.length > MAX_STRING_LENGTH)
+				{
+					throw new IllegalArgumentException("The string is too long for the catalog: " + s);
+				}
+
+				offset = bytes.size();
+				bytes.write(utf8.length >>> 8);
+				bytes.write(utf8.length);
+				bytes.write(utf8, 0, utf8.length);
+				offsets.put(s, offset);
+			}
+
+			return offset;
+		}
+
+		byte[] toByteArray()
+		{
+			return bytes.toByteArray();
+		}
+	}
+
+	//
+	// Works out a factor like 1.0/(12.0*2.54) or (100.0/2.54)^2, with the
+	// usual precedence and left to right, so the result is exactly what
+	// the same sum in Java would give. ^ is Math.pow(), and {unit} is the
+	// size of a unit defined before it in SI units, so {foot} is 0.3048.
+	//
+	private static class Expression
+	{
+		private final String text;
+		private final Map<String, Double> sizes;
+		private int pos;
+
+		private Expression(final String text, Map<String, Double> sizes)
+		{
+			this.text = text;
+			this.sizes = sizes;
+		}
+
+		static double evaluate(final String text, Map<String, Double> sizes)
+		{
+			Expression e = new Expression(text, sizes);
+			double value = e.sum();
+			e.skipSpaces();
+			if(e.pos != text.length())
+			{
+				throw new IllegalArgumentException("Invalid number or sum: " + text);
+			}
+
+			return value;
+		}
+
+		private double sum()
+		{
+			double value = product();
+			while(true)
+			{
+				if(accept('+'))
+				{
+					value += product();
+				}
+				else if(accept('-'))
+				{
+					value -= product();
+				}
+				else
+				{
+					return value;
+				}
+			}
+		}
+
+		private double product()
+		{
+			double value = power();
+			while(true)
+			{
+				if(accept('*'))
+				{
+					value *= power();
+				}
+				else if(accept('/'))
+				{
+					value /= power();
+				}
+				else
+				{
+					return value;
+				}
+			}
+		}
+
+		private double power()
+		{
+			double value = unary();
+			if(accept('^'))
+			{
+				return Math.pow(value, power());
+			}
+			return value;
+		}
+
+		private double unary()
+		{
+			if(accept('-'))
+			{
+				return -unary();
+			}
+			if(accept('('))
+			{
+				double value = sum();
+				if(!accept(')'))
+				{
+					throw new IllegalArgumentException("Missing ) in: " + text);
+				}
+				return value;
+			}
+			if(accept('{'))
+			{
+				return size();
+			}
+
+			skipSpaces();
+			int start = pos;
+			while(pos < text.length() && isNumberChar(text.charAt(pos), pos > start ? text.charAt(pos - 1) : ' '))
+			{
+				pos++;
+			}
+			if(start == pos)
+			{
+				throw new IllegalArgumentException("Invalid number or sum: " + text);
+			}
+
+			try
+			{
+				return Double.parseDouble(text.substring(start, pos));
+			}
+			catch(NumberFormatException e)
+			{
+				throw new IllegalArgumentException("Invalid number: " + text.substring(start, pos));
+			}
+		}
+
+		private double size()
+		{
+			int end = text.indexOf('}', pos);
+			if(end < 0)
+			{
+				throw new IllegalArgumentException("Missing } in: " + text);
+			}
+			String name = text.substring(pos, end).trim();
+			pos = end + 1;
+
+			if(!sizes.containsKey(name))
+			{
+				throw new IllegalArgumentException("Unknown unit {" + name +
+						"}, it must be a linear unit of a measurement with a dimension defined before it");
+			}
+			Double size = sizes.get(name);
+			if(size == null)
+			{
+				throw new IllegalArgumentException("The unit {" + name + "} is in more than one measurement");
+			}
+			return size;
+		}
+
+		// Digits, a decimal point and an exponent like 1.5e-3
+		private static boolean isNumberChar(char c, char previous)
+		{
+			return (c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' ||
+					((c == '-' || c == '+') && (previous == 'e' || previous == 'E'));
+		}
+
+		private boolean accept(char c)
+		{
+			skipSpaces();
+			if(pos < text.length() && text.charAt(pos) == c)
+			{
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private void skipSpaces()
+		{
+			while(pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+			{
+				pos++;
+			}
+		}
+	}
+}
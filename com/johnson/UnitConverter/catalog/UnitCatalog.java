@@ -0,0 +1,480 @@
+package com.johnson.UnitConverter.catalog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.johnson.UnitConverter.Dimension;
+import com.johnson.UnitConverter.Measurement;
+import com.johnson.UnitConverter.MeasurementProvider;
+import com.johnson.UnitConverter.MeasurementUnit;
+import com.johnson.UnitConverter.UnitFlag;
+
+//
+// The binary unit catalog written by CatalogCompiler.
+//   Everything is in fixed size records found from their index, so
+//   opening a catalog parses nothing: the file is mapped into memory and
+//   its header checked. The units of a measurement are only read from
+//   their records when it is created, and a command line flag is found by
+//   a binary search of the flag index, so starting up does not get any
+//   slower as more units are added.
+//
+//   The layout, all big endian:
+//     header        int magic, version, measurement count, unit count,
+//                   alias count, flag count, measurements offset,
+//                   units offset, aliases offset, flags offset,
+//                   strings offset, strings length
+//     measurements  int name, decimal places (-1 for the default),
+//                   first unit, unit count, long dimension packed by
+//                   Dimension.pack() (-1 for none), double reference scale
+//     units         int name, flag, description, kind, double factor,
+//                   offset, int first alias, alias count
+//     aliases       int name
+//     flags         int unit, measurement, sorted by the bytes of the flag
+//     strings       unsigned short length, then that many bytes of UTF-8
+//   Strings are referred to by where they start in the strings, -1 for none.
+//
+public final class UnitCatalog
+{
+	// A catalog or definition file used instead of the built in one
+	public static final String CATALOG_PROPERTY = "unitconverter.catalog";
+
+	// The built in catalog, compiled by the build, and its definition
+	public static final String CATALOG_RESOURCE = "units.cat";
+	public static final String DEFINITION_RESOURCE = "units.catalog";
+
+	static final int MAGIC = 0x55434154; // "UCAT"
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 48;
+	static final int MEASUREMENT_SIZE = 32;
+	static final int UNIT_SIZE = 40;
+	static final int ALIAS_SIZE = 4;
+	static final int FLAG_SIZE = 8;
+	static final int NO_STRING = -1;
+	static final int DEFAULT_DECIMALS = -1;
+	static final long NO_DIMENSION = -1L;
+
+	// Smaller files are just read, the first mapping costs more than
+	// reading a few pages, as it starts up the JDK's lambda support
+	private static final long MAP_MIN_SIZE = 64 * 1024;
+
+	private final ByteBuffer buffer;
+	private final int measurementCount;
+	private final int unitCount;
+	private final int aliasCount;
+	private final int flagCount;
+	private final int measurementsOffset;
+	private final int unitsOffset;
+	private final int aliasesOffset;
+	private final int flagsOffset;
+	private final int stringsOffset;
+	private final int stringsLength;
+
+	//
+	// Creates the measurements of the catalog when the factory asks for them
+	//
+	private class CatalogMeasurement implements MeasurementProvider
+	{
+		private final int measurement;
+		private final String name;
+		private volatile List<UnitFlag> flags;
+
+		CatalogMeasurement(int measurement)
+		{
+			this.measurement = measurement;
+			this.name = getMeasurementName(measurement);
+		}
+
+		UnitCatalog getCatalog()
+		{
+			return UnitCatalog.this;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		// Only read when they are listed, flags are looked up with findUnitFlag()
+		public List<UnitFlag> getUnitFlags()
+		{
+			List<UnitFlag> unitFlags = flags;
+			if(unitFlags == null)
+			{
+				unitFlags = UnitCatalog.this.getUnitFlags(measurement);
+				flags = unitFlags;
+			}
+			return unitFlags;
+		}
+
+		public Measurement createMeasurement()
+		{
+			return UnitCatalog.this.createMeasurement(measurement);
+		}
+	}
+
+	// The buffer is only ever read with absolute gets, so it can be shared
+	private UnitCatalog(final ByteBuffer buffer)
+	{
+		if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+		{
+			throw new IllegalArgumentException("Not a unit catalog");
+		}
+		if(buffer.getInt(4) != VERSION)
+		{
+			throw new IllegalArgumentException("Unsupported unit catalog version: " + buffer.getInt(4));
+		}
+
+		this.buffer = buffer;
+		this.measurementCount = buffer.getInt(8);
+		this.unitCount = buffer.getInt(12);
+		this.aliasCount = buffer.getInt(16);
+		this.flagCount = buffer.getInt(20);
+		this.measurementsOffset = buffer.getInt(24);
+		this.unitsOffset = buffer.getInt(28);
+		this.aliasesOffset = buffer.getInt(32);
+		this.flagsOffset = buffer.getInt(36);
+		this.stringsOffset = buffer.getInt(40);
+		this.stringsLength = buffer.getInt(44);
+
+		checkTable(measurementsOffset, measurementCount, MEASUREMENT_SIZE);
+		checkTable(unitsOffset, unitCount, UNIT_SIZE);
+		checkTable(aliasesOffset, aliasCount, ALIAS_SIZE);
+		checkTable(flagsOffset, flagCount, FLAG_SIZE);
+		checkTable(stringsOffset, stringsLength, 1);
+	}
+
+	private void checkTable(int offset, int count, int recordSize)
+	{
+		if(offset < HEADER_SIZE || count < 0 || offset + (long) count * recordSize > buffer.limit())
+		{
+			throw new IllegalArgumentException("The unit catalog is truncated or corrupt");
+		}
+	}
+
+	// A catalog already in memory, from its first byte to its limit
+	public static UnitCatalog wrap(final ByteBuffer buffer)
+	{
+		return new UnitCatalog(buffer.slice());
+	}
+
+	//
+	// Maps in a catalog file, or reads it if it is small. A definition file
+	// is compiled instead, so a changed definition can be tried out without
+	// building.
+	//
+	public static UnitCatalog open(final Path path) throws IOException
+	{
+		ByteBuffer buffer;
+		if(path.toFile().length() < MAP_MIN_SIZE)
+		{
+			InputStream in = new FileInputStream(path.toFile());
+			try
+			{
+				buffer = readFully(in);
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		else
+		{
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+			try
+			{
+				// The mapping stays valid after the channel is closed
+				buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			}
+			finally
+			{
+				channel.close();
+			}
+		}
+
+		if(buffer.limit() >= 4 && buffer.getInt(0) == MAGIC)
+		{
+			return new UnitCatalog(buffer);
+		}
+
+		String definition = StandardCharsets.UTF_8.decode(buffer).toString();
+		return new UnitCatalog(CatalogCompiler.compile(new StringReader(definition)));
+	}
+
+	// Reads a catalog that can not be mapped, like one inside a jar
+	public static UnitCatalog read(final InputStream in) throws IOException
+	{
+		return new UnitCatalog(readFully(in));
+	}
+
+	private static ByteBuffer readFully(final InputStream in) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		int n;
+		while((n = in.read(buf)) > 0)
+		{
+			bytes.write(buf, 0, n);
+		}
+
+		return ByteBuffer.wrap(bytes.toByteArray());
+	}
+
+	//
+	// The catalog named by the unitconverter.catalog property, otherwise
+	// the one compiled by the build. That is opened as a file when the
+	// classes are in a directory and read when they are in a jar, the
+	// scripts pass the copy next to the jar in the property instead.
+	// Without either, for example when the build did not compile it,
+	// the definition is compiled now.
+	//
+	public static UnitCatalog builtIn()
+	{
+		try
+		{
+			String fileName = System.getProperty(CATALOG_PROPERTY);
+			if(fileName != null)
+			{
+				return open(Paths.get(fileName));
+			}
+
+			URL url = UnitCatalog.class.getResource(CATALOG_RESOURCE);
+			if(url != null && "file".equals(url.getProtocol()))
+			{
+				return open(Paths.get(url.toURI()));
+			}
+
+			InputStream in = (url != null) ?
+					url.openStream() : UnitCatalog.class.getResourceAsStream(DEFINITION_RESOURCE);
+			if(in == null)
+			{
+				throw new IllegalStateException("The unit catalog is missing: " + DEFINITION_RESOURCE);
+			}
+			try
+			{
+				if(url != null)
+				{
+					return read(in);
+				}
+				return new UnitCatalog(CatalogCompiler.compile(new InputStreamReader(in, StandardCharsets.UTF_8)));
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException("Could not load the unit catalog", e);
+		}
+		catch(URISyntaxException e)
+		{
+			throw new IllegalStateException("Could not load the unit catalog", e);
+		}
+	}
+
+	public int getMeasurementCount()
+	{
+		return measurementCount;
+	}
+
+	public int getUnitCount()
+	{
+		return unitCount;
+	}
+
+	public String getMeasurementName(int measurement)
+	{
+		return getString(buffer.getInt(measurementRecord(measurement)));
+	}
+
+	// The flags of the units that have one, in the order they were defined
+	public List<UnitFlag> getUnitFlags(int measurement)
+	{
+		int record = measurementRecord(measurement);
+		String measurementName = getString(buffer.getInt(record));
+		int firstUnit = buffer.getInt(record + 8);
+		int numUnits = buffer.getInt(record + 12);
+
+		List<UnitFlag> flags = new ArrayList<UnitFlag>(numUnits);
+		for(int unit = firstUnit; unit < firstUnit + numUnits; unit++)
+		{
+			int unitRecord = unitRecord(unit);
+			int flag = buffer.getInt(unitRecord + 4);
+			if(flag != NO_STRING)
+			{
+				flags.add(new UnitFlag(getString(flag), measurementName,
+						getString(buffer.getInt(unitRecord)), getString(buffer.getInt(unitRecord + 8))));
+			}
+		}
+
+		return Collections.unmodifiableList(flags);
+	}
+
+	public Measurement createMeasurement(int measurement)
+	{
+		int record = measurementRecord(measurement);
+		Measurement m = new Measurement(getString(buffer.getInt(record)));
+		int decimals = buffer.getInt(record + 4);
+		if(decimals != DEFAULT_DECIMALS)
+		{
+			m.setDecimalPlaces(decimals);
+		}
+		long dimension = buffer.getLong(record + 16);
+		if(dimension != NO_DIMENSION)
+		{
+			m.setDimension(Dimension.unpack(dimension), buffer.getDouble(record + 24));
+		}
+
+		int firstUnit = buffer.getInt(record + 8);
+		int numUnits = buffer.getInt(record + 12);
+		for(int unit = firstUnit; unit < firstUnit + numUnits; unit++)
+		{
+			int unitRecord = unitRecord(unit);
+			String unitName = getString(buffer.getInt(unitRecord));
+			m.addUnit(new MeasurementUnit(unitName, buffer.getInt(unitRecord + 12),
+					buffer.getDouble(unitRecord + 16), buffer.getDouble(unitRecord + 24)));
+
+			int firstAlias = buffer.getInt(unitRecord + 32);
+			int numAliases = buffer.getInt(unitRecord + 36);
+			for(int alias = firstAlias; alias < firstAlias + numAliases; alias++)
+			{
+				m.addAlias(getString(buffer.getInt(aliasRecord(alias))), unitName);
+			}
+		}
+
+		return m;
+	}
+
+	// A provider for every measurement, nothing is created until asked for
+	public List<MeasurementProvider> getProviders()
+	{
+		List<MeasurementProvider> providers = new ArrayList<MeasurementProvider>(measurementCount);
+		for(int measurement = 0; measurement < measurementCount; measurement++)
+		{
+			providers.add(new CatalogMeasurement(measurement));
+		}
+
+		return providers;
+	}
+
+	// Whether the provider is one of those from getProviders()
+	public boolean isProvider(final MeasurementProvider provider)
+	{
+		return (provider instanceof CatalogMeasurement) && ((CatalogMeasurement) provider).getCatalog() == this;
+	}
+
+	// The unit with the command line flag, like -cm, or null if there is none
+	public UnitFlag findUnitFlag(final String flag)
+	{
+		byte[] key = flag.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = flagCount - 1;
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int entry = flagsOffset + mid * FLAG_SIZE;
+			int unitRecord = unitRecord(buffer.getInt(entry));
+			int cmp = compareString(buffer.getInt(unitRecord + 4), key);
+			if(cmp < 0)
+			{
+				low = mid + 1;
+			}
+			else if(cmp > 0)
+			{
+				high = mid - 1;
+			}
+			else
+			{
+				return new UnitFlag(flag, getMeasurementName(buffer.getInt(entry + 4)),
+						getString(buffer.getInt(unitRecord)), getString(buffer.getInt(unitRecord + 8)));
+			}
+		}
+
+		return null;
+	}
+
+	private int measurementRecord(int measurement)
+	{
+		checkIndex(measurement, measurementCount);
+		return measurementsOffset + measurement * MEASUREMENT_SIZE;
+	}
+
+	private int unitRecord(int unit)
+	{
+		checkIndex(unit, unitCount);
+		return unitsOffset + unit * UNIT_SIZE;
+	}
+
+	private int aliasRecord(int alias)
+	{
+		checkIndex(alias, aliasCount);
+		return aliasesOffset + alias * ALIAS_SIZE;
+	}
+
+	private static void checkIndex(int index, int count)
+	{
+		if(index < 0 || index >= count)
+		{
+			throw new IllegalArgumentException("The unit catalog is corrupt, no record " + index + " of " + count);
+		}
+	}
+
+	private String getString(int string)
+	{
+		if(string == NO_STRING)
+		{
+			return null;
+		}
+
+		int start = stringStart(string);
+		byte[] bytes = new byte[buffer.getShort(start) & 0xffff];
+		buffer.get(start + 2, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// Compares the bytes of the string, without decoding it, in the same
+	// order as CatalogCompiler sorts them
+	private int compareString(int string, final byte[] key)
+	{
+		int start = stringStart(string);
+		int length = buffer.getShort(start) & 0xffff;
+		int n = Math.min(length, key.length);
+		for(int i = 0; i < n; i++)
+		{
+			int cmp = (buffer.get(start + 2 + i) & 0xff) - (key[i] & 0xff);
+			if(cmp != 0)
+			{
+				return cmp;
+			}
+		}
+		return length - key.length;
+	}
+
+	// Where the length of the string is, checked against the strings
+	private int stringStart(int string)
+	{
+		if(string < 0 || string > stringsLength - 2 ||
+				string + 2 + (buffer.getShort(stringsOffset + string) & 0xffff) > stringsLength)
+		{
+			throw new IllegalArgumentException("The unit catalog is corrupt, no string at " + string);
+		}
+		return stringsOffset + string;
+	}
+}
@@ -0,0 +1,61 @@
+package com.johnson.UnitConverter.expression;
+
+import com.johnson.UnitConverter.DecimalFormatter;
+import com.johnson.UnitConverter.Measurement;
+
+//
+// The answer to a UnitQuery, shown like: 12.5 mi = 20.1168 km
+//   The units are as they were asked for, with the spaces evened out.
+//   The result is shown with the decimal places of the measurement it
+//   was converted to, or "unavailable" when it is NaN, like a currency
+//   without an exchange rate.
+//
+public final class QueryResult
+{
+	private final double value;
+	private final String valueText;
+	private final double result;
+	private final String from;
+	private final String to;
+	private final DecimalFormatter formatter;
+
+	QueryResult(double value, String valueText, double result, String from, String to, DecimalFormatter formatter)
+	{
+		this.value = value;
+		this.valueText = valueText;
+		this.result = result;
+		this.from = from;
+		this.to = to;
+		this.formatter = formatter;
+	}
+
+	public double getValue()
+	{
+		return value;
+	}
+
+	public double getResult()
+	{
+		return result;
+	}
+
+	public String getFrom()
+	{
+		return from;
+	}
+
+	public String getTo()
+	{
+		return to;
+	}
+
+	public String getResultText()
+	{
+		return Double.isNaN(result) ? Measurement.UNAVAILABLE : formatter.format(result);
+	}
+
+	public String toString()
+	{
+		return valueText + " " + from + " = " + getResultText() + " " + to;
+	}
+}
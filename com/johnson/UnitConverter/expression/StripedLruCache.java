@@ -0,0 +1,124 @@
+package com.johnson.UnitConverter.expression;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//
+// A bounded cache that drops the least recently used entries.
+//   The entries are split over a number of stripes by their hash, each
+//   an access ordered LinkedHashMap with its own lock, so threads only
+//   contend when they use the same stripe. The capacity is shared out
+//   between the stripes, so together they never hold more than it, and
+//   the entry dropped is the least recently used of its stripe, which is
+//   close enough to the overall one.
+//
+public final class StripedLruCache<K, V>
+{
+	public static final int DEFAULT_STRIPES = 16;
+
+	private final Stripe<K, V>[] stripes;
+	private final int mask;
+
+	private static final class Stripe<K, V> extends LinkedHashMap<K, V>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		Stripe(int capacity)
+		{
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		protected boolean removeEldestEntry(final Map.Entry<K, V> eldest)
+		{
+			return size() > capacity;
+		}
+	}
+
+	public StripedLruCache(int capacity)
+	{
+		this(capacity, DEFAULT_STRIPES);
+	}
+
+	// The number of stripes is rounded up to a power of 2, but is never
+	// more than the capacity, so every stripe holds at least one entry
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public StripedLruCache(int capacity, int numStripes)
+	{
+		if(capacity < 1 || numStripes < 1)
+		{
+			throw new IllegalArgumentException("The capacity and stripes must be at least 1");
+		}
+
+		int n = 1;
+		while(n < numStripes && (n << 1) <= capacity)
+		{
+			n <<= 1;
+		}
+
+		this.stripes = new Stripe[n];
+		this.mask = n - 1;
+		for(int i = 0; i < n; i++)
+		{
+			stripes[i] = new Stripe<K, V>(capacity / n + ((i < capacity % n) ? 1 : 0));
+		}
+	}
+
+	private Stripe<K, V> stripe(final Object key)
+	{
+		int h = key.hashCode();
+		return stripes[(h ^ (h >>> 16)) & mask];
+	}
+
+	// The value, or null if it is not cached
+	public V get(final K key)
+	{
+		Stripe<K, V> stripe = stripe(key);
+		synchronized(stripe)
+		{
+			return stripe.get(key);
+		}
+	}
+
+	// Caches the value unless there is one already, returning the one cached
+	public V putIfAbsent(final K key, V value)
+	{
+		Stripe<K, V> stripe = stripe(key);
+		synchronized(stripe)
+		{
+			V cached = stripe.get(key);
+			if(cached != null)
+			{
+				return cached;
+			}
+			stripe.put(key, value);
+			return value;
+		}
+	}
+
+	public int size()
+	{
+		int size = 0;
+		for(Stripe<K, V> stripe : stripes)
+		{
+			synchronized(stripe)
+			{
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	public void clear()
+	{
+		for(Stripe<K, V> stripe : stripes)
+		{
+			synchronized(stripe)
+			{
+				stripe.clear();
+			}
+		}
+	}
+}
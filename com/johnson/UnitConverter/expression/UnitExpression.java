@@ -0,0 +1,146 @@
+package com.johnson.UnitConverter.expression;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.johnson.UnitConverter.Converter;
+import com.johnson.UnitConverter.Dimension;
+import com.johnson.UnitConverter.Measurement;
+import com.johnson.UnitConverter.MeasurementUnit;
+
+//
+// A compiled unit expression, like kg*m/s^2 or L/100km.
+//   It is the product of its units, each raised to a power, and any
+//   numbers in it. What it measures is its SI dimension, so kg*m/s^2 is
+//   M*L/T^2, and the same as newtons in any other measurement. Its size
+//   is a single factor: how many SI units one of it is. The units of a
+//   measurement without a dimension, like a currency, are measured by
+//   the measurement instead, in its reference units, so EUR/L is
+//   Currency/L^3 and only converts to other currencies per volume.
+//   A unit that is not linear, like fahrenheit, can only be used on its
+//   own, its conversion is then the unit's own.
+//   Expressions are immutable, so they can be cached and shared.
+//
+public final class UnitExpression
+{
+	private final String text;
+	private final Dimension dimension;
+	private final SortedMap<String, Integer> measurements;
+	private final double referenceScale;
+	private final Measurement measurement;
+	private final MeasurementUnit nonLinearUnit;
+	private final Converter toReference;
+	private final Converter fromReference;
+
+	//
+	// The scale is the value of one of this expression in SI and reference
+	// units. For a non linear unit it is the size of the reference unit of
+	// its measurement, which the unit's own conversion is followed by.
+	//
+	UnitExpression(final String text, Dimension dimension, SortedMap<String, Integer> measurements,
+			double referenceScale, Measurement measurement, MeasurementUnit nonLinearUnit)
+	{
+		this.text = text;
+		this.dimension = dimension;
+		this.measurements = Collections.unmodifiableSortedMap(new TreeMap<String, Integer>(measurements));
+		this.referenceScale = referenceScale;
+		this.measurement = measurement;
+		this.nonLinearUnit = nonLinearUnit;
+		if(nonLinearUnit != null)
+		{
+			Converter toUnitReference = nonLinearUnit.toReferenceConverter();
+			Converter fromUnitReference = nonLinearUnit.fromReferenceConverter();
+			if(referenceScale != 1.0)
+			{
+				toUnitReference = toUnitReference.andThen(Converter.linear(referenceScale));
+				fromUnitReference = Converter.linear(1.0 / referenceScale).andThen(fromUnitReference);
+			}
+			this.toReference = toUnitReference;
+			this.fromReference = fromUnitReference;
+		}
+		else
+		{
+			this.toReference = Converter.linear(referenceScale);
+			this.fromReference = Converter.linear(1.0 / referenceScale);
+		}
+	}
+
+	public String getText()
+	{
+		return text;
+	}
+
+	public Dimension getDimension()
+	{
+		return dimension;
+	}
+
+	// The power of each measurement without a dimension, like {Currency=1}
+	public SortedMap<String, Integer> getMeasurements()
+	{
+		return measurements;
+	}
+
+	// The measurement of the unit when it is a single unit, otherwise null
+	public Measurement getMeasurement()
+	{
+		return measurement;
+	}
+
+	public boolean isLinear()
+	{
+		return nonLinearUnit == null;
+	}
+
+	// Converts a value of this expression to the SI and reference units
+	public Converter toReference()
+	{
+		return toReference;
+	}
+
+	public Converter fromReference()
+	{
+		return fromReference;
+	}
+
+	// Whether both measure the same thing, so one converts to the other
+	public boolean isCompatible(final UnitExpression other)
+	{
+		return dimension.equals(other.dimension) && measurements.equals(other.measurements);
+	}
+
+	//
+	// The conversion from this expression to the other, in a single step.
+	// Throws an IllegalArgumentException if they measure different things,
+	// which is only checked here, the converter just multiplies.
+	//
+	public Converter converterTo(final UnitExpression other)
+	{
+		if(!isCompatible(other))
+		{
+			throw new IllegalArgumentException("Can not convert " + text + " (" + getMeasurementText() +
+					") to " + other.text + " (" + other.getMeasurementText() + ")");
+		}
+
+		if(nonLinearUnit == null && other.nonLinearUnit == null)
+		{
+			return Converter.linear(referenceScale / other.referenceScale);
+		}
+		return toReference.andThen(other.fromReference);
+	}
+
+	// What it measures, like M*L/T^2 or Currency/L^3
+	public String getMeasurementText()
+	{
+		Map<String, Integer> powers = dimension.getPowers();
+		powers.putAll(measurements);
+		return Dimension.format(powers);
+	}
+
+	public String toString()
+	{
+		return text;
+	}
+}
@@ -0,0 +1,598 @@
+package com.johnson.UnitConverter.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.johnson.UnitConverter.Converter;
+import com.johnson.UnitConverter.Dimension;
+import com.johnson.UnitConverter.Measurement;
+import com.johnson.UnitConverter.MeasurementCatalog;
+import com.johnson.UnitConverter.MeasurementFactory;
+import com.johnson.UnitConverter.MeasurementUnit;
+import com.johnson.UnitConverter.UnitIndex;
+import com.johnson.UnitConverter.UnitName;
+
+//
+// Compiles unit expressions, like kg*m/s^2, L/100km or BTU/h, from the
+// units of the measurements in a MeasurementFactory.
+//   A unit is found in the factory's UnitIndex by its name, then its
+//   aliases, then its command line flag without the dash, and only when
+//   none of them are written like that, ignoring case. A name of several
+//   words, like "square foot" or "fl oz", is matched before its words are
+//   taken one at a time, and a word ending in a number that is not a unit
+//   is a power, like s2.
+//
+//   expression := product (('*' | '/') product)*
+//   product    := power power*        side by side multiplies first,
+//                                     so L/100km is L/(100 km)
+//   power      := primary ('^' integer)?
+//   primary    := number | unit | '(' expression ')'
+//
+//   Expressions convert to any other with the same SI dimension, whatever
+//   measurements their units are in, so km/h converts to knots and BTU/h
+//   to watts. That is checked once, when the conversion is compiled.
+//
+//   The compiled expressions and conversions are kept in bounded LRU
+//   caches keyed by their text, so a repeated one is not parsed again.
+//   The caches start again empty whenever the factory's catalog changes,
+//   for example when the exchange rates are refreshed.
+//
+public class UnitExpressionCompiler
+{
+	public static final int DEFAULT_CACHE_SIZE = 4096;
+
+	private static final String PAIR_SEPARATOR = "\u0000";
+	private static final String FLAG_PREFIX = "-";
+
+	private final MeasurementFactory factory;
+	private final int cacheSize;
+	private volatile State state;
+
+	//
+	// The units of one catalog snapshot, and the caches built from them
+	//
+	private static final class State
+	{
+		final MeasurementCatalog catalog;
+		final UnitIndex index;
+		final StripedLruCache<String, UnitExpression> expressions;
+		final StripedLruCache<String, Converter> converters;
+
+		State(final UnitIndex index, int cacheSize)
+		{
+			this.catalog = index.getCatalog();
+			this.index = index;
+			this.expressions = new StripedLruCache<String, UnitExpression>(cacheSize);
+			this.converters = new StripedLruCache<String, Converter>(cacheSize);
+		}
+	}
+
+	public UnitExpressionCompiler(final MeasurementFactory factory)
+	{
+		this(factory, DEFAULT_CACHE_SIZE);
+	}
+
+	public UnitExpressionCompiler(final MeasurementFactory factory, int cacheSize)
+	{
+		this.factory = factory;
+		this.cacheSize = cacheSize;
+	}
+
+	//
+	// Returns the compiled expression, from the cache if it was compiled
+	// before. A mistake in it is an IllegalArgumentException.
+	//
+	public UnitExpression compile(final String text)
+	{
+		return compile(currentState(), text);
+	}
+
+	// Compiles the expression without looking in or adding to the cache
+	public UnitExpression parse(final String text)
+	{
+		return new Parser(currentState(), text).parse();
+	}
+
+	//
+	// The conversion from one expression to another, in a single step.
+	// Throws an IllegalArgumentException if either has a mistake or they
+	// do not measure the same thing.
+	//
+	public Converter converter(final String from, String to)
+	{
+		State s = currentState();
+		String key = from + PAIR_SEPARATOR + to;
+		Converter converter = s.converters.get(key);
+		if(converter == null)
+		{
+			converter = s.converters.putIfAbsent(key, compile(s, from).converterTo(compile(s, to)));
+		}
+		return converter;
+	}
+
+	public double convert(double value, final String from, String to)
+	{
+		return converter(from, to).convert(value);
+	}
+
+	private UnitExpression compile(final State s, String text)
+	{
+		UnitExpression expression = s.expressions.get(text);
+		if(expression == null)
+		{
+			expression = s.expressions.putIfAbsent(text, new Parser(s, text).parse());
+		}
+		return expression;
+	}
+
+	private State currentState()
+	{
+		State s = state;
+		if(s != null && s.catalog == factory.getCatalog())
+		{
+			return s;
+		}
+
+		synchronized(this)
+		{
+			s = state;
+			if(s == null || s.catalog != factory.getCatalog())
+			{
+				s = new State(factory.getUnitIndex(), cacheSize);
+				state = s;
+			}
+			return s;
+		}
+	}
+
+	//
+	// A part of an expression while it is parsed: its dimension, the powers
+	// of the measurements without one, and the size of one of it in SI and
+	// reference units
+	//
+	private static final class Term
+	{
+		final double scale;
+		final Dimension dimension;
+		final TreeMap<String, Integer> powers;
+		final Measurement measurement;  // when it is a single unit on its own
+		final MeasurementUnit unit;
+		final String nonLinear;         // the first non linear unit in it, if any
+
+		Term(double scale, Dimension dimension, TreeMap<String, Integer> powers,
+				Measurement measurement, MeasurementUnit unit, String nonLinear)
+		{
+			this.scale = scale;
+			this.dimension = dimension;
+			this.powers = powers;
+			this.measurement = measurement;
+			this.unit = unit;
+			this.nonLinear = nonLinear;
+		}
+
+		static Term number(double value)
+		{
+			return new Term(value, Dimension.DIMENSIONLESS, new TreeMap<String, Integer>(), null, null, null);
+		}
+
+		static Term unit(final Measurement measurement, MeasurementUnit unit)
+		{
+			Dimension dimension = measurement.getDimension();
+			TreeMap<String, Integer> powers = new TreeMap<String, Integer>();
+			if(dimension == null)
+			{
+				dimension = Dimension.DIMENSIONLESS;
+				powers.put(measurement.getName(), 1);
+			}
+
+			double referenceScale = measurement.getReferenceScale();
+			if(unit.getKind() == MeasurementUnit.KIND_LINEAR)
+			{
+				return new Term(referenceScale / unit.getReferenceFactor(), dimension, powers, measurement, unit, null);
+			}
+			return new Term(referenceScale, dimension, powers, measurement, unit, unit.getName());
+		}
+
+		Term times(final Term other)
+		{
+			TreeMap<String, Integer> product = new TreeMap<String, Integer>(powers);
+			for(Map.Entry<String, Integer> e : other.powers.entrySet())
+			{
+				addPower(product, e.getKey(), e.getValue());
+			}
+			return new Term(scale * other.scale, dimension.times(other.dimension), product, null, null,
+					(nonLinear != null) ? nonLinear : other.nonLinear);
+		}
+
+		Term pow(int power)
+		{
+			if(power == 1)
+			{
+				return this;
+			}
+
+			TreeMap<String, Integer> result = new TreeMap<String, Integer>();
+			for(Map.Entry<String, Integer> e : powers.entrySet())
+			{
+				addPower(result, e.getKey(), e.getValue() * power);
+			}
+			return new Term(Math.pow(scale, power), dimension.pow(power), result, null, null, nonLinear);
+		}
+
+		private static void addPower(final TreeMap<String, Integer> powers, String measurement, int power)
+		{
+			Integer current = powers.get(measurement);
+			int sum = (current == null) ? power : current + power;
+			if(sum == 0)
+			{
+				powers.remove(measurement);
+			}
+			else
+			{
+				powers.put(measurement, sum);
+			}
+		}
+
+		UnitExpression toExpression(final String text)
+		{
+			if(nonLinear == null)
+			{
+				return new UnitExpression(text, dimension, powers, scale, measurement, null);
+			}
+			if(unit == null)
+			{
+				throw new IllegalArgumentException(
+						"The " + nonLinear + " unit is not linear, it can only be converted on its own: " + text);
+			}
+			return new UnitExpression(text, dimension, powers, scale, measurement, unit);
+		}
+	}
+
+	//
+	// A recursive descent parser over the words, numbers and symbols of one expression
+	//
+	private final class Parser
+	{
+		private static final int WORD = 0;
+		private static final int NUMBER = 1;
+		private static final int SYMBOL = 2;
+
+		private final State s;
+		private final String text;
+		private final List<String> tokens;
+		private final List<Integer> types;
+		private int pos;
+
+		Parser(final State s, String text)
+		{
+			this.s = s;
+			this.text = text;
+			this.tokens = new ArrayList<String>();
+			this.types = new ArrayList<Integer>();
+			tokenize();
+		}
+
+		private void tokenize()
+		{
+			int i = 0;
+			int n = text.length();
+			while(i < n)
+			{
+				char c = text.charAt(i);
+				int start = i;
+				if(Character.isWhitespace(c))
+				{
+					i++;
+					continue;
+				}
+
+				if("*/^()-+".indexOf(c) >= 0)
+				{
+					i++;
+					add(SYMBOL, start, i);
+				}
+				else if(Character.isDigit(c) || (c == '.' && i + 1 < n && Character.isDigit(text.charAt(i + 1))))
+				{
+					while(i < n && (Character.isDigit(text.charAt(i)) || text.charAt(i) == '.'))
+					{
+						i++;
+					}
+					// An exponent, but not the e of a unit like 5em
+					int e = i;
+					if(e < n && (text.charAt(e) == 'e' || text.charAt(e) == 'E'))
+					{
+						e++;
+						if(e < n && (text.charAt(e) == '-' || text.charAt(e) == '+'))
+						{
+							e++;
+						}
+						if(e < n && Character.isDigit(text.charAt(e)))
+						{
+							i = e;
+							while(i < n && Character.isDigit(text.charAt(i)))
+							{
+								i++;
+							}
+						}
+					}
+					add(NUMBER, start, i);
+				}
+				else if(Character.isLetter(c) || c == '_')
+				{
+					while(i < n && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_'))
+					{
+						i++;
+					}
+					add(WORD, start, i);
+				}
+				else
+				{
+					throw new IllegalArgumentException("Unexpected '" + c + "' in: " + text);
+				}
+			}
+		}
+
+		private void add(int type, int start, int end)
+		{
+			tokens.add(text.substring(start, end));
+			types.add(type);
+		}
+
+		UnitExpression parse()
+		{
+			if(tokens.isEmpty())
+			{
+				throw new IllegalArgumentException("The unit expression is empty");
+			}
+
+			Term term = expression();
+			if(pos < tokens.size())
+			{
+				throw new IllegalArgumentException("Unexpected '" + tokens.get(pos) + "' in: " + text);
+			}
+			return term.toExpression(text);
+		}
+
+		private Term expression()
+		{
+			Term term = product();
+			while(true)
+			{
+				if(accept("*"))
+				{
+					term = term.times(product());
+				}
+				else if(accept("/"))
+				{
+					term = term.times(product().pow(-1));
+				}
+				else
+				{
+					return term;
+				}
+			}
+		}
+
+		private Term product()
+		{
+			Term term = power();
+			while(pos < tokens.size() && (types.get(pos) != SYMBOL || tokens.get(pos).equals("(")))
+			{
+				term = term.times(power());
+			}
+			return term;
+		}
+
+		private Term power()
+		{
+			Term term = primary();
+			if(accept("^"))
+			{
+				int sign = accept("-") ? -1 : 1;
+				if(sign == 1)
+				{
+					accept("+");
+				}
+				if(pos >= tokens.size() || types.get(pos) != NUMBER)
+				{
+					throw new IllegalArgumentException("Expected a whole number after ^ in: " + text);
+				}
+				term = term.pow(sign * parsePower(tokens.get(pos++)));
+			}
+			return term;
+		}
+
+		private int parsePower(final String token)
+		{
+			try
+			{
+				return Integer.parseInt(token);
+			}
+			catch(NumberFormatException e)
+			{
+				throw new IllegalArgumentException("Powers must be whole numbers: " + token);
+			}
+		}
+
+		private Term primary()
+		{
+			if(pos >= tokens.size())
+			{
+				throw new IllegalArgumentException("Unexpected end of: " + text);
+			}
+
+			String token = tokens.get(pos);
+			int type = types.get(pos);
+			if(type == NUMBER)
+			{
+				pos++;
+				try
+				{
+					return Term.number(Double.parseDouble(token));
+				}
+				catch(NumberFormatException e)
+				{
+					throw new IllegalArgumentException("Invalid number: " + token);
+				}
+			}
+			if(type == WORD)
+			{
+				return unit();
+			}
+			if(accept("("))
+			{
+				Term term = expression();
+				if(!accept(")"))
+				{
+					throw new IllegalArgumentException("Missing ) in: " + text);
+				}
+				return term;
+			}
+
+			throw new IllegalArgumentException("Unexpected '" + token + "' in: " + text);
+		}
+
+		// The longest run of words that is a unit
+		private Term unit()
+		{
+			int words = 0;
+			while(pos + words < tokens.size() && types.get(pos + words) == WORD && words < s.index.getMaxWords())
+			{
+				words++;
+			}
+
+			for(int n = words; n > 0; n--)
+			{
+				StringBuilder name = new StringBuilder(tokens.get(pos));
+				for(int i = 1; i < n; i++)
+				{
+					name.append(' ').append(tokens.get(pos + i));
+				}
+
+				Term term = find(name.toString());
+				if(term != null)
+				{
+					pos += n;
+					return term;
+				}
+			}
+
+			// Like s2 for s^2
+			String word = tokens.get(pos);
+			int digits = word.length();
+			while(digits > 0 && Character.isDigit(word.charAt(digits - 1)))
+			{
+				digits--;
+			}
+			if(digits > 0 && digits < word.length())
+			{
+				Term term = find(word.substring(0, digits));
+				if(term != null)
+				{
+					pos++;
+					return term.pow(parsePower(word.substring(digits)));
+				}
+			}
+
+			throw new IllegalArgumentException("Unknown unit '" + word + "' in: " + text);
+		}
+
+		//
+		// Names are tried before aliases and then flags, and all of them as
+		// written before ignoring their case, so Cal is a kilocalorie and cal
+		// a calorie, BTU is energy and btu the -btu power unit, but KM is
+		// still kilometers. CatalogCompiler makes sure no name or alias is
+		// written exactly like another unit's flag.
+		//
+		private Term find(final String name)
+		{
+			List<UnitName> found = s.index.find(name);
+			List<UnitName> units = select(found, UnitName.KIND_NAME);
+			if(units.isEmpty())
+			{
+				units = select(found, UnitName.KIND_ALIAS);
+			}
+			if(units.isEmpty())
+			{
+				units = select(s.index.find(FLAG_PREFIX + name), UnitName.KIND_FLAG);
+			}
+			if(units.isEmpty())
+			{
+				found = s.index.findIgnoreCase(name);
+				units = select(found, UnitName.KIND_NAME);
+				if(units.isEmpty())
+				{
+					units = select(found, UnitName.KIND_ALIAS);
+				}
+				if(units.isEmpty())
+				{
+					units = select(s.index.findIgnoreCase(FLAG_PREFIX + name), UnitName.KIND_FLAG);
+				}
+			}
+			if(units.isEmpty())
+			{
+				return null;
+			}
+
+			if(units.size() > 1)
+			{
+				StringBuilder in = new StringBuilder();
+				for(UnitName unit : units)
+				{
+					in.append((in.length() == 0) ? "" : ", ")
+							.append(unit.getUnitName()).append(" (").append(unit.getMeasurementType()).append(')');
+				}
+				throw new IllegalArgumentException("The unit '" + name + "' could be more than one unit: " + in);
+			}
+
+			UnitName unitName = units.get(0);
+			Measurement m = factory.getMeasurement(unitName.getMeasurementType());
+			MeasurementUnit unit = (m == null) ? null : m.findUnit(unitName.getUnitName());
+			if(unit == null)
+			{
+				throw new IllegalArgumentException("The unit " + unitName.getUnitName() +
+						" is no longer in " + unitName.getMeasurementType());
+			}
+			return Term.unit(m, unit);
+		}
+
+		// The different units the names of the kind are for
+		private List<UnitName> select(final List<UnitName> names, int kind)
+		{
+			List<UnitName> units = new ArrayList<UnitName>(1);
+			for(UnitName name : names)
+			{
+				if(name.getKind() == kind && !contains(units, name))
+				{
+					units.add(name);
+				}
+			}
+			return units;
+		}
+
+		private boolean contains(final List<UnitName> units, UnitName name)
+		{
+			for(UnitName unit : units)
+			{
+				if(unit.getMeasurementType().equals(name.getMeasurementType()) &&
+						unit.getUnitName().equals(name.getUnitName()))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean accept(final String symbol)
+		{
+			if(pos < tokens.size() && types.get(pos) == SYMBOL && tokens.get(pos).equals(symbol))
+			{
+				pos++;
+				return true;
+			}
+			return false;
+		}
+	}
+}
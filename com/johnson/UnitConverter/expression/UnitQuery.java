@@ -0,0 +1,263 @@
+package com.johnson.UnitConverter.expression;
+
+import com.johnson.UnitConverter.Converter;
+import com.johnson.UnitConverter.DecimalFormatter;
+import com.johnson.UnitConverter.Measurement;
+import com.johnson.UnitConverter.MeasurementCatalog;
+import com.johnson.UnitConverter.MeasurementFactory;
+
+//
+// Answers free text queries, like "12.5 mi in km" or "98.6 f to c".
+//   A query is an optional value, the units to convert from, a word
+//   or symbol saying where to, and the units to convert to:
+//
+//   query := ['convert'] [number] units ('in' | 'to' | 'into' | 'as' | '->' | '=') units
+//
+//   The units are any expression UnitExpressionCompiler compiles, like
+//   km/h or square feet, the value is 1 if it is left out. The last
+//   separator is the one used, so "5 in in cm" converts inches.
+//   The plan of a query, its conversion and how to show the result, is
+//   kept in a bounded LRU cache keyed by the units with the spaces
+//   between their words evened out, so "12.5 mi in km" and "3  mi in
+//   km" share one plan. Like the compiler's caches, it starts again
+//   empty when the factory's catalog changes.
+//
+public class UnitQuery
+{
+	public static final int DEFAULT_CACHE_SIZE = UnitExpressionCompiler.DEFAULT_CACHE_SIZE;
+
+	private static final String CONVERT_WORD = "convert";
+	private static final String[] SEPARATORS = { "in", "to", "into", "as", "->", "=" };
+	private static final String PAIR_SEPARATOR = "\u0000";
+
+	// Compound units, which have no measurement to take it from
+	private static final int DEFAULT_DECIMALS = 4;
+
+	private final MeasurementFactory factory;
+	private final UnitExpressionCompiler compiler;
+	private final int cacheSize;
+	private volatile Plans plans;
+
+	//
+	// What a query converts, once it has been resolved
+	//
+	static final class Plan
+	{
+		final String from;
+		final String to;
+		final Converter converter;
+		final DecimalFormatter formatter;
+
+		Plan(final String from, String to, Converter converter, DecimalFormatter formatter)
+		{
+			this.from = from;
+			this.to = to;
+			this.converter = converter;
+			this.formatter = formatter;
+		}
+	}
+
+	// The plans resolved against one catalog snapshot
+	private static final class Plans
+	{
+		final MeasurementCatalog catalog;
+		final StripedLruCache<String, Plan> cache;
+
+		Plans(final MeasurementCatalog catalog, int cacheSize)
+		{
+			this.catalog = catalog;
+			this.cache = new StripedLruCache<String, Plan>(cacheSize);
+		}
+	}
+
+	public UnitQuery(final MeasurementFactory factory)
+	{
+		this(factory, DEFAULT_CACHE_SIZE);
+	}
+
+	// The compiler used has caches of the same size
+	public UnitQuery(final MeasurementFactory factory, int cacheSize)
+	{
+		this.factory = factory;
+		this.compiler = new UnitExpressionCompiler(factory, cacheSize);
+		this.cacheSize = cacheSize;
+	}
+
+	public UnitExpressionCompiler getCompiler()
+	{
+		return compiler;
+	}
+
+	//
+	// Converts the query, throwing an IllegalArgumentException if it can
+	// not be understood or its units do not measure the same thing.
+	//
+	public QueryResult query(final String text)
+	{
+		String query = text.trim();
+		while(query.endsWith("?") || query.endsWith("."))
+		{
+			query = query.substring(0, query.length() - 1).trim();
+		}
+
+		String[] words = query.replace("->", " -> ").replace("=", " = ").split("\\s+");
+		int first = 0;
+		if(words.length > 0 && words[0].equalsIgnoreCase(CONVERT_WORD))
+		{
+			first++;
+		}
+
+		// The value, which may be stuck to the units like 12.5mi
+		double value = 1.0;
+		String valueText = null;
+		if(first < words.length)
+		{
+			int end = numberEnd(words[first]);
+			if(end > 0)
+			{
+				valueText = words[first].substring(0, end);
+				value = parseValue(valueText, text);
+				if(end < words[first].length())
+				{
+					words[first] = words[first].substring(end);
+				}
+				else
+				{
+					first++;
+				}
+			}
+		}
+
+		int separator = -1;
+		for(int i = words.length - 2; i > first && separator < 0; i--)
+		{
+			if(isSeparator(words[i]))
+			{
+				separator = i;
+			}
+		}
+		if(separator < 0)
+		{
+			throw new IllegalArgumentException("Expected a query like \"12.5 mi in km\": " + text);
+		}
+
+		Plan plan = plan(join(words, first, separator), join(words, separator + 1, words.length));
+		return new QueryResult(value, (valueText != null) ? valueText : "1", plan.converter.convert(value),
+				plan.from, plan.to, plan.formatter);
+	}
+
+	// The resolved plan for the units, from the cache if they were seen before
+	Plan plan(final String from, String to)
+	{
+		Plans p = currentPlans();
+		String key = from + PAIR_SEPARATOR + to;
+		Plan plan = p.cache.get(key);
+		if(plan == null)
+		{
+			UnitExpression fromExpression = compiler.compile(from);
+			UnitExpression toExpression = compiler.compile(to);
+			Measurement m = toExpression.getMeasurement();
+			DecimalFormatter formatter = new DecimalFormatter((m != null) ? m.getDecimalPlaces() : DEFAULT_DECIMALS);
+			plan = p.cache.putIfAbsent(key,
+					new Plan(from, to, fromExpression.converterTo(toExpression), formatter));
+		}
+		return plan;
+	}
+
+	private Plans currentPlans()
+	{
+		Plans p = plans;
+		MeasurementCatalog catalog = factory.getCatalog();
+		if(p == null || p.catalog != catalog)
+		{
+			// Losing a race only costs resolving a few plans again
+			p = new Plans(catalog, cacheSize);
+			plans = p;
+		}
+		return p;
+	}
+
+	private static boolean isSeparator(final String word)
+	{
+		for(String separator : SEPARATORS)
+		{
+			if(separator.equalsIgnoreCase(word))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Where the number at the start of the word ends, 0 if it does not start with one
+	private static int numberEnd(final String word)
+	{
+		int i = 0;
+		int n = word.length();
+		if(i < n && (word.charAt(i) == '-' || word.charAt(i) == '+'))
+		{
+			i++;
+		}
+
+		int digits = 0;
+		while(i < n && (Character.isDigit(word.charAt(i)) || word.charAt(i) == '.' ||
+				(word.charAt(i) == ',' && digits > 0)))
+		{
+			if(Character.isDigit(word.charAt(i)))
+			{
+				digits++;
+			}
+			i++;
+		}
+		if(digits == 0)
+		{
+			return 0;
+		}
+
+		// An exponent, but not the e of a unit
+		if(i + 1 < n && (word.charAt(i) == 'e' || word.charAt(i) == 'E'))
+		{
+			int e = i + 1;
+			if(word.charAt(e) == '-' || word.charAt(e) == '+')
+			{
+				e++;
+			}
+			if(e < n && Character.isDigit(word.charAt(e)))
+			{
+				i = e;
+				while(i < n && Character.isDigit(word.charAt(i)))
+				{
+					i++;
+				}
+			}
+		}
+		return i;
+	}
+
+	private static double parseValue(final String valueText, String text)
+	{
+		try
+		{
+			// Thousands separators, like 1,000
+			return Double.parseDouble(valueText.replace(",", ""));
+		}
+		catch(NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid value " + valueText + " in: " + text);
+		}
+	}
+
+	private static String join(final String[] words, int start, int end)
+	{
+		StringBuilder buf = new StringBuilder();
+		for(int i = start; i < end; i++)
+		{
+			if(buf.length() > 0)
+			{
+				buf.append(' ');
+			}
+			buf.append(words[i]);
+		}
+		return buf.toString();
+	}
+}
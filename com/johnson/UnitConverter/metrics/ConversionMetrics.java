@@ -0,0 +1,311 @@
+package com.johnson.UnitConverter.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.johnson.UnitConverter.Converter;
+
+//
+// Counts the conversions of every measurement and pair of units, and
+// times the slow things: loading the catalog, creating measurements and
+// fetching exchange rates. Turned on with -Dunitconverter.metrics=true,
+// see MetricsSwitch, when MeasurementFactory.load() registers it with the
+// platform MBean server for JConsole, VisualVM or any other JMX client.
+//   Measurement counts through its converter table, per pair of units,
+//   and MeasurementUnit counts its own conversions to and from the
+//   reference unit, per unit name. Each value converted is one LongAdder
+//   increment, which stays cheap however many threads are converting, and
+//   a bulk conversion adds its length once. When it is off this class is
+//   not even loaded and the converters are built exactly as before.
+//
+public final class ConversionMetrics implements ConversionMetricsMXBean
+{
+	public static final String OBJECT_NAME = "com.johnson.UnitConverter:type=ConversionMetrics";
+
+	// The latencies recorded
+	public static final String LATENCY_CATALOG_LOAD = "catalog load";
+	public static final String LATENCY_CREATE = "create ";
+	public static final String LATENCY_BULK_CONVERSION = "bulk conversion ";
+	public static final String LATENCY_CURRENCY_FETCH = "currency fetch";
+	public static final String LATENCY_RATE_TABLE_FETCH = "exchange rate table fetch";
+
+	// The events counted
+	public static final String EVENT_CURRENCY_FETCH = "currency fetch ";
+	public static final String EVENT_CURRENCY_FETCH_FAILED = "currency fetch failed ";
+	public static final String EVENT_RATE_TABLE_FETCH_FAILED = "exchange rate table fetch failed";
+
+	private static final String KEY_SEPARATOR = "\u0000";
+
+	private static final ConversionMetrics INSTANCE = new ConversionMetrics();
+
+	// The count of one pair of units, kept across new versions of the
+	// measurement, like the currencies with new exchange rates
+	private static final class PairCount
+	{
+		final String measurement;
+		final String from;
+		final String to;
+		final LongAdder count;
+
+		PairCount(final String measurement, String from, String to)
+		{
+			this.measurement = measurement;
+			this.from = from;
+			this.to = to;
+			this.count = new LongAdder();
+		}
+	}
+
+	//
+	// The conversions of a unit to and from the reference unit of its
+	// measurement. A unit does not know its measurement, so these are kept
+	// by the name of the unit, which every version of it shares.
+	//
+	public static final class UnitCounts
+	{
+		private final LongAdder toReference = new LongAdder();
+		private final LongAdder fromReference = new LongAdder();
+
+		public void toReference(long values)
+		{
+			toReference.add(values);
+		}
+
+		public void fromReference(long values)
+		{
+			fromReference.add(values);
+		}
+	}
+
+	private final ConcurrentHashMap<String, PairCount> pairs;
+	private final ConcurrentHashMap<String, UnitCounts> units;
+	private final ConcurrentHashMap<String, LongAdder> events;
+	private final ConcurrentHashMap<String, LatencyHistogram> latencies;
+	private boolean registered;
+
+	private ConversionMetrics()
+	{
+		this.pairs = new ConcurrentHashMap<String, PairCount>();
+		this.units = new ConcurrentHashMap<String, UnitCounts>();
+		this.events = new ConcurrentHashMap<String, LongAdder>();
+		this.latencies = new ConcurrentHashMap<String, LatencyHistogram>();
+	}
+
+	public static ConversionMetrics instance()
+	{
+		return INSTANCE;
+	}
+
+	//
+	// The converter between the units of a measurement, counting each value
+	// it converts. A bulk conversion is also timed, for the measurement.
+	//
+	public Converter counted(final String measurement, String from, String to, Converter converter)
+	{
+		String key = measurement + KEY_SEPARATOR + from + KEY_SEPARATOR + to;
+		PairCount pair = pairs.get(key);
+		if(pair == null)
+		{
+			PairCount created = new PairCount(measurement, from, to);
+			pair = pairs.putIfAbsent(key, created);
+			if(pair == null)
+			{
+				pair = created;
+			}
+		}
+		return Converter.counted(converter, pair.count, latency(LATENCY_BULK_CONVERSION + measurement));
+	}
+
+	// The counts of the unit with the name, created the first time
+	public UnitCounts unitCounts(final String unitName)
+	{
+		UnitCounts counts = units.get(unitName);
+		if(counts == null)
+		{
+			UnitCounts created = new UnitCounts();
+			counts = units.putIfAbsent(unitName, created);
+			if(counts == null)
+			{
+				counts = created;
+			}
+		}
+		return counts;
+	}
+
+	// The histogram of the latency with the name, created the first time
+	public LatencyHistogram latency(final String name)
+	{
+		LatencyHistogram histogram = latencies.get(name);
+		if(histogram == null)
+		{
+			LatencyHistogram created = new LatencyHistogram();
+			histogram = latencies.putIfAbsent(name, created);
+			if(histogram == null)
+			{
+				histogram = created;
+			}
+		}
+		return histogram;
+	}
+
+	// Counts one more of the event
+	public void count(final String event)
+	{
+		LongAdder count = events.get(event);
+		if(count == null)
+		{
+			LongAdder created = new LongAdder();
+			count = events.putIfAbsent(event, created);
+			if(count == null)
+			{
+				count = created;
+			}
+		}
+		count.increment();
+	}
+
+	//
+	// Registers with the platform MBean server, once. Metrics that can not
+	// be registered are still kept, they are just not visible over JMX.
+	//
+	public synchronized void register()
+	{
+		if(!registered)
+		{
+			registered = Registration.register(this);
+		}
+	}
+
+	// Kept apart so the JMX classes are only loaded when it is registered
+	private static final class Registration
+	{
+		static boolean register(final ConversionMetrics metrics)
+		{
+			try
+			{
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName name = new ObjectName(OBJECT_NAME);
+				if(!server.isRegistered(name))
+				{
+					server.registerMBean(metrics, name);
+				}
+				return true;
+			}
+			catch(JMException e)
+			{
+				System.err.println("Unable to register the conversion metrics: " + e.getMessage());
+				return false;
+			}
+		}
+	}
+
+	public long getConversions()
+	{
+		long total = 0;
+		for(PairCount pair : pairs.values())
+		{
+			total += pair.count.sum();
+		}
+		for(UnitCounts counts : units.values())
+		{
+			total += counts.toReference.sum() + counts.fromReference.sum();
+		}
+		return total;
+	}
+
+	public Map<String, Long> getConversionsByMeasurement()
+	{
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for(PairCount pair : pairs.values())
+		{
+			Long count = counts.get(pair.measurement);
+			counts.put(pair.measurement, (count == null ? 0 : count) + pair.count.sum());
+		}
+		return counts;
+	}
+
+	// Only the pairs that have been converted, of the hundreds there are
+	public Map<String, Long> getConversionsByUnitPair()
+	{
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for(PairCount pair : pairs.values())
+		{
+			long count = pair.count.sum();
+			if(count > 0)
+			{
+				counts.put(pair.measurement + ": " + pair.from + " -> " + pair.to, count);
+			}
+		}
+		return counts;
+	}
+
+	public Map<String, Long> getConversionsByUnit()
+	{
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for(Map.Entry<String, UnitCounts> e : units.entrySet())
+		{
+			long toReference = e.getValue().toReference.sum();
+			long fromReference = e.getValue().fromReference.sum();
+			if(toReference > 0)
+			{
+				counts.put(e.getKey() + " -> reference", toReference);
+			}
+			if(fromReference > 0)
+			{
+				counts.put("reference -> " + e.getKey(), fromReference);
+			}
+		}
+		return counts;
+	}
+
+	public Map<String, Long> getEvents()
+	{
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for(Map.Entry<String, LongAdder> e : events.entrySet())
+		{
+			counts.put(e.getKey(), e.getValue().sum());
+		}
+		return counts;
+	}
+
+	public Map<String, LatencySummary> getLatencies()
+	{
+		Map<String, LatencySummary> summaries = new TreeMap<String, LatencySummary>();
+		for(Map.Entry<String, LatencyHistogram> e : latencies.entrySet())
+		{
+			if(e.getValue().getCount() > 0)
+			{
+				summaries.put(e.getKey(), e.getValue().getSummary());
+			}
+		}
+		return summaries;
+	}
+
+	public void reset()
+	{
+		for(PairCount pair : pairs.values())
+		{
+			pair.count.reset();
+		}
+		for(UnitCounts counts : units.values())
+		{
+			counts.toReference.reset();
+			counts.fromReference.reset();
+		}
+		for(LongAdder count : events.values())
+		{
+			count.reset();
+		}
+		for(LatencyHistogram histogram : latencies.values())
+		{
+			histogram.reset();
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package com.johnson.UnitConverter.metrics;
+
+import java.util.Map;
+
+//
+// The conversion metrics as JMX shows them, registered as
+// com.johnson.UnitConverter:type=ConversionMetrics
+//
+public interface ConversionMetricsMXBean
+{
+	// Every value converted through a measurement's converters or a unit
+	long getConversions();
+
+	// The conversions of each measurement, like "Length"
+	Map<String, Long> getConversionsByMeasurement();
+
+	// The conversions of each pair of units, like "Length: foot -> meter"
+	Map<String, Long> getConversionsByUnitPair();
+
+	// The conversions straight through a unit, to or from the reference
+	// unit of its measurement, like "foot -> reference"
+	Map<String, Long> getConversionsByUnit();
+
+	// How many times other things happened, like "currency fetch USD -> EUR"
+	Map<String, Long> getEvents();
+
+	// How long things took, like "catalog load" or "currency fetch"
+	Map<String, LatencySummary> getLatencies();
+
+	// Starts all the counts and latencies again from zero
+	void reset();
+}
@@ -0,0 +1,146 @@
+package com.johnson.UnitConverter.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+//
+// Counts how long something took in buckets of nanoseconds, four to each
+// power of two, so a percentile is read to within a quarter of its value.
+//   Recording is a few atomic adds, with no locks and no allocation, so
+//   any thread can record at any time. The buckets cover everything from
+//   a nanosecond to the longest a long can hold, in 248 counts.
+//
+public final class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+		public long applyAsLong(long a, long b)
+		{
+			return Math.max(a, b);
+		}
+	};
+
+	private final AtomicLongArray buckets;
+	private final LongAdder count;
+	private final LongAdder totalNanos;
+	private final LongAccumulator maxNanos;
+
+	public LatencyHistogram()
+	{
+		this.buckets = new AtomicLongArray(BUCKETS);
+		this.count = new LongAdder();
+		this.totalNanos = new LongAdder();
+		this.maxNanos = new LongAccumulator(MAX, 0);
+	}
+
+	public void record(long nanos)
+	{
+		if(nanos < 0)
+		{
+			nanos = 0;
+		}
+		buckets.incrementAndGet(bucket(nanos));
+		count.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+	}
+
+	// Records the time since start, a System.nanoTime()
+	public void recordSince(long start)
+	{
+		record(System.nanoTime() - start);
+	}
+
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	//
+	// The count, mean, percentiles and max so far. Values recorded while
+	// it is being taken may or may not be in it.
+	//
+	public LatencySummary getSummary()
+	{
+		long[] counts = new long[BUCKETS];
+		long n = 0;
+		for(int i = 0; i < BUCKETS; i++)
+		{
+			counts[i] = buckets.get(i);
+			n += counts[i];
+		}
+
+		long max = maxNanos.get();
+		double mean = (n == 0) ? 0.0 : (double) totalNanos.sum() / n;
+		return new LatencySummary(n, mean, percentile(counts, n, 0.50, max),
+				percentile(counts, n, 0.90, max), percentile(counts, n, 0.99, max), max);
+	}
+
+	public void reset()
+	{
+		for(int i = 0; i < BUCKETS; i++)
+		{
+			buckets.set(i, 0);
+		}
+		count.reset();
+		totalNanos.reset();
+		maxNanos.reset();
+	}
+
+	// The top of the bucket the percentile falls in, but never over the max
+	private static long percentile(final long[] counts, long n, double fraction, long max)
+	{
+		if(n == 0)
+		{
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(fraction * n);
+		long seen = 0;
+		for(int i = 0; i < counts.length; i++)
+		{
+			seen += counts[i];
+			if(seen >= rank)
+			{
+				return Math.min(upperBound(i), max);
+			}
+		}
+		return max;
+	}
+
+	// Below SUB_BUCKETS nanoseconds a bucket each, then SUB_BUCKETS
+	// buckets for each power of two, split by the bits after the top one
+	static int bucket(long nanos)
+	{
+		if(nanos < SUB_BUCKETS)
+		{
+			return (int) nanos;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long lowerBound(int bucket)
+	{
+		if(bucket < SUB_BUCKETS)
+		{
+			return bucket;
+		}
+
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long sub = bucket % SUB_BUCKETS;
+		return (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+	}
+
+	static long upperBound(int bucket)
+	{
+		return (bucket + 1 < BUCKETS) ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+	}
+}
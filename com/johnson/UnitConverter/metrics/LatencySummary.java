@@ -0,0 +1,74 @@
+package com.johnson.UnitConverter.metrics;
+
+import java.beans.ConstructorProperties;
+
+//
+// A LatencyHistogram at one moment, in milliseconds, which is how JMX
+// consoles show it. The percentiles are the top of their bucket.
+//
+public final class LatencySummary
+{
+	private static final double NANOS_PER_MILLI = 1e6;
+
+	private final long count;
+	private final double meanMillis;
+	private final double p50Millis;
+	private final double p90Millis;
+	private final double p99Millis;
+	private final double maxMillis;
+
+	LatencySummary(long count, double meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos)
+	{
+		this(count, meanNanos / NANOS_PER_MILLI, p50Nanos / NANOS_PER_MILLI, p90Nanos / NANOS_PER_MILLI,
+				p99Nanos / NANOS_PER_MILLI, maxNanos / NANOS_PER_MILLI);
+	}
+
+	// For JMX clients that rebuild it from its attributes
+	@ConstructorProperties({ "count", "meanMillis", "p50Millis", "p90Millis", "p99Millis", "maxMillis" })
+	public LatencySummary(long count, double meanMillis, double p50Millis, double p90Millis,
+			double p99Millis, double maxMillis)
+	{
+		this.count = count;
+		this.meanMillis = meanMillis;
+		this.p50Millis = p50Millis;
+		this.p90Millis = p90Millis;
+		this.p99Millis = p99Millis;
+		this.maxMillis = maxMillis;
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	public double getMeanMillis()
+	{
+		return meanMillis;
+	}
+
+	public double getP50Millis()
+	{
+		return p50Millis;
+	}
+
+	public double getP90Millis()
+	{
+		return p90Millis;
+	}
+
+	public double getP99Millis()
+	{
+		return p99Millis;
+	}
+
+	public double getMaxMillis()
+	{
+		return maxMillis;
+	}
+
+	public String toString()
+	{
+		return String.format("count %d, mean %.3f ms, p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms",
+				count, meanMillis, p50Millis, p90Millis, p99Millis, maxMillis);
+	}
+}
@@ -0,0 +1,17 @@
+package com.johnson.UnitConverter.metrics;
+
+//
+// Whether the conversion metrics are on, set with -Dunitconverter.metrics=true.
+//   Kept apart from ConversionMetrics so checking it does not load and set
+//   up the metrics when they are off. ENABLED is a static final, so the JIT
+//   removes the checks of it.
+//
+public final class MetricsSwitch
+{
+	public static final String ENABLED_PROPERTY = "unitconverter.metrics";
+	public static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+	private MetricsSwitch()
+	{
+	}
+}
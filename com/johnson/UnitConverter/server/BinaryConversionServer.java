@@ -0,0 +1,494 @@
+package com.johnson.UnitConverter.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.johnson.UnitConverter.Converter;
+import com.johnson.UnitConverter.Measurement;
+import com.johnson.UnitConverter.MeasurementFactory;
+import com.johnson.UnitConverter.UnitFlag;
+
+//
+// Serves conversions with a compact binary protocol over TCP and Unix
+// domain sockets, for callers that convert so often that the HTTP and
+// text framing of the ConversionServer would cost more than the conversion.
+//
+// Every frame, in both directions, is a big endian int with the number of
+// bytes that follow it, then an int, then the payload:
+//
+//   request   length | pair id | float64 values...
+//   response  length | pair id | float64 converted values...
+//
+// A pair id stands for a "from unit to unit" conversion, and is looked up
+// once per connection, or once ever, since ids do not change while the
+// server runs:
+//
+//   request   length | LOOKUP  | UTF-8 "ft in", the unit flags as on the command line
+//   response  length | pair id
+//
+// Errors come back as a negative status with a UTF-8 message as the payload:
+//
+//   response  length | ERROR_UNKNOWN_PAIR or ERROR_BAD_REQUEST | message
+//
+// A frame can carry any number of values up to MAX_FRAME_SIZE, and any
+// number of frames can be sent without waiting for the responses, which
+// come back in the same order. Values that are unavailable, like a currency
+// without an exchange rate, come back as NaN.
+//
+// The frames are converted straight from the direct read buffer into the
+// direct write buffer by one selector thread, which serves every connection:
+// a conversion costs nanoseconds, so there is nothing to gain from handing
+// it to another thread.
+//
+public class BinaryConversionServer
+{
+	public static final int DEFAULT_PORT = 8081;
+
+	public static final int LOOKUP = -1;
+	public static final int ERROR_UNKNOWN_PAIR = -2;
+	public static final int ERROR_BAD_REQUEST = -3;
+
+	// Including the pair id, so 131071 values
+	public static final int MAX_FRAME_SIZE = 1 << 20;
+
+	private static final int HEADER_SIZE = 8;
+	private static final int INITIAL_BUFFER_SIZE = 64 << 10;
+
+	// Room for an error message
+	private static final int MIN_RESPONSE_SIZE = HEADER_SIZE + 256;
+
+	// A unit pair, with the converter of the measurement it was last built from
+	private static class Pair
+	{
+		final UnitFlag fromUnit;
+		final UnitFlag toUnit;
+		Measurement measurement;
+		Converter converter;
+
+		Pair(final UnitFlag fromUnit, UnitFlag toUnit)
+		{
+			this.fromUnit = fromUnit;
+			this.toUnit = toUnit;
+		}
+	}
+
+	private static class Connection
+	{
+		final SocketChannel channel;
+		// Both in fill mode, in holds what has been read and not yet converted,
+		// out holds the responses not yet written
+		ByteBuffer in;
+		ByteBuffer out;
+		boolean closing;
+
+		Connection(final SocketChannel channel)
+		{
+			this.channel = channel;
+			this.in = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+			this.out = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+		}
+	}
+
+	private final MeasurementFactory factory;
+	private final Selector selector;
+	private final List<ServerSocketChannel> listeners;
+	private final Thread thread;
+
+	// Only used on the selector thread, so not synchronized
+	private final Map<String, Integer> pairIds;
+	private final List<Pair> pairs;
+
+	private Path unixPath;
+	private int port;
+	private volatile boolean stopped;
+
+	public BinaryConversionServer(final MeasurementFactory factory) throws IOException
+	{
+		this.factory = factory;
+		this.selector = Selector.open();
+		this.listeners = new ArrayList<ServerSocketChannel>();
+		this.pairIds = new HashMap<String, Integer>();
+		this.pairs = new ArrayList<Pair>();
+		this.port = -1;
+		this.thread = new Thread(new Runnable() {
+			public void run()
+			{
+				serve();
+			}
+		}, "binary-conversion");
+	}
+
+	// Listens on the TCP port, 0 picks a free one
+	public void listen(int port) throws IOException
+	{
+		ServerSocketChannel listener = ServerSocketChannel.open();
+		listener.bind(new InetSocketAddress(port));
+		addListener(listener);
+		this.port = ((InetSocketAddress) listener.getLocalAddress()).getPort();
+	}
+
+	//
+	// Listens on a Unix domain socket file, which is removed again when the
+	// server stops or the JVM exits. A file left behind by a server that was
+	// killed is replaced.
+	//
+	public void listen(final Path path) throws IOException
+	{
+		Files.deleteIfExists(path);
+		ServerSocketChannel listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		listener.bind(UnixDomainSocketAddress.of(path));
+		path.toFile().deleteOnExit();
+		addListener(listener);
+		this.unixPath = path;
+	}
+
+	private void addListener(final ServerSocketChannel listener) throws IOException
+	{
+		listener.configureBlocking(false);
+		listener.register(selector, SelectionKey.OP_ACCEPT);
+		listeners.add(listener);
+	}
+
+	// The TCP port, or -1 if not listening on one
+	public int getPort()
+	{
+		return port;
+	}
+
+	public void start()
+	{
+		thread.start();
+	}
+
+	// Closes the listeners and every connection
+	public void stop() throws InterruptedException
+	{
+		stopped = true;
+		selector.wakeup();
+		thread.join();
+	}
+
+	private void serve()
+	{
+		try
+		{
+			while(!stopped)
+			{
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext())
+				{
+					SelectionKey key = keys.next();
+					keys.remove();
+					try
+					{
+						if(key.isAcceptable())
+						{
+							accept((ServerSocketChannel) key.channel());
+						}
+						else
+						{
+							Connection conn = (Connection) key.attachment();
+							if(key.isReadable() && conn.channel.read(conn.in) < 0)
+							{
+								close(key, conn);
+							}
+							else if(!service(key, conn))
+							{
+								close(key, conn);
+							}
+						}
+					}
+					catch(IOException e)
+					{
+						// A client that went away, only that connection is affected
+						if(key.attachment() != null)
+						{
+							close(key, (Connection) key.attachment());
+						}
+					}
+				}
+			}
+		}
+		catch(IOException e)
+		{
+			System.err.println("Binary conversion server stopped: " + e.getMessage());
+		}
+		finally
+		{
+			closeAll();
+		}
+	}
+
+	private void closeAll()
+	{
+		for(SelectionKey key : selector.keys())
+		{
+			try
+			{
+				key.channel().close();
+			}
+			catch(IOException e)
+			{
+				// Already gone
+			}
+		}
+
+		try
+		{
+			selector.close();
+			if(unixPath != null)
+			{
+				Files.deleteIfExists(unixPath);
+			}
+		}
+		catch(IOException e)
+		{
+			System.err.println("Unable to close the binary conversion server: " + e.getMessage());
+		}
+	}
+
+	private void accept(final ServerSocketChannel listener) throws IOException
+	{
+		SocketChannel channel = listener.accept();
+		if(channel == null)
+		{
+			return;
+		}
+		channel.configureBlocking(false);
+		if(channel.getLocalAddress() instanceof InetSocketAddress)
+		{
+			// Responses are written whole, so there is nothing to gain from waiting
+			channel.socket().setTcpNoDelay(true);
+		}
+		channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+	}
+
+	private static void close(final SelectionKey key, Connection conn)
+	{
+		key.cancel();
+		try
+		{
+			conn.channel.close();
+		}
+		catch(IOException e)
+		{
+			// Already gone
+		}
+	}
+
+	//
+	// Converts what has been read and writes the responses. More requests are
+	// only read once all the responses are written, so a client that does not
+	// read its responses is held back instead of filling the server's memory.
+	// Returns false once the connection should be closed.
+	//
+	private boolean service(final SelectionKey key, Connection conn) throws IOException
+	{
+		while(true)
+		{
+			boolean heldBack = process(conn);
+
+			conn.out.flip();
+			conn.channel.write(conn.out);
+			conn.out.compact();
+
+			if(conn.out.position() > 0)
+			{
+				key.interestOps(SelectionKey.OP_WRITE);
+				return true;
+			}
+			if(conn.closing)
+			{
+				return false;
+			}
+			if(!heldBack)
+			{
+				key.interestOps(SelectionKey.OP_READ);
+				return true;
+			}
+		}
+	}
+
+	//
+	// Converts every whole frame read so far, as far as there is room for the
+	// responses. Returns true if frames were held back for lack of room.
+	//
+	private boolean process(final Connection conn)
+	{
+		ByteBuffer in = conn.in;
+		boolean heldBack = false;
+		int frameNeeded = 0;
+		in.flip();
+
+		while(!conn.closing && in.remaining() >= HEADER_SIZE)
+		{
+			int start = in.position();
+			int length = in.getInt(start);
+			boolean valid = (length >= 4 && length <= MAX_FRAME_SIZE);
+			int frameSize = 4 + length;
+			if(valid && in.remaining() < frameSize)
+			{
+				frameNeeded = frameSize;
+				break;
+			}
+
+			// A response is never longer than the request, or an error message
+			int responseSize = valid ? Math.max(frameSize, MIN_RESPONSE_SIZE) : MIN_RESPONSE_SIZE;
+			if(conn.out.remaining() < responseSize)
+			{
+				if(conn.out.position() > 0)
+				{
+					heldBack = true;
+					break;
+				}
+				conn.out = grow(conn.out, responseSize);
+			}
+
+			if(!valid)
+			{
+				// The stream can not be trusted after this, so give up on it
+				respondError(conn, ERROR_BAD_REQUEST, "Invalid frame length: " + length);
+				conn.closing = true;
+				break;
+			}
+
+			int pairId = in.getInt(start + 4);
+			ByteBuffer payload = in.duplicate();
+			payload.position(start + HEADER_SIZE).limit(start + frameSize);
+			if(pairId == LOOKUP)
+			{
+				lookup(conn, payload);
+			}
+			else
+			{
+				convert(conn, pairId, payload);
+			}
+			in.position(start + frameSize);
+		}
+
+		in.compact();
+		if(in.capacity() < frameNeeded)
+		{
+			conn.in = grow(in, frameNeeded);
+		}
+		return heldBack;
+	}
+
+	// A bigger buffer in fill mode, with the same contents
+	private static ByteBuffer grow(final ByteBuffer buf, int capacity)
+	{
+		ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(capacity, buf.capacity() * 2));
+		buf.flip();
+		bigger.put(buf);
+		return bigger;
+	}
+
+	private void convert(final Connection conn, int pairId, ByteBuffer payload)
+	{
+		Pair pair = (pairId >= 0 && pairId < pairs.size()) ? pairs.get(pairId) : null;
+		if(pair == null)
+		{
+			respondError(conn, ERROR_UNKNOWN_PAIR, "Unknown pair id: " + pairId);
+			return;
+		}
+		if((payload.remaining() & 7) != 0)
+		{
+			respondError(conn, ERROR_BAD_REQUEST, "The payload is not a whole number of float64 values");
+			return;
+		}
+
+		ByteBuffer out = conn.out;
+		out.putInt(payload.remaining() + 4).putInt(pairId);
+
+		DoubleBuffer src = payload.asDoubleBuffer();
+		DoubleBuffer dst = out.asDoubleBuffer();
+		converter(pair).convert(src, dst);
+		out.position(out.position() + dst.position() * 8);
+	}
+
+	//
+	// The converter of the current measurement, rebuilt when the
+	// measurement is refreshed, like the currencies with new rates
+	//
+	private Converter converter(final Pair pair)
+	{
+		String measurementType = pair.fromUnit.getMeasurementType();
+		Measurement m = factory.getCatalog().getMeasurement(measurementType);
+		if(m == null)
+		{
+			m = factory.getMeasurement(measurementType);
+		}
+		if(m != pair.measurement)
+		{
+			pair.converter = m.converter(pair.fromUnit.getUnitName(), pair.toUnit.getUnitName());
+			pair.measurement = m;
+		}
+		return pair.converter;
+	}
+
+	private void lookup(final Connection conn, ByteBuffer payload)
+	{
+		byte[] bytes = new byte[payload.remaining()];
+		payload.get(bytes);
+		String[] flags = new String(bytes, StandardCharsets.UTF_8).trim().split("\\s+");
+		if(flags.length != 2)
+		{
+			respondError(conn, ERROR_BAD_REQUEST, "Needs a from and a to unit");
+			return;
+		}
+
+		UnitFlag fromUnit = findUnit(flags[0]);
+		UnitFlag toUnit = findUnit(flags[1]);
+		if(fromUnit == null || toUnit == null)
+		{
+			respondError(conn, ERROR_BAD_REQUEST, "Unknown unit: " + ((fromUnit == null) ? flags[0] : flags[1]));
+			return;
+		}
+		if(!fromUnit.getMeasurementType().equals(toUnit.getMeasurementType()))
+		{
+			respondError(conn, ERROR_BAD_REQUEST,
+					"Cannot convert " + fromUnit.getUnitName() + " to " + toUnit.getUnitName());
+			return;
+		}
+
+		String key = fromUnit.getFlag() + " " + toUnit.getFlag();
+		Integer pairId = pairIds.get(key);
+		if(pairId == null)
+		{
+			pairId = pairs.size();
+			pairs.add(new Pair(fromUnit, toUnit));
+			pairIds.put(key, pairId);
+		}
+
+		conn.out.putInt(4).putInt(pairId);
+	}
+
+	private UnitFlag findUnit(final String flag)
+	{
+		return factory.getCatalog().getUnitFlag(flag.startsWith("-") ? flag : "-" + flag);
+	}
+
+	private static void respondError(final Connection conn, int status, String message)
+	{
+		byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+		int length = Math.min(bytes.length, conn.out.remaining() - HEADER_SIZE);
+		conn.out.putInt(length + 4).putInt(status).put(bytes, 0, length);
+	}
+}
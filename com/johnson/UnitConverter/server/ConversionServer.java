@@ -0,0 +1,576 @@
+package com.johnson.UnitConverter.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import com.johnson.UnitConverter.Converter;
+import com.johnson.UnitConverter.Measurement;
+import com.johnson.UnitConverter.MeasurementCatalog;
+import com.johnson.UnitConverter.MeasurementFactory;
+import com.johnson.UnitConverter.UnitFlag;
+import com.johnson.UnitConverter.expression.QueryResult;
+import com.johnson.UnitConverter.expression.UnitQuery;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+//
+// Serves conversions over HTTP, so other services do not have to start
+// a JVM for every conversion. Units are given by their command line flag,
+// with or without the dash.
+//
+//   GET  /convert?from=ft&to=in&value=3
+//        {"from":"foot","to":"inch","value":3.0,"result":36.0}
+//   GET  /convert?from=c&value=100
+//        every unit of the measurement:
+//        {"from":"celsius","value":100.0,"results":{"celsius":100.0,"fahrenheit":212.0,"kelvin":373.15}}
+//   POST /convert/batch  [{"from":"ft","to":"in","value":3},{"from":"c","to":"f","value":100}]
+//        [{"result":36.0},{"result":212.0}], or {"error":"..."} for a bad element
+//   GET  /query?q=12.5+mi+in+km
+//        a free text query, see UnitQuery:
+//        {"from":"mi","to":"km","value":12.5,"result":20.1168,"text":"12.5 mi = 20.1168 km"}
+//
+// Results are plain JSON numbers, or null when a value is unavailable,
+// like a currency without an exchange rate.
+// Requests are handled on virtual threads when the JVM has them, otherwise
+// on a fixed pool. At most maxConcurrent requests are converted at once,
+// any more get a 503 straight away instead of queuing up behind them.
+// Connections are kept alive between requests.
+//
+public class ConversionServer
+{
+	public static final String CONVERT_PATH = "/convert";
+	public static final String BATCH_PATH = "/convert/batch";
+	public static final String QUERY_PATH = "/query";
+
+	public static final int DEFAULT_PORT = 8080;
+	public static final int DEFAULT_MAX_CONCURRENT = 256;
+	public static final int MAX_BODY_SIZE = 4 << 20;
+
+	private static final String JSON_TYPE = "application/json; charset=utf-8";
+
+	// Read by the JDK server when its first instance is created
+	private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+	private final MeasurementFactory factory;
+	private final UnitQuery queries;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Semaphore permits;
+
+	public ConversionServer(final MeasurementFactory factory, int port, int maxConcurrent) throws IOException
+	{
+		if(maxConcurrent < 1)
+		{
+			throw new IllegalArgumentException("Invalid concurrency limit: " + maxConcurrent);
+		}
+
+		// The headers and the body are written separately, so without this
+		// every response waits for the client's delayed ACK, about 40ms
+		if(System.getProperty(NO_DELAY_PROPERTY) == null)
+		{
+			System.setProperty(NO_DELAY_PROPERTY, "true");
+		}
+
+		this.factory = factory;
+		this.queries = new UnitQuery(factory);
+		this.permits = new Semaphore(maxConcurrent);
+		this.executor = newExecutor(maxConcurrent);
+		this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		this.server.createContext(CONVERT_PATH, new LimitedHandler(new ConvertHandler()));
+		this.server.createContext(BATCH_PATH, new LimitedHandler(new BatchHandler()));
+		this.server.createContext(QUERY_PATH, new LimitedHandler(new QueryHandler()));
+		this.server.setExecutor(executor);
+	}
+
+	public void start()
+	{
+		server.start();
+	}
+
+	// Waits up to delaySeconds for the requests being handled to finish
+	public void stop(int delaySeconds)
+	{
+		server.stop(delaySeconds);
+		executor.shutdown();
+	}
+
+	public int getPort()
+	{
+		return server.getAddress().getPort();
+	}
+
+	//
+	// Each request mostly waits on the connection, so use virtual threads
+	// when the JVM has them (JDK 21+), otherwise enough platform threads
+	// for the concurrency limit.
+	//
+	private static ExecutorService newExecutor(int maxConcurrent)
+	{
+		try
+		{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(Exception e)
+		{
+			return Executors.newFixedThreadPool(maxConcurrent, new ThreadFactory() {
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "conversion");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+	}
+
+	//
+	// Turns requests away with a 503 when the limit is reached
+	//
+	private class LimitedHandler implements HttpHandler
+	{
+		private final HttpHandler handler;
+
+		LimitedHandler(final HttpHandler handler)
+		{
+			this.handler = handler;
+		}
+
+		public void handle(final HttpExchange exchange) throws IOException
+		{
+			if(!permits.tryAcquire())
+			{
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				send(exchange, 503, error("Too many concurrent requests"));
+				return;
+			}
+
+			try
+			{
+				handler.handle(exchange);
+			}
+			catch(RuntimeException e)
+			{
+				send(exchange, 500, error(String.valueOf(e.getMessage())));
+			}
+			finally
+			{
+				permits.release();
+			}
+		}
+	}
+
+	private class ConvertHandler implements HttpHandler
+	{
+		public void handle(final HttpExchange exchange) throws IOException
+		{
+			drain(exchange);
+			if(!"GET".equals(exchange.getRequestMethod()))
+			{
+				send(exchange, 405, error("Use GET"));
+				return;
+			}
+			if(!CONVERT_PATH.equals(exchange.getRequestURI().getPath()))
+			{
+				send(exchange, 404, error("Not found"));
+				return;
+			}
+
+			String from = null;
+			String to = null;
+			String value = null;
+			String query = exchange.getRequestURI().getRawQuery();
+			if(query != null)
+			{
+				for(String param : query.split("&"))
+				{
+					int eq = param.indexOf('=');
+					if(eq < 0)
+					{
+						continue;
+					}
+					String name = param.substring(0, eq);
+					String paramValue = URLDecoder.decode(param.substring(eq + 1), "UTF-8");
+					if("from".equals(name))
+					{
+						from = paramValue;
+					}
+					else if("to".equals(name))
+					{
+						to = paramValue;
+					}
+					else if("value".equals(name))
+					{
+						value = paramValue;
+					}
+				}
+			}
+
+			if(from == null || value == null)
+			{
+				send(exchange, 400, error("Needs from and value"));
+				return;
+			}
+
+			StringBuilder json = new StringBuilder(64);
+			String problem = (to == null) ?
+					convertAll(from, value, json) : convertOne(from, to, value, json);
+			if(problem != null)
+			{
+				send(exchange, 400, error(problem));
+				return;
+			}
+
+			send(exchange, 200, json);
+		}
+	}
+
+	private class BatchHandler implements HttpHandler
+	{
+		public void handle(final HttpExchange exchange) throws IOException
+		{
+			if(!"POST".equals(exchange.getRequestMethod()))
+			{
+				drain(exchange);
+				send(exchange, 405, error("Use POST"));
+				return;
+			}
+
+			String body = readBody(exchange);
+			if(body == null)
+			{
+				send(exchange, 413, error("The request is larger than " + MAX_BODY_SIZE + " bytes"));
+				return;
+			}
+
+			List<Map<String, Object>> requests;
+			try
+			{
+				requests = new JsonParser(body).parseObjectArray();
+			}
+			catch(IllegalArgumentException e)
+			{
+				send(exchange, 400, error("Invalid JSON: " + e.getMessage()));
+				return;
+			}
+
+			StringBuilder json = new StringBuilder(requests.size() * 24 + 2);
+			StringBuilder one = new StringBuilder(64);
+			json.append('[');
+			for(int i = 0; i < requests.size(); i++)
+			{
+				Map<String, Object> request = requests.get(i);
+				Object from = request.get("from");
+				Object to = request.get("to");
+				Object value = request.get("value");
+
+				if(i > 0)
+				{
+					json.append(',');
+				}
+
+				one.setLength(0);
+				String problem;
+				if(!(from instanceof String) || !(to instanceof String) || !(value instanceof Double))
+				{
+					problem = "Needs from, to and a numeric value";
+				}
+				else
+				{
+					problem = convert((String) from, (String) to, (Double) value, one);
+				}
+
+				if(problem != null)
+				{
+					appendError(json, problem);
+				}
+				else
+				{
+					json.append("{\"result\":").append(one).append('}');
+				}
+			}
+			json.append(']');
+
+			send(exchange, 200, json);
+		}
+	}
+
+	private class QueryHandler implements HttpHandler
+	{
+		public void handle(final HttpExchange exchange) throws IOException
+		{
+			drain(exchange);
+			if(!"GET".equals(exchange.getRequestMethod()))
+			{
+				send(exchange, 405, error("Use GET"));
+				return;
+			}
+			if(!QUERY_PATH.equals(exchange.getRequestURI().getPath()))
+			{
+				send(exchange, 404, error("Not found"));
+				return;
+			}
+
+			String text = null;
+			String query = exchange.getRequestURI().getRawQuery();
+			if(query != null)
+			{
+				for(String param : query.split("&"))
+				{
+					if(param.startsWith("q="))
+					{
+						text = URLDecoder.decode(param.substring(2), "UTF-8");
+					}
+				}
+			}
+			if(text == null)
+			{
+				send(exchange, 400, error("Needs q"));
+				return;
+			}
+
+			QueryResult result;
+			try
+			{
+				result = queries.query(text);
+			}
+			catch(IllegalArgumentException e)
+			{
+				send(exchange, 400, error(e.getMessage()));
+				return;
+			}
+
+			StringBuilder json = new StringBuilder(128);
+			json.append("{\"from\":");
+			appendString(json, result.getFrom());
+			json.append(",\"to\":");
+			appendString(json, result.getTo());
+			json.append(",\"value\":");
+			appendNumber(json, result.getValue());
+			json.append(",\"result\":");
+			appendNumber(json, result.getResult());
+			json.append(",\"text\":");
+			appendString(json, result.toString());
+			json.append('}');
+			send(exchange, 200, json);
+		}
+	}
+
+	// Appends {"from":..,"to":..,"value":..,"result":..}, or returns the problem
+	private String convertOne(final String from, String to, String value, StringBuilder json)
+	{
+		double v;
+		try
+		{
+			v = Double.parseDouble(value);
+		}
+		catch(NumberFormatException e)
+		{
+			return "Invalid value: " + value;
+		}
+
+		MeasurementCatalog catalog = factory.getCatalog();
+		UnitFlag fromUnit = findUnit(catalog, from);
+		UnitFlag toUnit = findUnit(catalog, to);
+		if(fromUnit == null || toUnit == null)
+		{
+			return "Unknown unit: " + ((fromUnit == null) ? from : to);
+		}
+
+		if(!fromUnit.getMeasurementType().equals(toUnit.getMeasurementType()))
+		{
+			return "Cannot convert " + fromUnit.getUnitName() + " to " + toUnit.getUnitName();
+		}
+
+		json.append("{\"from\":");
+		appendString(json, fromUnit.getUnitName());
+		json.append(",\"to\":");
+		appendString(json, toUnit.getUnitName());
+		json.append(",\"value\":");
+		appendNumber(json, v);
+		json.append(",\"result\":");
+		appendNumber(json, convert(fromUnit, toUnit, v));
+		json.append('}');
+		return null;
+	}
+
+	// Appends {"from":..,"value":..,"results":{unit:result,...}}, or returns the problem
+	private String convertAll(final String from, String value, StringBuilder json)
+	{
+		double v;
+		try
+		{
+			v = Double.parseDouble(value);
+		}
+		catch(NumberFormatException e)
+		{
+			return "Invalid value: " + value;
+		}
+
+		UnitFlag fromUnit = findUnit(factory.getCatalog(), from);
+		if(fromUnit == null)
+		{
+			return "Unknown unit: " + from;
+		}
+
+		Measurement m = factory.getMeasurement(fromUnit.getMeasurementType());
+		json.append("{\"from\":");
+		appendString(json, fromUnit.getUnitName());
+		json.append(",\"value\":");
+		appendNumber(json, v);
+		json.append(",\"results\":{");
+		boolean first = true;
+		for(String unitName : m.getMeasurementUnitNames())
+		{
+			if(!first)
+			{
+				json.append(',');
+			}
+			first = false;
+			appendString(json, unitName);
+			json.append(':');
+			appendNumber(json, m.converter(fromUnit.getUnitName(), unitName).convert(v));
+		}
+		json.append("}}");
+		return null;
+	}
+
+	// Appends just the converted number, or returns the problem
+	private String convert(final String from, String to, double value, StringBuilder json)
+	{
+		MeasurementCatalog catalog = factory.getCatalog();
+		UnitFlag fromUnit = findUnit(catalog, from);
+		UnitFlag toUnit = findUnit(catalog, to);
+		if(fromUnit == null || toUnit == null)
+		{
+			return "Unknown unit: " + ((fromUnit == null) ? from : to);
+		}
+		if(!fromUnit.getMeasurementType().equals(toUnit.getMeasurementType()))
+		{
+			return "Cannot convert " + fromUnit.getUnitName() + " to " + toUnit.getUnitName();
+		}
+
+		appendNumber(json, convert(fromUnit, toUnit, value));
+		return null;
+	}
+
+	// The units must be of the same measurement
+	private double convert(final UnitFlag fromUnit, UnitFlag toUnit, double value)
+	{
+		Converter converter = factory.getMeasurement(fromUnit.getMeasurementType())
+				.converter(fromUnit.getUnitName(), toUnit.getUnitName());
+		return converter.convert(value);
+	}
+
+	private static UnitFlag findUnit(final MeasurementCatalog catalog, String flag)
+	{
+		return catalog.getUnitFlag(flag.startsWith("-") ? flag : "-" + flag);
+	}
+
+	private static void appendNumber(final StringBuilder json, double value)
+	{
+		// JSON has no NaN or infinity
+		if(Double.isNaN(value) || Double.isInfinite(value))
+		{
+			json.append("null");
+		}
+		else
+		{
+			json.append(value);
+		}
+	}
+
+	private static void appendString(final StringBuilder json, String s)
+	{
+		json.append('"');
+		for(int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\')
+			{
+				json.append('\\').append(c);
+			}
+			else if(c < 0x20)
+			{
+				json.append(String.format("\\u%04x", (int) c));
+			}
+			else
+			{
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+
+	private static void appendError(final StringBuilder json, String message)
+	{
+		json.append("{\"error\":");
+		appendString(json, message);
+		json.append('}');
+	}
+
+	private static StringBuilder error(final String message)
+	{
+		StringBuilder json = new StringBuilder();
+		appendError(json, message);
+		return json;
+	}
+
+	// Returns null if the body is too big
+	private static String readBody(final HttpExchange exchange) throws IOException
+	{
+		InputStream in = exchange.getRequestBody();
+		byte[] buf = new byte[8192];
+		int length = 0;
+		int n;
+		while((n = in.read(buf, length, buf.length - length)) > 0)
+		{
+			length += n;
+			if(length == buf.length)
+			{
+				if(buf.length >= MAX_BODY_SIZE)
+				{
+					drain(exchange);
+					return null;
+				}
+				byte[] bigger = new byte[Math.min(buf.length * 2, MAX_BODY_SIZE)];
+				System.arraycopy(buf, 0, bigger, 0, length);
+				buf = bigger;
+			}
+		}
+		in.close();
+		return new String(buf, 0, length, StandardCharsets.UTF_8);
+	}
+
+	// The request body has to be read before the connection can be reused
+	private static void drain(final HttpExchange exchange) throws IOException
+	{
+		InputStream in = exchange.getRequestBody();
+		byte[] buf = new byte[1024];
+		while(in.read(buf) > 0)
+		{
+		}
+		in.close();
+	}
+
+	// With a known length, so the connection is kept alive
+	private static void send(final HttpExchange exchange, int status, CharSequence json) throws IOException
+	{
+		byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+}
@@ -0,0 +1,259 @@
+package com.johnson.UnitConverter.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//
+// Just enough JSON for the batch requests: an array of objects.
+//   Strings come back as String, numbers as Double, true and false as
+//   Boolean and null as null. Nested arrays and objects are skipped over.
+//   Errors are thrown as IllegalArgumentException with the position.
+//
+class JsonParser
+{
+	private final String text;
+	private int pos;
+
+	JsonParser(final String text)
+	{
+		this.text = text;
+		this.pos = 0;
+	}
+
+	List<Map<String, Object>> parseObjectArray()
+	{
+		List<Map<String, Object>> objects = new ArrayList<Map<String, Object>>();
+
+		expect('[');
+		if(peek() == ']')
+		{
+			pos++;
+		}
+		else
+		{
+			while(true)
+			{
+				objects.add(parseObject());
+				if(next() == ']')
+				{
+					break;
+				}
+				pos--;
+				expect(',');
+			}
+		}
+
+		if(peek() != 0)
+		{
+			throw error("Unexpected text after the array");
+		}
+		return objects;
+	}
+
+	private Map<String, Object> parseObject()
+	{
+		Map<String, Object> object = new LinkedHashMap<String, Object>();
+
+		expect('{');
+		if(peek() == '}')
+		{
+			pos++;
+			return object;
+		}
+
+		while(true)
+		{
+			if(peek() != '"')
+			{
+				throw error("Expected a name");
+			}
+			String name = parseString();
+			expect(':');
+			object.put(name, parseValue());
+			if(next() == '}')
+			{
+				return object;
+			}
+			pos--;
+			expect(',');
+		}
+	}
+
+	private Object parseValue()
+	{
+		char c = peek();
+		if(c == '"')
+		{
+			return parseString();
+		}
+		if(c == '{')
+		{
+			parseObject();
+			return null;
+		}
+		if(c == '[')
+		{
+			skipArray();
+			return null;
+		}
+		if(text.startsWith("true", pos))
+		{
+			pos += 4;
+			return Boolean.TRUE;
+		}
+		if(text.startsWith("false", pos))
+		{
+			pos += 5;
+			return Boolean.FALSE;
+		}
+		if(text.startsWith("null", pos))
+		{
+			pos += 4;
+			return null;
+		}
+		return parseNumber();
+	}
+
+	private void skipArray()
+	{
+		expect('[');
+		if(peek() == ']')
+		{
+			pos++;
+			return;
+		}
+		while(true)
+		{
+			parseValue();
+			if(next() == ']')
+			{
+				return;
+			}
+			pos--;
+			expect(',');
+		}
+	}
+
+	private Double parseNumber()
+	{
+		int start = pos;
+		while(pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0)
+		{
+			pos++;
+		}
+		if(start == pos)
+		{
+			throw error("Expected a value");
+		}
+
+		try
+		{
+			return Double.valueOf(text.substring(start, pos));
+		}
+		catch(NumberFormatException e)
+		{
+			throw error("Invalid number");
+		}
+	}
+
+	private String parseString()
+	{
+		expect('"');
+		StringBuilder s = null;
+		int start = pos;
+		while(true)
+		{
+			if(pos >= text.length())
+			{
+				throw error("Unterminated string");
+			}
+
+			char c = text.charAt(pos++);
+			if(c == '"')
+			{
+				return (s == null) ? text.substring(start, pos - 1) : s.toString();
+			}
+			if(c != '\\')
+			{
+				if(s != null)
+				{
+					s.append(c);
+				}
+				continue;
+			}
+
+			// Only copy strings that have escapes
+			if(s == null)
+			{
+				s = new StringBuilder(text.substring(start, pos - 1));
+			}
+			if(pos >= text.length())
+			{
+				throw error("Unterminated string");
+			}
+			c = text.charAt(pos++);
+			switch(c)
+			{
+			case 'b': s.append('\b'); break;
+			case 'f': s.append('\f'); break;
+			case 'n': s.append('\n'); break;
+			case 'r': s.append('\r'); break;
+			case 't': s.append('\t'); break;
+			case 'u':
+				if(pos + 4 > text.length())
+				{
+					throw error("Invalid escape");
+				}
+				try
+				{
+					s.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+				}
+				catch(NumberFormatException e)
+				{
+					throw error("Invalid escape");
+				}
+				pos += 4;
+				break;
+			default:
+				s.append(c);
+			}
+		}
+	}
+
+	// The next char that is not white space, without consuming it, or 0 at the end
+	private char peek()
+	{
+		while(pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+		{
+			pos++;
+		}
+		return (pos < text.length()) ? text.charAt(pos) : 0;
+	}
+
+	private char next()
+	{
+		char c = peek();
+		if(c == 0)
+		{
+			throw error("Unexpected end");
+		}
+		pos++;
+		return c;
+	}
+
+	private void expect(char c)
+	{
+		if(next() != c)
+		{
+			pos--;
+			throw error("Expected '" + c + "'");
+		}
+	}
+
+	private IllegalArgumentException error(final String message)
+	{
+		return new IllegalArgumentException(message + " at position " + pos);
+	}
+}
@@ -0,0 +1,299 @@
+package com.johnson.UnitConverter.units;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//
+// Caches the exchange rates of another CurrencyConverter in a local file.
+//   Rates younger than the time to live are served straight from the cache.
+//   Older rates are still served straight away while a background fetch
+//   refreshes them, up to the maximum staleness, after which the caller
+//   waits for a fresh rate. If a fetch fails the cached rate is used, no
+//   matter how old, so conversions keep working offline.
+//   Concurrent lookups of the same rate share a single fetch, and a stale
+//   rate has at most one refresh running. The refreshes of every cache
+//   share threads that do not keep the JVM running, so a short lived
+//   program calls awaitRefreshes() before it exits.
+//
+public class CachingCurrencyConverter implements CurrencyConverter
+{
+	public static final String CACHE_FILE_PROPERTY = "unitconverter.rates.cache";
+	public static final long DEFAULT_TTL_MILLIS = 60L * 60 * 1000;
+	public static final long DEFAULT_MAX_STALE_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+	// The background refreshes of every cache, and the fetches they are running
+	private static final ExecutorService REFRESHER = CurrencyRateLoader.newExecutor();
+	private static final Set<CompletableFuture<Float>> REFRESHES =
+			Collections.newSetFromMap(new ConcurrentHashMap<CompletableFuture<Float>, Boolean>());
+
+	private static class CachedRate
+	{
+		final float rate;
+		final long fetchedAt;
+
+		CachedRate(float rate, long fetchedAt)
+		{
+			this.rate = rate;
+			this.fetchedAt = fetchedAt;
+		}
+	}
+
+	private final CurrencyConverter delegate;
+	private final File cacheFile;
+	private final long ttlMillis;
+	private final long maxStaleMillis;
+	private final Map<String, CachedRate> rates;
+	private final ConcurrentHashMap<String, CompletableFuture<Float>> fetches;
+
+	public CachingCurrencyConverter(final CurrencyConverter delegate)
+	{
+		this(delegate, defaultCacheFile(), DEFAULT_TTL_MILLIS, DEFAULT_MAX_STALE_MILLIS);
+	}
+
+	public CachingCurrencyConverter(final CurrencyConverter delegate, File cacheFile, long ttlMillis, long maxStaleMillis)
+	{
+		this.delegate = delegate;
+		this.cacheFile = cacheFile;
+		this.ttlMillis = ttlMillis;
+		this.maxStaleMillis = Math.max(ttlMillis, maxStaleMillis);
+		this.rates = new ConcurrentHashMap<String, CachedRate>();
+		this.fetches = new ConcurrentHashMap<String, CompletableFuture<Float>>();
+		read();
+	}
+
+	// ~/.unitconverter/rates.properties unless set with CACHE_FILE_PROPERTY
+	public static File defaultCacheFile()
+	{
+		String fileName = System.getProperty(CACHE_FILE_PROPERTY);
+		if(fileName != null)
+		{
+			return new File(fileName);
+		}
+		return new File(new File(System.getProperty("user.home"), ".unitconverter"), "rates.properties");
+	}
+
+	public float convert(final String currencyFrom, final String currencyTo) throws Exception
+	{
+		final String key = currencyFrom + "." + currencyTo;
+		CachedRate cached = rates.get(key);
+		long age = (cached == null) ? Long.MAX_VALUE : System.currentTimeMillis() - cached.fetchedAt;
+
+		if(age <= ttlMillis)
+		{
+			return cached.rate;
+		}
+
+		if(age <= maxStaleMillis)
+		{
+			refresh(currencyFrom, currencyTo, key);
+			return cached.rate;
+		}
+
+		try
+		{
+			return fetch(currencyFrom, currencyTo, key).get();
+		}
+		catch(ExecutionException e)
+		{
+			if(cached != null)
+			{
+				return cached.rate;
+			}
+			if(e.getCause() instanceof Exception)
+			{
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	//
+	// Waits for the background refreshes to finish and write the cache,
+	// for no longer than the timeout. Returns false if some are still running.
+	//
+	public static boolean awaitRefreshes(long timeoutMillis)
+	{
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		for(CompletableFuture<Float> refresh : REFRESHES)
+		{
+			try
+			{
+				refresh.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			}
+			catch(TimeoutException e)
+			{
+				return false;
+			}
+			catch(ExecutionException e)
+			{
+				// A failed refresh keeps the cached rate, nothing to wait for
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Fetches the rate, or joins the fetch already running for it
+	private CompletableFuture<Float> fetch(final String currencyFrom, String currencyTo, String key)
+	{
+		CompletableFuture<Float> fetch = new CompletableFuture<Float>();
+		CompletableFuture<Float> running = fetches.putIfAbsent(key, fetch);
+		if(running != null)
+		{
+			return running;
+		}
+
+		fetch(currencyFrom, currencyTo, key, fetch);
+		return fetch;
+	}
+
+	// Fetches the rate in the background, unless it is already being fetched
+	private void refresh(final String currencyFrom, final String currencyTo, final String key)
+	{
+		final CompletableFuture<Float> fetch = new CompletableFuture<Float>();
+		REFRESHES.add(fetch);
+		if(fetches.putIfAbsent(key, fetch) != null)
+		{
+			REFRESHES.remove(fetch);
+			return;
+		}
+
+		REFRESHER.execute(new Runnable() {
+			public void run()
+			{
+				try
+				{
+					fetch(currencyFrom, currencyTo, key, fetch);
+				}
+				finally
+				{
+					REFRESHES.remove(fetch);
+				}
+			}
+		});
+	}
+
+	// Completes the fetch, once the rate is in the cache file
+	private void fetch(final String currencyFrom, String currencyTo, String key, CompletableFuture<Float> fetch)
+	{
+		try
+		{
+			float rate = delegate.convert(currencyFrom, currencyTo);
+			rates.put(key, new CachedRate(rate, System.currentTimeMillis()));
+			write();
+			fetch.complete(rate);
+		}
+		catch(Exception e)
+		{
+			fetch.completeExceptionally(e);
+		}
+		finally
+		{
+			fetches.remove(key, fetch);
+		}
+	}
+
+	//
+	// The cache file has a "rate,time fetched" entry per currency pair
+	//
+	private void read()
+	{
+		if(!cacheFile.isFile())
+		{
+			return;
+		}
+
+		Properties props = new Properties();
+		try
+		{
+			InputStream in = new FileInputStream(cacheFile);
+			try
+			{
+				props.load(in);
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch(IOException e)
+		{
+			System.err.println("Unable to read the exchange rate cache " + cacheFile + ": " + e.getMessage());
+			return;
+		}
+
+		for(String key : props.stringPropertyNames())
+		{
+			String[] value = props.getProperty(key).split(",");
+			try
+			{
+				rates.put(key, new CachedRate(Float.parseFloat(value[0]), Long.parseLong(value[1])));
+			}
+			catch(RuntimeException e)
+			{
+				// Ignore broken entries, they will be fetched again
+			}
+		}
+	}
+
+	// Writes a new file and renames it over the old one,
+	// so a reader never sees a partly written cache
+	private synchronized void write()
+	{
+		Properties props = new Properties();
+		for(Map.Entry<String, CachedRate> e : rates.entrySet())
+		{
+			props.setProperty(e.getKey(), e.getValue().rate + "," + e.getValue().fetchedAt);
+		}
+
+		try
+		{
+			File dir = cacheFile.getAbsoluteFile().getParentFile();
+			dir.mkdirs();
+			File tmpFile = File.createTempFile("rates", ".tmp", dir);
+			OutputStream out = new FileOutputStream(tmpFile);
+			try
+			{
+				props.store(out, "UnitConverter exchange rates: rate,time fetched");
+			}
+			finally
+			{
+				out.close();
+			}
+
+			try
+			{
+				Files.move(tmpFile.toPath(), cacheFile.toPath(),
+						StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch(IOException e)
+			{
+				Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch(IOException e)
+		{
+			System.err.println("Unable to write the exchange rate cache " + cacheFile + ": " + e.getMessage());
+		}
+	}
+}
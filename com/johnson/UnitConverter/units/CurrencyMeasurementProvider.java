@@ -0,0 +1,104 @@
+package com.johnson.UnitConverter.units;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.johnson.UnitConverter.Measurement;
+import com.johnson.UnitConverter.MeasurementFactory;
+import com.johnson.UnitConverter.MeasurementProvider;
+import com.johnson.UnitConverter.MeasurementUnit;
+import com.johnson.UnitConverter.UnitFlag;
+
+//
+// Currency
+//	The reference will be U.S. Dollars (USD)
+//   All the rates are fetched at once when the measurement is created,
+//   any that are unavailable get a NaN factor and are shown as unavailable
+//
+public class CurrencyMeasurementProvider implements MeasurementProvider
+{
+	private static final String BASE_CURRENCY = "USD";
+
+	// Currency code and unit name of every currency, the base first.
+	// The command line flag is the code in lower case, like -eur
+	private static final String[][] CURRENCIES = {
+		{ "USD", MeasurementFactory.UNIT_CURRENCY_USD },
+		{ "EUR", MeasurementFactory.UNIT_CURRENCY_EUR },
+		{ "GBP", MeasurementFactory.UNIT_CURRENCY_GBP },
+		{ "INR", MeasurementFactory.UNIT_CURRENCY_INR },
+		{ "AUD", MeasurementFactory.UNIT_CURRENCY_AUD },
+		{ "CAD", MeasurementFactory.UNIT_CURRENCY_CAD },
+		{ "SGD", MeasurementFactory.UNIT_CURRENCY_SGD },
+		{ "JPY", MeasurementFactory.UNIT_CURRENCY_JPY },
+		{ "CNY", MeasurementFactory.UNIT_CURRENCY_CNY },
+		{ "RUB", MeasurementFactory.UNIT_CURRENCY_RUB } };
+
+	private final CurrencyConverter converter;
+	private final boolean findRateProvider;
+	private final ExchangeRateProvider rateProvider;
+	private final long timeoutMillis;
+
+	// With a null converter the rates are fetched from the web page and
+	// cached on disk. If findRateProvider is set, a configured
+	// ExchangeRateProvider is used instead of the converter.
+	public CurrencyMeasurementProvider(final CurrencyConverter converter, boolean findRateProvider,
+			ExchangeRateProvider rateProvider, long timeoutMillis)
+	{
+		this.converter = converter;
+		this.findRateProvider = findRateProvider;
+		this.rateProvider = rateProvider;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	public String getName()
+	{
+		return MeasurementFactory.MEASURE_CURRENCY;
+	}
+
+	public List<UnitFlag> getUnitFlags()
+	{
+		List<UnitFlag> flags = new ArrayList<UnitFlag>();
+		for(String[] currency : CURRENCIES)
+		{
+			flags.add(new UnitFlag("-" + currency[0].toLowerCase(),
+					MeasurementFactory.MEASURE_CURRENCY, currency[1], currency[1]));
+		}
+		return Collections.unmodifiableList(flags);
+	}
+
+	public Measurement createMeasurement()
+	{
+		Measurement currencyMeasurements = new Measurement(MeasurementFactory.MEASURE_CURRENCY);
+		currencyMeasurements.addUnit(new MeasurementUnit(CURRENCIES[0][1]));
+
+		Map<String, String> currencies = new LinkedHashMap<String, String>();
+		for(int i = 1; i < CURRENCIES.length; i++)
+		{
+			currencies.put(CURRENCIES[i][0], CURRENCIES[i][1]);
+		}
+
+		Map<String, Double> rates = newRateLoader().load(BASE_CURRENCY, currencies.keySet());
+		for(Map.Entry<String, String> e : currencies.entrySet())
+		{
+			currencyMeasurements.addUnit(new MeasurementUnit(e.getValue(), rates.get(e.getKey())));
+		}
+
+		return currencyMeasurements;
+	}
+
+	private CurrencyRateLoader newRateLoader()
+	{
+		ExchangeRateProvider provider = findRateProvider ? ExchangeRateProviders.find() : rateProvider;
+		if(provider != null)
+		{
+			return new CurrencyRateLoader(provider, timeoutMillis);
+		}
+
+		CurrencyConverter currencyConverter = (converter != null) ?
+			converter : new CachingCurrencyConverter(new MeasurementUnitCurrency());
+		return new CurrencyRateLoader(currencyConverter, timeoutMillis);
+	}
+}
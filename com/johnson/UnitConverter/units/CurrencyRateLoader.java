@@ -0,0 +1,208 @@
+package com.johnson.UnitConverter.units;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import com.johnson.UnitConverter.metrics.ConversionMetrics;
+import com.johnson.UnitConverter.metrics.MetricsSwitch;
+
+//
+// Fetches a set of exchange rates concurrently, all within one deadline.
+//   Rates that fail, or are not back by the deadline, are returned as
+//   RATE_UNAVAILABLE instead of holding up the others.
+//   With an ExchangeRateProvider the whole set comes from one request.
+//
+public class CurrencyRateLoader
+{
+	public static final double RATE_UNAVAILABLE = Double.NaN;
+	public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+	private final CurrencyConverter converter;
+	private final ExchangeRateProvider provider;
+	private final long timeoutMillis;
+
+	public CurrencyRateLoader(final CurrencyConverter converter)
+	{
+		this(converter, DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	public CurrencyRateLoader(final CurrencyConverter converter, long timeoutMillis)
+	{
+		this.converter = converter;
+		this.provider = null;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	public CurrencyRateLoader(final ExchangeRateProvider provider, long timeoutMillis)
+	{
+		this.converter = null;
+		this.provider = provider;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	public static boolean isAvailable(double rate)
+	{
+		return !Double.isNaN(rate);
+	}
+
+	// Returns the rate from the base currency to each of the currencies
+	public Map<String, Double> load(final String baseCurrency, Collection<String> currencies)
+	{
+		if(provider != null)
+		{
+			return loadTable(baseCurrency, currencies);
+		}
+
+		ExecutorService executor = newExecutor();
+		Map<String, CompletableFuture<Double>> pending = new LinkedHashMap<String, CompletableFuture<Double>>();
+		Map<String, Double> rates = new LinkedHashMap<String, Double>();
+
+		try
+		{
+			for(final String currency : currencies)
+			{
+				pending.put(currency, CompletableFuture.supplyAsync(new Supplier<Double>() {
+					public Double get()
+					{
+						try
+						{
+							return (double) converter.convert(baseCurrency, currency);
+						}
+						catch(Exception e)
+						{
+							System.err.println("Exchange rate unavailable for " + currency + ": " + e);
+							return RATE_UNAVAILABLE;
+						}
+					}
+				}, executor));
+			}
+
+			final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			for(Map.Entry<String, CompletableFuture<Double>> e : pending.entrySet())
+			{
+				rates.put(e.getKey(), waitForRate(e.getKey(), e.getValue(), deadline));
+			}
+		}
+		finally
+		{
+			// Abandon anything still running after the deadline
+			executor.shutdownNow();
+		}
+
+		return rates;
+	}
+
+	private Map<String, Double> loadTable(final String baseCurrency, Collection<String> currencies)
+	{
+		ExecutorService executor = newExecutor();
+		Map<String, Double> rates = new LinkedHashMap<String, Double>();
+		RateTable table = null;
+
+		try
+		{
+			table = executor.submit(new Callable<RateTable>() {
+				public RateTable call() throws Exception
+				{
+					long start = System.nanoTime();
+					boolean fetched = false;
+					try
+					{
+						RateTable fetchedTable = provider.fetchRates(baseCurrency);
+						fetched = true;
+						return fetchedTable;
+					}
+					finally
+					{
+						if(MetricsSwitch.ENABLED)
+						{
+							ConversionMetrics metrics = ConversionMetrics.instance();
+							metrics.latency(ConversionMetrics.LATENCY_RATE_TABLE_FETCH).recordSince(start);
+							if(!fetched)
+							{
+								metrics.count(ConversionMetrics.EVENT_RATE_TABLE_FETCH_FAILED);
+							}
+						}
+					}
+				}
+			}).get(timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		catch(TimeoutException e)
+		{
+			System.err.println("Exchange rates unavailable from " + provider.getName() + ": timed out");
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException e)
+		{
+			System.err.println("Exchange rates unavailable from " + provider.getName() + ": " + e.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		for(String currency : currencies)
+		{
+			rates.put(currency, (table == null) ? RATE_UNAVAILABLE : table.getRate(currency));
+		}
+		return rates;
+	}
+
+	private static double waitForRate(final String currency, CompletableFuture<Double> rate, long deadline)
+	{
+		try
+		{
+			return rate.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		}
+		catch(TimeoutException e)
+		{
+			System.err.println("Exchange rate unavailable for " + currency + ": timed out");
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException e)
+		{
+			System.err.println("Exchange rate unavailable for " + currency + ": " + e.getCause());
+		}
+
+		rate.cancel(true);
+		return RATE_UNAVAILABLE;
+	}
+
+	//
+	// Each fetch mostly waits on the network, so use virtual threads when
+	// the JVM has them (JDK 21+), otherwise one daemon thread per fetch.
+	//
+	static ExecutorService newExecutor()
+	{
+		try
+		{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(Exception e)
+		{
+			return Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "currency-rate");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+	}
+}
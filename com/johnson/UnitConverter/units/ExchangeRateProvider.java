@@ -0,0 +1,21 @@
+package com.johnson.UnitConverter.units;
+
+//
+// Supplies a whole table of exchange rates in one request, unlike
+// CurrencyConverter which fetches a single pair at a time.
+//   Implementations are found with java.util.ServiceLoader, so they
+//   need a no argument constructor and an entry in
+//   META-INF/services/com.johnson.UnitConverter.units.ExchangeRateProvider
+//
+public interface ExchangeRateProvider
+{
+	// The name used to select this provider, see ExchangeRateProviders
+	public String getName();
+
+	// True if this provider has what it needs to fetch rates,
+	// for example a configured location
+	public boolean isConfigured();
+
+	// The rates from the base currency to every currency the provider knows
+	public RateTable fetchRates(String baseCurrency) throws Exception;
+}
@@ -0,0 +1,31 @@
+package com.johnson.UnitConverter.units;
+
+import java.util.ServiceLoader;
+
+//
+// Finds the ExchangeRateProvider to use with java.util.ServiceLoader.
+//   The provider named by the PROVIDER_PROPERTY system property is used if
+//   it is set, otherwise the first provider that reports it is configured.
+//
+public final class ExchangeRateProviders
+{
+	public static final String PROVIDER_PROPERTY = "unitconverter.rates.provider";
+
+	private ExchangeRateProviders()
+	{
+	}
+
+	// Returns null if there is no usable provider
+	public static ExchangeRateProvider find()
+	{
+		String name = System.getProperty(PROVIDER_PROPERTY);
+		for(ExchangeRateProvider provider : ServiceLoader.load(ExchangeRateProvider.class))
+		{
+			if(name != null ? name.equals(provider.getName()) : provider.isConfigured())
+			{
+				return provider;
+			}
+		}
+		return null;
+	}
+}
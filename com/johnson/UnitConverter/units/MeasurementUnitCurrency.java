@@ -1,15 +1,44 @@
 package com.johnson.UnitConverter.units;
 
 import java.io.IOException;
+
+import com.johnson.UnitConverter.metrics.ConversionMetrics;
+import com.johnson.UnitConverter.metrics.MetricsSwitch;
+
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.select.Elements;
 
 public class MeasurementUnitCurrency implements CurrencyConverter{
+    // The converter page can be replaced, for example by the benchmarks' StubRateServer
+    public static final String URL_PROPERTY = "unitconverter.currency.url";
+    public static final String DEFAULT_URL = "https://www.google.com/finance/converter";
+    private static final int TIMEOUT_MILLIS = 5000;
+
     public float convert(String currencyFrom, String currencyTo) throws IOException {
-    	Document doc = Jsoup.connect("https://www.google.com/finance/converter?a=1&from="+ currencyFrom +"&to=" + currencyTo).get();
-        Elements ps = doc.select("span");
-        return(Float.parseFloat((ps.text().substring(0, ps.text().length()-5))));
+    	long start = System.nanoTime();
+    	boolean fetched = false;
+    	try {
+    		String url = System.getProperty(URL_PROPERTY, DEFAULT_URL);
+    		Document doc = Jsoup.connect(url + "?a=1&from="+ currencyFrom +"&to=" + currencyTo).timeout(TIMEOUT_MILLIS).get();
+    		Elements ps = doc.select("span");
+
+    		// The rate is the first word, for example "0.9123 EUR"
+    		String text = ps.text().trim();
+    		int end = text.indexOf(' ');
+    		float rate = Float.parseFloat(end < 0 ? text : text.substring(0, end));
+    		fetched = true;
+    		return rate;
+    	}
+    	finally {
+    		// How long each fetch takes, and how many of each pair fail
+    		if(MetricsSwitch.ENABLED) {
+    			ConversionMetrics metrics = ConversionMetrics.instance();
+    			String pair = currencyFrom + " -> " + currencyTo;
+    			metrics.latency(ConversionMetrics.LATENCY_CURRENCY_FETCH).recordSince(start);
+    			metrics.count((fetched ? ConversionMetrics.EVENT_CURRENCY_FETCH : ConversionMetrics.EVENT_CURRENCY_FETCH_FAILED) + pair);
+    		}
+    	}
     }
     
     //Get exchange rates
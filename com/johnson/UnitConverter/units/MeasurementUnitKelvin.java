@@ -2,33 +2,16 @@ package com.johnson.UnitConverter.units;
 
 import com.johnson.UnitConverter.MeasurementUnit;
 
+// Reference is celsius: K = C + 273.15
 public class MeasurementUnitKelvin extends MeasurementUnit
 {
 	public MeasurementUnitKelvin()
 	{
-		super();
+		this("no unit");
 	}
 
 	public MeasurementUnitKelvin(String name)
 	{
-		super(name);
-	}
-
-	// Given a measurement of this type, return the reference measurement
-	// For example, if this unit is inches and the reference is centimeters,
-	// passing in 10 inches, should return 25.4 centimeters
-	// inches -> cm
-	public double convertToReference(double refValue)
-	{
-		return (refValue - 273.15);
-	}
-
-	// Given a reference measurement, return this type reference
-	// For example, if this unit is inches and the reference is centimeters,
-	// passing in 25.4 centimeters, this will return 10 inches
-	// cm -> inches
-	public double convertFromReference(double refValue)
-	{
-		return (refValue + 273.15);
+		super(name, KIND_AFFINE, 1.0, 273.15);
 	}
 }
@@ -0,0 +1,53 @@
+package com.johnson.UnitConverter.units;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+//
+// An immutable set of exchange rates from one base currency,
+// as of the time the provider says they were published.
+//
+public final class RateTable
+{
+	private final String baseCurrency;
+	private final Map<String, Double> rates;
+	private final long timestamp;
+
+	public RateTable(final String baseCurrency, Map<String, Double> rates, long timestamp)
+	{
+		this.baseCurrency = baseCurrency;
+		this.rates = Collections.unmodifiableMap(new TreeMap<String, Double>(rates));
+		this.timestamp = timestamp;
+	}
+
+	public String getBaseCurrency()
+	{
+		return baseCurrency;
+	}
+
+	// Milliseconds since the epoch
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	public Set<String> getCurrencies()
+	{
+		return rates.keySet();
+	}
+
+	// How many units of the currency one unit of the base currency buys,
+	// or CurrencyRateLoader.RATE_UNAVAILABLE if it is not in the table
+	public double getRate(final String currency)
+	{
+		if(baseCurrency.equals(currency))
+		{
+			return 1.0;
+		}
+
+		Double rate = rates.get(currency);
+		return (rate == null) ? CurrencyRateLoader.RATE_UNAVAILABLE : rate.doubleValue();
+	}
+}
@@ -0,0 +1,101 @@
+package com.johnson.UnitConverter.units;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+//
+// Reads a rate table in properties format from a URL, which can be a
+// local file (file:/path/rates.properties) or a local HTTP server such
+// as the benchmarks' StubRateServer (http://localhost:8089/rates). For example:
+//   base=USD
+//   timestamp=1700000000000
+//   EUR=0.9213
+//   JPY=149.52
+// The timestamp is optional, it defaults to when the table was read.
+//
+public class UrlExchangeRateProvider implements ExchangeRateProvider
+{
+	public static final String NAME = "url";
+	public static final String URL_PROPERTY = "unitconverter.rates.url";
+	private static final int TIMEOUT_MILLIS = 5000;
+
+	private final String url;
+
+	// Uses the URL_PROPERTY system property
+	public UrlExchangeRateProvider()
+	{
+		this(System.getProperty(URL_PROPERTY));
+	}
+
+	public UrlExchangeRateProvider(final String url)
+	{
+		this.url = url;
+	}
+
+	public String getName()
+	{
+		return NAME;
+	}
+
+	public boolean isConfigured()
+	{
+		return url != null && url.length() > 0;
+	}
+
+	public RateTable fetchRates(final String baseCurrency) throws Exception
+	{
+		URLConnection connection = new URL(url).openConnection();
+		connection.setConnectTimeout(TIMEOUT_MILLIS);
+		connection.setReadTimeout(TIMEOUT_MILLIS);
+
+		Properties props = new Properties();
+		InputStream in = connection.getInputStream();
+		try
+		{
+			props.load(in);
+		}
+		finally
+		{
+			in.close();
+		}
+
+		String tableBase = props.getProperty("base", baseCurrency);
+		long timestamp = Long.parseLong(props.getProperty("timestamp", Long.toString(System.currentTimeMillis())));
+		Map<String, Double> rates = new HashMap<String, Double>();
+		for(String currency : props.stringPropertyNames())
+		{
+			if(!"base".equals(currency) && !"timestamp".equals(currency))
+			{
+				rates.put(currency, Double.valueOf(props.getProperty(currency)));
+			}
+		}
+
+		RateTable table = new RateTable(tableBase, rates, timestamp);
+		return tableBase.equals(baseCurrency) ? table : rebase(table, baseCurrency);
+	}
+
+	// Cross rates through the table base: base->X = tableBase->X / tableBase->base
+	private static RateTable rebase(final RateTable table, String baseCurrency) throws Exception
+	{
+		double baseRate = table.getRate(baseCurrency);
+		if(!CurrencyRateLoader.isAvailable(baseRate))
+		{
+			throw new Exception("No " + baseCurrency + " rate in the " + table.getBaseCurrency() + " table");
+		}
+
+		Map<String, Double> rates = new HashMap<String, Double>();
+		rates.put(table.getBaseCurrency(), 1.0 / baseRate);
+		for(String currency : table.getCurrencies())
+		{
+			if(!currency.equals(baseCurrency))
+			{
+				rates.put(currency, table.getRate(currency) / baseRate);
+			}
+		}
+		return new RateTable(baseCurrency, rates, table.getTimestamp());
+	}
+}